@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.client.http;
+
+import lombok.Builder;
+import lombok.Data;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.logging.HttpLoggingInterceptor;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Wire logging of the HTTP exchanges, chosen when the OpenAI or Pinecone client is built.
+ * <p>
+ * Logging the full bodies buffers and copies every request and response, which is expensive for multi-MB
+ * embedding and vector payloads. The other modes only touch the bodies of a sample of the calls, or a bounded prefix
+ * of them.
+ *
+ * @author HamaWhite
+ */
+@Data
+@Builder
+public class WireLogging {
+
+    public enum Mode {
+        /**
+         * No logging, the exchanges are not intercepted at all.
+         */
+        NONE,
+        /**
+         * Request and response lines and headers.
+         */
+        HEADERS,
+        /**
+         * Headers of every call, and the full bodies of a fraction of the calls given by sampleRate.
+         */
+        SAMPLED_BODY,
+        /**
+         * Headers, and at most maxBodyBytes of each body.
+         */
+        CAPPED_BODY,
+        /**
+         * Headers and full bodies.
+         */
+        BODY
+    }
+
+    /**
+     * Logging mode. Default is HEADERS.
+     */
+    @Builder.Default
+    private Mode mode = Mode.HEADERS;
+
+    /**
+     * Fraction of the calls whose bodies are logged in SAMPLED_BODY mode. Default is 0.01.
+     */
+    @Builder.Default
+    private double sampleRate = 0.01;
+
+    /**
+     * Maximum number of bytes of each body logged in CAPPED_BODY mode. Default is 4096.
+     */
+    @Builder.Default
+    private long maxBodyBytes = 4096;
+
+    /**
+     * Create the interceptor logging the exchanges.
+     *
+     * @param logger the sink of the log lines
+     * @return the application interceptor to install
+     */
+    public Interceptor createInterceptor(HttpLoggingInterceptor.Logger logger) {
+        return switch (mode) {
+            case NONE -> chain -> chain.proceed(chain.request());
+            case HEADERS -> createLoggingInterceptor(logger, HttpLoggingInterceptor.Level.HEADERS);
+            case BODY -> createLoggingInterceptor(logger, HttpLoggingInterceptor.Level.BODY);
+            case SAMPLED_BODY -> {
+                Interceptor headers = createLoggingInterceptor(logger, HttpLoggingInterceptor.Level.HEADERS);
+                Interceptor body = createLoggingInterceptor(logger, HttpLoggingInterceptor.Level.BODY);
+                yield chain -> ThreadLocalRandom.current().nextDouble() < sampleRate
+                        ? body.intercept(chain)
+                        : headers.intercept(chain);
+            }
+            case CAPPED_BODY -> {
+                Interceptor headers = createLoggingInterceptor(logger, HttpLoggingInterceptor.Level.HEADERS);
+                yield chain -> {
+                    logRequestBody(logger, chain.request().body());
+                    Response response = headers.intercept(chain);
+                    logResponseBody(logger, response);
+                    return response;
+                };
+            }
+        };
+    }
+
+    private static Interceptor createLoggingInterceptor(HttpLoggingInterceptor.Logger logger,
+            HttpLoggingInterceptor.Level level) {
+        HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor(logger);
+        interceptor.setLevel(level);
+        return interceptor;
+    }
+
+    private void logRequestBody(HttpLoggingInterceptor.Logger logger, RequestBody body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        long contentLength = body.contentLength();
+        if (contentLength < 0 || contentLength > maxBodyBytes || body.isOneShot()) {
+            logger.log("--> body omitted (" + contentLength + "-byte)");
+            return;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        logger.log("--> body: " + buffer.readUtf8());
+    }
+
+    /**
+     * Log a prefix of the response body, which is peeked so the caller still reads the whole body.
+     * Event streams are skipped, peeking would wait for the following events.
+     */
+    private void logResponseBody(HttpLoggingInterceptor.Logger logger, Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null) {
+            return;
+        }
+        MediaType contentType = body.contentType();
+        if (contentType != null && "event-stream".equals(contentType.subtype())) {
+            logger.log("<-- body omitted (event stream)");
+            return;
+        }
+        ResponseBody peeked = response.peekBody(maxBodyBytes);
+        String suffix = peeked.contentLength() >= maxBodyBytes ? "... (truncated)" : "";
+        logger.log("<-- body: " + peeked.string() + suffix);
+    }
+}
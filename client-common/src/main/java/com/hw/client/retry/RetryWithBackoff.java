@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.client.retry;
+
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import lombok.Builder;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Retry handler for {@code retryWhen}, which resubscribes to failed requests with exponential backoff and jitter.
+ * <p>
+ * Rate limits (429), request timeouts (408), server errors (5xx) and I/O failures such as timeouts are retried,
+ * other errors are propagated immediately. A {@code Retry-After} or {@code retry-after-ms} header sent by the server
+ * takes precedence over the backoff. The delays are scheduled on a timer, so no thread is blocked while waiting, and
+ * the request is then resubscribed on the io scheduler, since a blocking call must not hold the timer thread.
+ *
+ * @author HamaWhite
+ */
+@Builder(toBuilder = true)
+public class RetryWithBackoff implements Function<Flowable<Throwable>, Publisher<Object>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryWithBackoff.class);
+
+    /**
+     * Maximum number of retries after the first attempt.
+     */
+    @Builder.Default
+    private final int maxRetries = 2;
+
+    /**
+     * Delay before the first retry, doubled on every following retry.
+     */
+    @Builder.Default
+    private final Duration initialDelay = Duration.ofSeconds(1);
+
+    /**
+     * Upper bound of a single delay, including the ones requested by the server.
+     */
+    @Builder.Default
+    private final Duration maxDelay = Duration.ofSeconds(60);
+
+    /**
+     * Scheduler of the delay timers.
+     */
+    @Builder.Default
+    private final Scheduler scheduler = Schedulers.computation();
+
+    /**
+     * Scheduler the request is resubscribed on once the delay has elapsed, which runs blocking HTTP calls.
+     */
+    @Builder.Default
+    private final Scheduler resumeScheduler = Schedulers.io();
+
+    /**
+     * Whether a failure should be retried.
+     */
+    @Builder.Default
+    private final Predicate<Throwable> retryable = RetryWithBackoff::isRetryable;
+
+    @Override
+    public Publisher<Object> apply(Flowable<Throwable> errors) {
+        // apply is called once per subscription, so the attempts are counted per request
+        AtomicInteger retries = new AtomicInteger();
+        return errors.flatMap(error -> {
+            int retry = retries.incrementAndGet();
+            if (retry > maxRetries || !retryable.test(error)) {
+                return Flowable.error(error);
+            }
+            long delayMillis = delayMillis(retry, error);
+            LOG.warn("Retrying request in {} ms, retry {} of {}, after: {}", delayMillis, retry, maxRetries,
+                    error.toString());
+            return Flowable.timer(delayMillis, TimeUnit.MILLISECONDS, scheduler).observeOn(resumeScheduler);
+        });
+    }
+
+    /**
+     * Return a copy that only retries the failures also accepted by the given condition.
+     */
+    public RetryWithBackoff onlyIf(Predicate<Throwable> condition) {
+        return toBuilder().retryable(retryable.and(condition)).build();
+    }
+
+    /**
+     * Compute the delay before the given retry, counted from 1.
+     * Without a server hint it is drawn between half and all of initialDelay * 2^(retry - 1), capped at maxDelay.
+     */
+    public long delayMillis(int retry, Throwable error) {
+        long maxDelayMillis = maxDelay.toMillis();
+        Long retryAfterMillis = retryAfterMillis(error);
+        if (retryAfterMillis != null) {
+            return Math.min(Math.max(retryAfterMillis, 0), maxDelayMillis);
+        }
+        long backoff = initialDelay.toMillis() << Math.min(retry - 1, 30);
+        long delay = backoff > 0 ? Math.min(backoff, maxDelayMillis) : maxDelayMillis;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Whether the failure is transient: rate limits, request timeouts, server errors and I/O failures.
+     */
+    public static boolean isRetryable(Throwable error) {
+        if (error instanceof HttpException httpException) {
+            int code = httpException.code();
+            return code == 429 || code == 408 || code >= 500;
+        }
+        return error instanceof IOException;
+    }
+
+    private static Long retryAfterMillis(Throwable error) {
+        if (!(error instanceof HttpException httpException)) {
+            return null;
+        }
+        Response<?> response = httpException.response();
+        if (response == null) {
+            return null;
+        }
+        String retryAfterMs = response.headers().get("retry-after-ms");
+        String retryAfter = response.headers().get("Retry-After");
+        try {
+            if (retryAfterMs != null) {
+                return (long) Double.parseDouble(retryAfterMs);
+            }
+            if (retryAfter != null) {
+                return retryAfter.chars().allMatch(Character::isDigit)
+                        ? TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter))
+                        : Duration.between(ZonedDateTime.now(),
+                                ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis();
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            LOG.debug("Ignoring invalid retry-after header", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.client.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class WireLoggingTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WireLoggingTest.class);
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private OkHttpClient createHttpClient(WireLogging wireLogging, List<String> lines) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(wireLogging.createInterceptor(lines::add))
+                .build();
+    }
+
+    private String get(OkHttpClient httpClient) throws IOException {
+        Request request = new Request.Builder().url(server.url("/v1/embeddings")).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    @Test
+    void testNone() throws IOException {
+        server.enqueue(new MockResponse().setBody("hello"));
+        List<String> lines = new ArrayList<>();
+
+        assertThat(get(createHttpClient(WireLogging.builder().mode(WireLogging.Mode.NONE).build(), lines)))
+                .isEqualTo("hello");
+        assertThat(lines).isEmpty();
+    }
+
+    @Test
+    void testCappedBody() throws IOException {
+        String body = "x".repeat(100);
+        server.enqueue(new MockResponse().setBody(body));
+        List<String> lines = new ArrayList<>();
+        WireLogging wireLogging = WireLogging.builder()
+                .mode(WireLogging.Mode.CAPPED_BODY)
+                .maxBodyBytes(10)
+                .build();
+
+        // the caller still reads the whole body
+        assertThat(get(createHttpClient(wireLogging, lines))).isEqualTo(body);
+        assertThat(lines).contains("<-- body: xxxxxxxxxx... (truncated)");
+    }
+
+    @Test
+    void testSampledBody() throws IOException {
+        server.enqueue(new MockResponse().setBody("sampled"));
+        server.enqueue(new MockResponse().setBody("skipped"));
+        List<String> lines = new ArrayList<>();
+
+        get(createHttpClient(WireLogging.builder().mode(WireLogging.Mode.SAMPLED_BODY).sampleRate(1).build(), lines));
+        get(createHttpClient(WireLogging.builder().mode(WireLogging.Mode.SAMPLED_BODY).sampleRate(0).build(), lines));
+        assertThat(lines).contains("sampled").doesNotContain("skipped");
+    }
+
+    /**
+     * Compare the bytes allocated by the calling thread to fetch an embedding response of ~1 MB, on top of the
+     * allocations of the same call without logging.
+     */
+    @Test
+    void testBodyLoggingAllocations() throws IOException {
+        String body = createEmbeddingResponse(64, 1536);
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(body);
+            }
+        });
+
+        long none = measureAllocatedBytes(WireLogging.builder().mode(WireLogging.Mode.NONE).build());
+        long full = measureAllocatedBytes(WireLogging.builder().mode(WireLogging.Mode.BODY).build()) - none;
+        long headers = measureAllocatedBytes(WireLogging.builder().build()) - none;
+        long capped = measureAllocatedBytes(WireLogging.builder().mode(WireLogging.Mode.CAPPED_BODY).build()) - none;
+        LOG.info("Allocated by the logging per call for a {}-byte body: BODY {}, HEADERS {}, CAPPED_BODY {}",
+                body.length(), full, headers, capped);
+
+        assertThat(full).isGreaterThan(body.length());
+        assertThat(headers).isLessThan(body.length() / 10);
+        assertThat(capped).isLessThan(body.length() / 10);
+    }
+
+    private long measureAllocatedBytes(WireLogging wireLogging) throws IOException {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(wireLogging.createInterceptor(message -> {
+                }))
+                .build();
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int warmups = 5;
+        int iterations = 10;
+        long start = 0;
+        for (int i = 0; i < warmups + iterations; i++) {
+            if (i == warmups) {
+                start = threadBean.getThreadAllocatedBytes(threadId);
+            }
+            Request request = new Request.Builder().url(server.url("/v1/embeddings")).build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                response.body().byteStream().transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        return (threadBean.getThreadAllocatedBytes(threadId) - start) / iterations;
+    }
+
+    private static String createEmbeddingResponse(int count, int dimension) {
+        Random random = new Random(42);
+        String data = IntStream.range(0, count)
+                .mapToObj(i -> IntStream.range(0, dimension)
+                        .mapToObj(j -> String.valueOf(random.nextFloat() * 2 - 1))
+                        .collect(Collectors.joining(",",
+                                "{\"object\":\"embedding\",\"index\":" + i + ",\"embedding\":[", "]}")))
+                .collect(Collectors.joining(","));
+        return "{\"object\":\"list\",\"model\":\"text-embedding-ada-002\",\"data\":[" + data + "]}";
+    }
+}
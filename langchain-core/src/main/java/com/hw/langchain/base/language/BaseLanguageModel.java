@@ -23,6 +23,7 @@ import com.hw.langchain.schema.LLMResult;
 import com.hw.langchain.schema.PromptValue;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * BaseLanguageModel is an interface for interacting with a language model.
@@ -55,4 +56,29 @@ public interface BaseLanguageModel {
      * Predict message from messages.
      */
     BaseMessage predictMessages(List<BaseMessage> messages, List<String> stop);
+
+    /**
+     * Take in a list of prompt values and return a future of the LLMResult, without blocking the calling thread.
+     */
+    CompletableFuture<LLMResult> generatePromptAsync(List<PromptValue> prompts, List<String> stop);
+
+    /**
+     * Predict text from text asynchronously.
+     */
+    CompletableFuture<String> predictAsync(String text);
+
+    /**
+     * Predict text from text asynchronously.
+     */
+    CompletableFuture<String> predictAsync(String text, List<String> stop);
+
+    /**
+     * Predict message from messages asynchronously.
+     */
+    CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages);
+
+    /**
+     * Predict message from messages asynchronously.
+     */
+    CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages, List<String> stop);
 }
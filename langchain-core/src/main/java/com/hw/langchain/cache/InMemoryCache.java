@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.langchain.schema.BaseCache;
+import com.hw.langchain.schema.Generation;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cache that stores things in memory, bounded by the number of entries and optionally by their age.
+ * The least recently used entries are evicted first once the maximum size is reached.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryCache implements BaseCache {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Cache<List<String>, List<Generation>> cache;
+
+    public InMemoryCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public InMemoryCache(long maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * @param maximumSize      maximum number of cached prompts
+     * @param expireAfterWrite how long an entry is kept after it was written, null to keep it until evicted by size
+     */
+    public InMemoryCache(long maximumSize, Duration expireAfterWrite) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats();
+        if (expireAfterWrite != null) {
+            builder.expireAfterWrite(expireAfterWrite);
+        }
+        this.cache = builder.build();
+    }
+
+    @Override
+    public List<Generation> lookup(String prompt, String llmString) {
+        return cache.getIfPresent(List.of(prompt, llmString));
+    }
+
+    @Override
+    public void update(String prompt, String llmString, List<Generation> returnVal) {
+        cache.put(List.of(prompt, llmString), returnVal);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Number of lookups that returned a cached value.
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * Number of lookups that found no cached value.
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Ratio of lookups that returned a cached value, 1.0 when there was no lookup yet.
+     */
+    public double hitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * Approximate number of cached prompts.
+     */
+    public long size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.langchain.schema.BaseCache;
+import com.hw.langchain.schema.ChatGeneration;
+import com.hw.langchain.schema.Generation;
+import com.hw.langchain.storage.JdbcTable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.SneakyThrows;
+
+import javax.sql.DataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.hw.langchain.schema.Schema.messageFromDict;
+
+/**
+ * Cache that stores generations in a database through JDBC, such as an embedded H2 file or a shared MySQL server,
+ * so the entries survive restarts and can be shared by several processes.
+ * <p>
+ * Rows are keyed by the SHA-256 of the llmString and the prompt, and hold the generations as gzip-compressed JSON.
+ * Entries can be bounded by age, in which case older rows are ignored and evicted, and by count, in which case the
+ * oldest rows are evicted first.
+ *
+ * @author HamaWhite
+ */
+public class JdbcCache implements BaseCache, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcCache.class);
+
+    private static final String DEFAULT_TABLE_NAME = "full_llm_cache";
+
+    /**
+     * Number of written entries after which the size and age bounds are enforced again.
+     */
+    private static final int EVICTION_INTERVAL = 100;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JdbcTable table;
+
+    private final long maxSize;
+
+    private final Duration maxAge;
+
+    private final AtomicInteger writesSinceEviction = new AtomicInteger();
+
+    public JdbcCache(String url, String username, String password) {
+        this(url, username, password, 0, null);
+    }
+
+    public JdbcCache(String url, String username, String password, long maxSize, Duration maxAge) {
+        this(JdbcTable.getConnection(url, username, password), DEFAULT_TABLE_NAME, maxSize, maxAge);
+    }
+
+    /**
+     * @param connection the connection to use, which is owned and closed by the cache
+     * @param tableName  name of the cache table, created if it does not exist
+     * @param maxSize    maximum number of cached prompts, 0 or less for no bound
+     * @param maxAge     maximum age of a cached prompt, null for no bound
+     */
+    public JdbcCache(Connection connection, String tableName, long maxSize, Duration maxAge) {
+        this(new JdbcTable(connection, tableName, "cache_key"), maxSize, maxAge);
+    }
+
+    /**
+     * @param dataSource the source of the connections, such as a pool, so concurrent calls do not wait for each other
+     * @param tableName  name of the cache table, created if it does not exist
+     * @param maxSize    maximum number of cached prompts, 0 or less for no bound
+     * @param maxAge     maximum age of a cached prompt, null for no bound
+     */
+    public JdbcCache(DataSource dataSource, String tableName, long maxSize, Duration maxAge) {
+        this(new JdbcTable(dataSource, tableName, "cache_key"), maxSize, maxAge);
+    }
+
+    @SneakyThrows(SQLException.class)
+    private JdbcCache(JdbcTable table, long maxSize, Duration maxAge) {
+        this.table = table;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        String tableName = table.getName();
+        table.createIfNotExists("CREATE TABLE " + tableName + " ("
+                + "cache_key VARCHAR(64) NOT NULL PRIMARY KEY, "
+                + "response BLOB NOT NULL, "
+                + "created_at BIGINT NOT NULL)",
+                "CREATE INDEX " + tableName + "_created_at ON " + tableName + " (created_at)");
+    }
+
+    @Override
+    public List<Generation> lookup(String prompt, String llmString) {
+        return lookup(List.of(prompt), llmString).get(0);
+    }
+
+    /**
+     * Look up the prompts with one query per 500 prompts.
+     */
+    @Override
+    @SneakyThrows({SQLException.class, IOException.class})
+    public List<List<Generation>> lookup(List<String> prompts, String llmString) {
+        List<String> keys = prompts.stream()
+                .map(prompt -> cacheKey(prompt, llmString))
+                .toList();
+        Map<String, byte[]> found = new HashMap<>(keys.size());
+        table.selectByKeys(keys, "cache_key, response",
+                maxAge != null ? "created_at >= ?" : null,
+                maxAge != null ? List.of(System.currentTimeMillis() - maxAge.toMillis()) : List.of(),
+                resultSet -> found.put(resultSet.getString(1), resultSet.getBytes(2)));
+        // the payloads are decompressed once the connection is released
+        Map<String, List<Generation>> generations = new HashMap<>(found.size());
+        for (Map.Entry<String, byte[]> entry : found.entrySet()) {
+            generations.put(entry.getKey(), deserialize(entry.getValue()));
+        }
+        return keys.stream()
+                .map(generations::get)
+                .toList();
+    }
+
+    @Override
+    public void update(String prompt, String llmString, List<Generation> returnVal) {
+        update(List.of(prompt), llmString, List.of(returnVal));
+    }
+
+    /**
+     * Write the prompts in one transaction, replacing existing entries. A failed write is logged and skipped.
+     */
+    @Override
+    @SneakyThrows(IOException.class)
+    public void update(List<String> prompts, String llmString, List<List<Generation>> returnVals) {
+        Map<String, byte[]> rows = new LinkedHashMap<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            rows.put(cacheKey(prompts.get(i), llmString), serialize(returnVals.get(i)));
+        }
+        long now = System.currentTimeMillis();
+        try {
+            table.replace(rows, List.of("response", "created_at"), (statement, index, response) -> {
+                statement.setBytes(index, response);
+                statement.setLong(index + 1, now);
+            });
+        } catch (SQLException e) {
+            // another process may have written the same prompt concurrently, failing to cache is not fatal
+            LOG.warn("Failed to write {} entries to cache table {}", rows.size(), table.getName(), e);
+            return;
+        }
+
+        if (writesSinceEviction.addAndGet(rows.size()) >= EVICTION_INTERVAL) {
+            evict();
+        }
+    }
+
+    /**
+     * Delete the entries older than maxAge, then the oldest entries beyond maxSize.
+     */
+    @SneakyThrows(SQLException.class)
+    public void evict() {
+        writesSinceEviction.set(0);
+        String tableName = table.getName();
+        if (maxAge != null) {
+            table.withConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM " + tableName + " WHERE created_at < ?")) {
+                    statement.setLong(1, System.currentTimeMillis() - maxAge.toMillis());
+                    return statement.executeUpdate();
+                }
+            });
+        }
+        long excess = maxSize > 0 ? size() - maxSize : 0;
+        if (excess > 0) {
+            List<String> oldestKeys = table.withConnection(connection -> {
+                List<String> keys = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT cache_key FROM " + tableName + " ORDER BY created_at")) {
+                    statement.setMaxRows(Math.toIntExact(Math.min(excess, Integer.MAX_VALUE)));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            keys.add(resultSet.getString(1));
+                        }
+                    }
+                }
+                return keys;
+            });
+            table.deleteKeys(oldestKeys);
+        }
+    }
+
+    /**
+     * Number of cached prompts, including the expired ones not evicted yet.
+     */
+    @SneakyThrows(SQLException.class)
+    public long size() {
+        return table.count();
+    }
+
+    @Override
+    @SneakyThrows(SQLException.class)
+    public void clear() {
+        table.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                return statement.executeUpdate("DELETE FROM " + table.getName());
+            }
+        });
+    }
+
+    @Override
+    public void close() throws SQLException {
+        table.close();
+    }
+
+    @SneakyThrows(NoSuchAlgorithmException.class)
+    private static String cacheKey(String prompt, String llmString) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(llmString.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static byte[] serialize(List<Generation> generations) throws IOException {
+        ArrayNode nodes = OBJECT_MAPPER.createArrayNode();
+        for (Generation generation : generations) {
+            ObjectNode node = nodes.addObject();
+            node.put("text", generation.getText());
+            node.set("generationInfo", OBJECT_MAPPER.valueToTree(generation.getGenerationInfo()));
+            if (generation instanceof ChatGeneration chatGeneration) {
+                ObjectNode message = OBJECT_MAPPER.valueToTree(chatGeneration.getMessage());
+                message.put("type", chatGeneration.getMessage().type());
+                node.set("message", message);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            OBJECT_MAPPER.writeValue(out, nodes);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Generation> deserialize(byte[] payload) throws IOException {
+        JsonNode nodes;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            nodes = OBJECT_MAPPER.readTree(in);
+        }
+        List<Generation> generations = new ArrayList<>(nodes.size());
+        for (JsonNode node : nodes) {
+            Map<String, Object> generationInfo = OBJECT_MAPPER.convertValue(node.get("generationInfo"),
+                    new TypeReference<>() {
+                    });
+            Generation generation;
+            if (node.hasNonNull("message")) {
+                Map<String, Object> message = OBJECT_MAPPER.convertValue(node.get("message"), new TypeReference<>() {
+                });
+                generation = new ChatGeneration(messageFromDict(message));
+                generation.setGenerationInfo(generationInfo);
+            } else {
+                generation = new Generation(node.path("text").asText(null), generationInfo);
+            }
+            generations.add(generation);
+        }
+        return generations;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.BaseCache;
+import com.hw.langchain.schema.Generation;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.hw.langchain.math.utils.VectorUtils.dot;
+import static com.hw.langchain.math.utils.VectorUtils.normalize;
+
+/**
+ * Cache that returns the generations of a previous prompt whose embedding is similar enough to the incoming prompt,
+ * so paraphrases of a cached prompt are served without calling the LLM.
+ * <p>
+ * Prompts are embedded with the given Embeddings and compared by cosine similarity against the prompts cached for the
+ * same llmString, in an in-process index bounded by maxSize, the oldest entries being evicted first.
+ * The embeddings computed by a lookup are reused by the following update of the same prompt.
+ *
+ * @author HamaWhite
+ */
+public class SemanticCache implements BaseCache {
+
+    private static final float DEFAULT_SIMILARITY_THRESHOLD = 0.95f;
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Embeddings embeddings;
+
+    private final float similarityThreshold;
+
+    private final int maxSize;
+
+    private final Map<String, Deque<Entry>> entriesByLlm = new HashMap<>();
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Embeddings of the recently looked up prompts, saving the embedding call when they are updated.
+     */
+    private final Cache<String, float[]> recentEmbeddings = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder lookupCount = new LongAdder();
+
+    private final LongAdder lookupNanos = new LongAdder();
+
+    public SemanticCache(Embeddings embeddings) {
+        this(embeddings, DEFAULT_SIMILARITY_THRESHOLD, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param embeddings          the embeddings used to embed the prompts
+     * @param similarityThreshold minimum cosine similarity for a cached prompt to be returned
+     * @param maxSize             maximum number of cached prompts
+     */
+    public SemanticCache(Embeddings embeddings, float similarityThreshold, int maxSize) {
+        this.embeddings = embeddings;
+        this.similarityThreshold = similarityThreshold;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public List<Generation> lookup(String prompt, String llmString) {
+        return lookup(List.of(prompt), llmString).get(0);
+    }
+
+    /**
+     * Embed the prompts with a single call and return the generations of the most similar cached prompts.
+     */
+    @Override
+    public List<List<Generation>> lookup(List<String> prompts, String llmString) {
+        long start = System.nanoTime();
+        List<float[]> vectors = embed(prompts);
+
+        List<List<Generation>> results = new ArrayList<>(prompts.size());
+        lock.readLock().lock();
+        try {
+            Deque<Entry> candidates = entriesByLlm.getOrDefault(llmString, new ArrayDeque<>());
+            for (int i = 0; i < prompts.size(); i++) {
+                recentEmbeddings.put(prompts.get(i), vectors.get(i));
+                Entry best = findMostSimilar(candidates, vectors.get(i));
+                if (best != null) {
+                    hitCount.increment();
+                    results.add(best.generations);
+                } else {
+                    missCount.increment();
+                    results.add(null);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lookupCount.add(prompts.size());
+        lookupNanos.add(System.nanoTime() - start);
+        return results;
+    }
+
+    private Entry findMostSimilar(Deque<Entry> candidates, float[] vector) {
+        Entry best = null;
+        float bestSimilarity = similarityThreshold;
+        for (Entry entry : candidates) {
+            // prompts embedded by another model never match
+            if (entry.vector.length != vector.length) {
+                continue;
+            }
+            float similarity = dot(entry.vector, vector);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void update(String prompt, String llmString, List<Generation> returnVal) {
+        update(List.of(prompt), llmString, List.of(returnVal));
+    }
+
+    @Override
+    public void update(List<String> prompts, String llmString, List<List<Generation>> returnVals) {
+        List<float[]> vectors = new ArrayList<>(Collections.nCopies(prompts.size(), null));
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < prompts.size(); i++) {
+            float[] vector = recentEmbeddings.getIfPresent(prompts.get(i));
+            if (vector != null) {
+                vectors.set(i, vector);
+            } else {
+                missingIndexes.add(i);
+            }
+        }
+        if (!missingIndexes.isEmpty()) {
+            List<float[]> embedded = embed(missingIndexes.stream().map(prompts::get).toList());
+            for (int i = 0; i < missingIndexes.size(); i++) {
+                vectors.set(missingIndexes.get(i), embedded.get(i));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            Deque<Entry> llmEntries = entriesByLlm.computeIfAbsent(llmString, key -> new ArrayDeque<>());
+            for (int i = 0; i < prompts.size(); i++) {
+                Entry entry = new Entry(llmString, vectors.get(i), returnVals.get(i));
+                llmEntries.addLast(entry);
+                entries.addLast(entry);
+            }
+            while (entries.size() > maxSize) {
+                // the oldest entry overall is also the oldest entry of its llmString
+                Entry oldest = entries.pollFirst();
+                Deque<Entry> oldestEntries = entriesByLlm.get(oldest.llmString);
+                oldestEntries.pollFirst();
+                if (oldestEntries.isEmpty()) {
+                    entriesByLlm.remove(oldest.llmString);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entriesByLlm.clear();
+            entries.clear();
+            recentEmbeddings.invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Embed the texts and normalize them, so the cosine similarity is their dot product.
+     * The keys and the lookups are all embedded with embedDocuments, even a single text, since models may embed
+     * queries differently, which would make a prompt miss its own entry depending on the batch size.
+     */
+    private List<float[]> embed(List<String> texts) {
+        List<EmbeddingVector> embedded = embeddings.embedDocuments(texts);
+        return embedded.stream()
+                .map(embedding -> normalize(embedding.toArray()))
+                .toList();
+    }
+
+    /**
+     * Number of prompts for which a similar cached prompt was found.
+     */
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Number of prompts for which no similar cached prompt was found.
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Ratio of looked up prompts that were served from the cache, 1.0 when there was no lookup yet.
+     */
+    public double hitRate() {
+        long lookups = hitCount() + missCount();
+        return lookups == 0 ? 1.0 : (double) hitCount() / lookups;
+    }
+
+    /**
+     * Average time spent per looked up prompt, embedding call included.
+     */
+    public Duration averageLookupLatency() {
+        long lookups = lookupCount.sum();
+        return lookups == 0 ? Duration.ZERO : Duration.ofNanos(lookupNanos.sum() / lookups);
+    }
+
+    /**
+     * Number of cached prompts.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class Entry {
+
+        private final String llmString;
+
+        private final float[] vector;
+
+        private final List<Generation> generations;
+
+        Entry(String llmString, float[] vector, List<Generation> generations) {
+            this.llmString = llmString;
+            this.vector = vector;
+            this.generations = generations;
+        }
+    }
+}
@@ -18,13 +18,26 @@
 
 package com.hw.langchain.chat.models.base;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.hw.langchain.base.language.BaseLanguageModel;
 import com.hw.langchain.schema.*;
+import com.hw.langchain.utils.ConcurrentUtils;
 
+import io.reactivex.Flowable;
+import lombok.Builder;
 import lombok.experimental.SuperBuilder;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.utils.ConcurrentUtils.mapConcurrently;
 
 /**
  * @author HamaWhite
@@ -32,11 +45,38 @@ import java.util.Map;
 @SuperBuilder
 public abstract class BaseChatModel implements BaseLanguageModel {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     /**
      * Tags to add to the run trace.
      */
     private List<String> tags;
 
+    /**
+     * Maximum number of conversations to generate concurrently. Default is 1, which generates them one after another.
+     */
+    @Builder.Default
+    protected int maxConcurrency = 1;
+
+    /**
+     * Executor running the concurrent and the default asynchronous generations, such as a bounded pool or a
+     * virtual-thread-per-task executor. If not set, a temporary pool of maxConcurrency threads is used by generate, and
+     * the shared pool of {@link ConcurrentUtils#blockingExecutor()} by _generateAsync.
+     */
+    protected Executor executor;
+
+    /**
+     * Cache for the generations, nothing is cached if not set.
+     */
+    protected BaseCache cache;
+
+    /**
+     * Get the identifying parameters, which together with llmType and stop key the cached generations.
+     */
+    public Map<String, Object> identifyingParams() {
+        return Map.of();
+    }
+
     public Map<String, Object> combineLlmOutputs(List<Map<String, Object>> llmOutputs) {
         return Map.of();
     }
@@ -46,13 +86,112 @@ public abstract class BaseChatModel implements BaseLanguageModel {
     }
 
     /**
-     * Top Level call
+     * Top Level call, only the conversations missing from the cache are passed to _generate.
      */
     public LLMResult generate(List<List<BaseMessage>> messages, List<String> stop) {
-        List<ChatResult> results = messages.stream()
-                .map(message -> _generate(message, stop))
+        if (cache == null) {
+            return combineResults(generateAll(messages, stop));
+        }
+        String llmString = getLlmString(stop);
+        List<String> prompts = messages.stream()
+                .map(BaseChatModel::messagesToPrompt)
+                .toList();
+        List<ChatResult> results = new ArrayList<>(cache.lookup(prompts, llmString).stream()
+                .map(BaseChatModel::toChatResult)
+                .toList());
+
+        List<Integer> missingIndexes = IntStream.range(0, results.size())
+                .filter(i -> results.get(i) == null)
+                .boxed()
+                .toList();
+        List<List<BaseMessage>> missingMessages = missingIndexes.stream()
+                .map(messages::get)
+                .toList();
+        List<ChatResult> newResults = generateAll(missingMessages, stop);
+        for (int i = 0; i < missingIndexes.size(); i++) {
+            results.set(missingIndexes.get(i), newResults.get(i));
+        }
+        cache.update(missingIndexes.stream().map(prompts::get).toList(), llmString, newResults.stream()
+                .map(result -> List.<Generation>copyOf(result.getGenerations()))
+                .toList());
+        return combineResults(results);
+    }
+
+    private List<ChatResult> generateAll(List<List<BaseMessage>> messages, List<String> stop) {
+        return executor != null
+                ? mapConcurrently(messages, message -> _generate(message, stop), executor, maxConcurrency)
+                : mapConcurrently(messages, message -> _generate(message, stop), maxConcurrency);
+    }
+
+    /**
+     * Top Level call, the conversations are generated without blocking the calling thread.
+     */
+    public CompletableFuture<LLMResult> generateAsync(List<List<BaseMessage>> messages, List<String> stop) {
+        String llmString = cache != null ? getLlmString(stop) : null;
+        List<CompletableFuture<ChatResult>> futures = messages.stream()
+                .map(message -> cache != null
+                        ? generateWithCacheAsync(message, stop, llmString)
+                        : _generateAsync(message, stop))
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> combineResults(futures.stream().map(CompletableFuture::join).toList()));
+    }
+
+    private CompletableFuture<ChatResult> generateWithCacheAsync(List<BaseMessage> messages, List<String> stop,
+            String llmString) {
+        String prompt = messagesToPrompt(messages);
+        ChatResult cached = toChatResult(cache.lookup(prompt, llmString));
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return _generateAsync(messages, stop).thenApply(result -> updateCache(prompt, llmString, result));
+    }
+
+    private ChatResult updateCache(String prompt, String llmString, ChatResult result) {
+        cache.update(prompt, llmString, List.copyOf(result.getGenerations()));
+        return result;
+    }
+
+    /**
+     * Build the string identifying this chat model and its parameters in the cache.
+     */
+    protected String getLlmString(List<String> stop) {
+        Map<String, Object> params = new TreeMap<>(identifyingParams());
+        params.put("_type", llmType());
+        params.put("stop", stop);
+        return params.toString();
+    }
+
+    /**
+     * Serialize the messages, including their type, into the prompt under which the generations are cached.
+     */
+    protected static String messagesToPrompt(List<BaseMessage> messages) {
+        ArrayNode nodes = OBJECT_MAPPER.createArrayNode();
+        for (BaseMessage message : messages) {
+            ObjectNode node = OBJECT_MAPPER.valueToTree(message);
+            node.put("type", message.type());
+            nodes.add(node);
+        }
+        return nodes.toString();
+    }
+
+    /**
+     * Convert cached generations back to a chat result, the cache may hold plain generations of the reply text.
+     */
+    private static ChatResult toChatResult(List<Generation> generations) {
+        if (generations == null) {
+            return null;
+        }
+        List<ChatGeneration> chatGenerations = generations.stream()
+                .map(generation -> generation instanceof ChatGeneration chatGeneration
+                        ? chatGeneration
+                        : new ChatGeneration(new AIMessage(generation.getText())))
                 .toList();
+        return new ChatResult(chatGenerations, null);
+    }
 
+    private LLMResult combineResults(List<ChatResult> results) {
         List<Map<String, Object>> llmOutputs = results.stream()
                 .map(ChatResult::getLlmOutput)
                 .toList();
@@ -73,16 +212,51 @@ public abstract class BaseChatModel implements BaseLanguageModel {
     }
 
     /**
-     * Top Level call
+     * Call the model on a single conversation, implemented by each chat model.
+     * It is called by generate for every conversation missing from the cache, possibly concurrently.
      */
     public abstract ChatResult _generate(List<BaseMessage> messages, List<String> stop);
 
+    /**
+     * Top Level call, asynchronously.
+     * The default runs _generate on the executor, or on {@link ConcurrentUtils#blockingExecutor()} if not set, models
+     * backed by a non-blocking client should override it.
+     */
+    public CompletableFuture<ChatResult> _generateAsync(List<BaseMessage> messages, List<String> stop) {
+        return CompletableFuture.supplyAsync(() -> _generate(messages, stop),
+                executor != null ? executor : ConcurrentUtils.blockingExecutor());
+    }
+
     public BaseMessage call(List<BaseMessage> messages) {
         return call(messages, null);
     }
 
     public BaseMessage call(List<BaseMessage> messages, List<String> stop) {
-        var generation = generate(List.of(messages), stop).getGenerations().get(0).get(0);
+        return extractMessage(generate(List.of(messages), stop));
+    }
+
+    public CompletableFuture<BaseMessage> callAsync(List<BaseMessage> messages) {
+        return callAsync(messages, null);
+    }
+
+    public CompletableFuture<BaseMessage> callAsync(List<BaseMessage> messages, List<String> stop) {
+        return generateAsync(List.of(messages), stop).thenApply(this::extractMessage);
+    }
+
+    public Flowable<String> stream(List<BaseMessage> messages) {
+        return stream(messages, null);
+    }
+
+    /**
+     * Stream the content of the reply as it is generated.
+     * The default emits the whole reply at once, chat models supporting server-sent events should override it.
+     */
+    public Flowable<String> stream(List<BaseMessage> messages, List<String> stop) {
+        return Flowable.fromCallable(() -> call(messages, stop).getContent());
+    }
+
+    private BaseMessage extractMessage(LLMResult result) {
+        var generation = result.getGenerations().get(0).get(0);
         if (generation instanceof ChatGeneration chatGeneration) {
             return chatGeneration.getMessage();
         } else {
@@ -115,6 +289,38 @@ public abstract class BaseChatModel implements BaseLanguageModel {
         return call(messages, copyStop);
     }
 
+    @Override
+    public CompletableFuture<LLMResult> generatePromptAsync(List<PromptValue> prompts, List<String> stop) {
+        List<List<BaseMessage>> promptMessages = prompts.stream()
+                .map(PromptValue::toMessages)
+                .toList();
+        return generateAsync(promptMessages, stop);
+    }
+
+    @Override
+    public CompletableFuture<String> predictAsync(String text) {
+        return predictAsync(text, null);
+    }
+
+    @Override
+    public CompletableFuture<String> predictAsync(String text, List<String> stop) {
+        List<String> copyStop = stop != null ? List.copyOf(stop) : null;
+        BaseMessage message = new HumanMessage(text);
+
+        return callAsync(List.of(message), copyStop).thenApply(BaseMessage::getContent);
+    }
+
+    @Override
+    public CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages) {
+        return predictMessagesAsync(messages, null);
+    }
+
+    @Override
+    public CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages, List<String> stop) {
+        List<String> copyStop = stop != null ? List.copyOf(stop) : null;
+        return callAsync(messages, copyStop);
+    }
+
     /**
      * Return type of chat model.
      */
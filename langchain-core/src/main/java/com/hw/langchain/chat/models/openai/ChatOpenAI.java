@@ -18,23 +18,30 @@
 
 package com.hw.langchain.chat.models.openai;
 
+import com.hw.client.http.WireLogging;
 import com.hw.langchain.chat.models.base.BaseChatModel;
+import com.hw.langchain.schema.AIMessage;
 import com.hw.langchain.schema.BaseMessage;
 import com.hw.langchain.schema.ChatGeneration;
 import com.hw.langchain.schema.ChatResult;
 import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.chat.ChatChoice;
 import com.hw.openai.entity.chat.ChatCompletion;
 import com.hw.openai.entity.chat.ChatCompletionResp;
 import com.hw.openai.entity.chat.Message;
 import com.hw.openai.entity.completions.Usage;
+import com.hw.openai.ratelimit.RateLimiter;
 
+import io.reactivex.Flowable;
 import lombok.Builder;
 import lombok.experimental.SuperBuilder;
+import okhttp3.OkHttpClient;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static com.hw.langchain.chat.models.openai.OpenAI.convertOpenAiToLangChain;
 import static com.hw.langchain.utils.Utils.getOrEnvOrDefault;
@@ -93,6 +100,22 @@ public class ChatOpenAI extends BaseChatModel {
     @Builder.Default
     protected int maxRetries = 6;
 
+    /**
+     * Limiter of the requests and tokens per minute, shared with the other models of the same organization.
+     */
+    protected RateLimiter rateLimiter;
+
+    /**
+     * HTTP client shared with the other models, whose connection pool and dispatcher are reused.
+     */
+    protected OkHttpClient httpClient;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only.
+     */
+    @Builder.Default
+    protected WireLogging wireLogging = WireLogging.builder().build();
+
     /**
      * Whether to stream the results or not.
      */
@@ -124,6 +147,10 @@ public class ChatOpenAI extends BaseChatModel {
                 .openaiOrganization(openaiOrganization)
                 .openaiProxy(openaiProxy)
                 .requestTimeout(requestTimeout)
+                .maxRetries(maxRetries)
+                .rateLimiter(rateLimiter)
+                .httpClient(httpClient)
+                .wireLogging(wireLogging)
                 .build()
                 .init();
 
@@ -136,25 +163,78 @@ public class ChatOpenAI extends BaseChatModel {
         return this;
     }
 
+    @Override
+    public Map<String, Object> identifyingParams() {
+        Map<String, Object> params = new HashMap<>(modelKwargs);
+        params.put("model", model);
+        params.put("temperature", temperature);
+        params.put("maxTokens", maxTokens);
+        params.put("n", n);
+        return params;
+    }
+
     @Override
     public Map<String, Object> combineLlmOutputs(List<Map<String, Object>> llmOutputs) {
         Usage usage = llmOutputs.stream()
                 .filter(Objects::nonNull)
                 .map(e -> (Usage) e.get("token_usage"))
+                .filter(Objects::nonNull)
                 .reduce((a1, a2) -> new Usage(
-                        a1.getPromptTokens() + a2.getPromptTokens(),
-                        a1.getCompletionTokens() + a2.getCompletionTokens(),
-                        a1.getTotalTokens() + a2.getTotalTokens()))
+                        sum(a1.getPromptTokens(), a2.getPromptTokens()),
+                        sum(a1.getCompletionTokens(), a2.getCompletionTokens()),
+                        sum(a1.getTotalTokens(), a2.getTotalTokens())))
                 .orElse(new Usage());
 
         return Map.of("token_usage", usage, "model_name", this.model);
     }
 
+    private static Long sum(Long a, Long b) {
+        return (a != null ? a : 0L) + (b != null ? b : 0L);
+    }
+
     @Override
     public ChatResult _generate(List<BaseMessage> messages, List<String> stop) {
+        var chatCompletion = createChatCompletion(messages, stop);
+        if (stream) {
+            String content = streamContent(chatCompletion)
+                    .collect(StringBuilder::new, StringBuilder::append)
+                    .blockingGet()
+                    .toString();
+            // token usage is not reported for streamed responses
+            return new ChatResult(List.of(new ChatGeneration(new AIMessage(content))), null);
+        }
+        var response = client.create(chatCompletion);
+        return createChatResult(response);
+    }
+
+    @Override
+    public CompletableFuture<ChatResult> _generateAsync(List<BaseMessage> messages, List<String> stop) {
+        if (stream) {
+            return super._generateAsync(messages, stop);
+        }
+        return client.createAsync(createChatCompletion(messages, stop))
+                .thenApply(this::createChatResult);
+    }
+
+    @Override
+    public Flowable<String> stream(List<BaseMessage> messages, List<String> stop) {
+        return streamContent(createChatCompletion(messages, stop));
+    }
+
+    private Flowable<String> streamContent(ChatCompletion chatCompletion) {
+        return client.streamChatCompletion(chatCompletion)
+                .concatMapIterable(chunk -> chunk.getChoices()
+                        .stream()
+                        .map(ChatChoice::getDelta)
+                        .filter(delta -> delta != null && delta.getContent() != null)
+                        .map(Message::getContent)
+                        .toList());
+    }
+
+    private ChatCompletion createChatCompletion(List<BaseMessage> messages, List<String> stop) {
         var chatMessages = convertMessages(messages);
 
-        ChatCompletion chatCompletion = ChatCompletion.builder()
+        return ChatCompletion.builder()
                 .model(model)
                 .temperature(temperature)
                 .messages(chatMessages)
@@ -163,9 +243,6 @@ public class ChatOpenAI extends BaseChatModel {
                 .n(n)
                 .stop(stop)
                 .build();
-
-        var response = client.create(chatCompletion);
-        return createChatResult(response);
     }
 
     public List<Message> convertMessages(List<BaseMessage> messages) {
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.base;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable embedding vector backed by primitive floats, on the heap or off-heap.
+ * <p>
+ * It takes a quarter of the memory of a list of boxed floats. The views returned by {@link #asList()} and
+ * {@link #asFloatBuffer()} share the values without copying them.
+ *
+ * @author HamaWhite
+ */
+public final class EmbeddingVector {
+
+    private final FloatBuffer values;
+
+    private EmbeddingVector(FloatBuffer values) {
+        this.values = values;
+    }
+
+    /**
+     * Create a vector from a copy of the values.
+     */
+    public static EmbeddingVector of(float... values) {
+        return wrap(values.clone());
+    }
+
+    /**
+     * Create a vector from the values, which are copied and unboxed.
+     */
+    public static EmbeddingVector of(List<? extends Number> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).floatValue();
+        }
+        return wrap(array);
+    }
+
+    /**
+     * Create a vector backed by the array without copying it, the caller must not modify the array afterwards.
+     */
+    public static EmbeddingVector wrap(float[] values) {
+        return new EmbeddingVector(FloatBuffer.wrap(values));
+    }
+
+    /**
+     * Create a vector whose values are copied to native memory, outside the garbage-collected heap.
+     */
+    public static EmbeddingVector offHeap(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(values).flip();
+        return new EmbeddingVector(buffer);
+    }
+
+    /**
+     * Create a vector from packed little-endian float32 values, as written by {@link #toByteArray()}.
+     */
+    public static EmbeddingVector fromByteArray(byte[] bytes) {
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("Invalid length of packed float32 values: " + bytes.length);
+        }
+        float[] array = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(array);
+        return wrap(array);
+    }
+
+    public int dimension() {
+        return values.capacity();
+    }
+
+    public float get(int index) {
+        return values.get(index);
+    }
+
+    public boolean isOffHeap() {
+        return values.isDirect();
+    }
+
+    /**
+     * Copy the values into a new array.
+     */
+    public float[] toArray() {
+        if (values.hasArray()) {
+            return values.array().clone();
+        }
+        float[] array = new float[dimension()];
+        values.duplicate().get(array);
+        return array;
+    }
+
+    /**
+     * Pack the values as little-endian float32, four bytes per value.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer bytes = ByteBuffer.allocate(dimension() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values.duplicate());
+        return bytes.array();
+    }
+
+    /**
+     * Read-only view of the values.
+     */
+    public FloatBuffer asFloatBuffer() {
+        return values.asReadOnlyBuffer();
+    }
+
+    /**
+     * Unmodifiable list view of the values, boxing each value on access.
+     */
+    public List<Float> asList() {
+        return new FloatListView(values);
+    }
+
+    /**
+     * Dot product with a vector of the same dimension.
+     */
+    public float dot(EmbeddingVector other) {
+        checkDimension(other);
+        float sum = 0;
+        for (int i = 0; i < dimension(); i++) {
+            sum += values.get(i) * other.values.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Euclidean norm of the vector.
+     */
+    public float norm() {
+        return (float) Math.sqrt(dot(this));
+    }
+
+    /**
+     * Cosine similarity with a vector of the same dimension, 0 if either vector is zero.
+     */
+    public float cosineSimilarity(EmbeddingVector other) {
+        float norms = norm() * other.norm();
+        return norms == 0 ? 0 : dot(other) / norms;
+    }
+
+    private void checkDimension(EmbeddingVector other) {
+        if (dimension() != other.dimension()) {
+            throw new IllegalArgumentException(String.format("Vectors must have the same dimension, got %d and %d.",
+                    dimension(), other.dimension()));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof EmbeddingVector other && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    private static class FloatListView extends AbstractList<Float> implements RandomAccess {
+
+        private final FloatBuffer values;
+
+        FloatListView(FloatBuffer values) {
+            this.values = values;
+        }
+
+        @Override
+        public Float get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public int size() {
+            return values.capacity();
+        }
+    }
+}
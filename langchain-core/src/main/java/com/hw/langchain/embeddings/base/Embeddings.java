@@ -18,7 +18,10 @@
 
 package com.hw.langchain.embeddings.base;
 
+import com.hw.langchain.utils.ConcurrentUtils;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface for embedding models.
@@ -30,10 +33,28 @@ public interface Embeddings {
     /**
      * Embed search docs.
      */
-    List<List<Float>> embedDocuments(List<String> texts);
+    List<EmbeddingVector> embedDocuments(List<String> texts);
 
     /**
      * Embed query text.
      */
-    List<Float> embedQuery(String text);
+    EmbeddingVector embedQuery(String text);
+
+    /**
+     * Embed search docs asynchronously.
+     * The default runs embedDocuments on {@link ConcurrentUtils#blockingExecutor()}, non-blocking implementations
+     * should override it.
+     */
+    default CompletableFuture<List<EmbeddingVector>> embedDocumentsAsync(List<String> texts) {
+        return CompletableFuture.supplyAsync(() -> embedDocuments(texts), ConcurrentUtils.blockingExecutor());
+    }
+
+    /**
+     * Embed query text asynchronously.
+     * The default runs embedQuery on {@link ConcurrentUtils#blockingExecutor()}, non-blocking implementations should
+     * override it.
+     */
+    default CompletableFuture<EmbeddingVector> embedQueryAsync(String text) {
+        return CompletableFuture.supplyAsync(() -> embedQuery(text), ConcurrentUtils.blockingExecutor());
+    }
 }
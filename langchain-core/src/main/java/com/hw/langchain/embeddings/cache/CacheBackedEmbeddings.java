@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.BaseStore;
+
+import lombok.SneakyThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Embeddings that caches the document embeddings of an underlying model in a byte store, so unchanged texts are not
+ * embedded again when they are ingested again.
+ * <p>
+ * Entries are keyed by the SHA-256 of the namespace and the text, and hold the vector as packed little-endian
+ * float32 values. The namespace should identify the underlying model, such as its name, so vectors of different
+ * models never collide in a shared store. Only the texts missing from the store are sent to the underlying model,
+ * in a single call. Queries are not cached.
+ *
+ * @author HamaWhite
+ */
+public class CacheBackedEmbeddings implements Embeddings {
+
+    private final Embeddings underlyingEmbeddings;
+
+    private final BaseStore<String, byte[]> documentEmbeddingStore;
+
+    private final String namespace;
+
+    /**
+     * @param underlyingEmbeddings   the embedding model to use for the texts missing from the store
+     * @param documentEmbeddingStore the store of the document embeddings
+     * @param namespace              the namespace of the keys, such as the name of the underlying model
+     */
+    public CacheBackedEmbeddings(Embeddings underlyingEmbeddings, BaseStore<String, byte[]> documentEmbeddingStore,
+            String namespace) {
+        this.underlyingEmbeddings = underlyingEmbeddings;
+        this.documentEmbeddingStore = documentEmbeddingStore;
+        this.namespace = namespace;
+    }
+
+    @Override
+    public List<EmbeddingVector> embedDocuments(List<String> texts) {
+        Lookup lookup = lookup(texts);
+        if (lookup.missingTexts.isEmpty()) {
+            return lookup.complete(List.of());
+        }
+        return lookup.complete(underlyingEmbeddings.embedDocuments(lookup.missingTexts));
+    }
+
+    @Override
+    public EmbeddingVector embedQuery(String text) {
+        return underlyingEmbeddings.embedQuery(text);
+    }
+
+    @Override
+    public CompletableFuture<List<EmbeddingVector>> embedDocumentsAsync(List<String> texts) {
+        Lookup lookup = lookup(texts);
+        if (lookup.missingTexts.isEmpty()) {
+            return CompletableFuture.completedFuture(lookup.complete(List.of()));
+        }
+        return underlyingEmbeddings.embedDocumentsAsync(lookup.missingTexts).thenApply(lookup::complete);
+    }
+
+    @Override
+    public CompletableFuture<EmbeddingVector> embedQueryAsync(String text) {
+        return underlyingEmbeddings.embedQueryAsync(text);
+    }
+
+    /**
+     * Look up the texts in the store, collecting the distinct texts that are missing.
+     */
+    private Lookup lookup(List<String> texts) {
+        List<String> keys = texts.stream()
+                .map(this::key)
+                .toList();
+        List<byte[]> values = documentEmbeddingStore.mget(keys);
+
+        EmbeddingVector[] vectors = new EmbeddingVector[texts.size()];
+        Map<String, Integer> missingIndexes = new LinkedHashMap<>();
+        List<String> missingTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                vectors[i] = EmbeddingVector.fromByteArray(value);
+            } else if (!missingIndexes.containsKey(keys.get(i))) {
+                missingIndexes.put(keys.get(i), missingTexts.size());
+                missingTexts.add(texts.get(i));
+            }
+        }
+        return new Lookup(keys, vectors, missingIndexes, missingTexts);
+    }
+
+    @SneakyThrows(NoSuchAlgorithmException.class)
+    private String key(String text) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(namespace.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Result of a store lookup, completed with the embeddings of the missing texts.
+     */
+    private class Lookup {
+
+        private final List<String> keys;
+
+        private final EmbeddingVector[] vectors;
+
+        private final Map<String, Integer> missingIndexes;
+
+        private final List<String> missingTexts;
+
+        Lookup(List<String> keys, EmbeddingVector[] vectors, Map<String, Integer> missingIndexes,
+                List<String> missingTexts) {
+            this.keys = keys;
+            this.vectors = vectors;
+            this.missingIndexes = missingIndexes;
+            this.missingTexts = missingTexts;
+        }
+
+        /**
+         * Store the embeddings of the missing texts and merge them with the cached ones, in text order.
+         */
+        List<EmbeddingVector> complete(List<EmbeddingVector> missingVectors) {
+            if (!missingTexts.isEmpty()) {
+                Map<String, byte[]> entries = new LinkedHashMap<>(missingIndexes.size());
+                missingIndexes.forEach((key, index) -> entries.put(key, missingVectors.get(index).toByteArray()));
+                documentEmbeddingStore.mset(entries);
+            }
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i] == null) {
+                    vectors[i] = missingVectors.get(missingIndexes.get(keys.get(i)));
+                }
+            }
+            return List.of(vectors);
+        }
+    }
+}
@@ -18,25 +18,29 @@
 
 package com.hw.langchain.embeddings.openai;
 
-import com.google.common.primitives.Doubles;
-import com.google.common.primitives.Floats;
+import com.hw.client.http.WireLogging;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
 import com.hw.langchain.embeddings.base.Embeddings;
-import com.hw.langchain.exception.LangChainException;
 import com.hw.openai.OpenAiClient;
 import com.hw.openai.entity.embeddings.Embedding;
+import com.hw.openai.entity.embeddings.EmbeddingData;
 import com.hw.openai.entity.embeddings.EmbeddingResp;
-import com.knuddels.jtokkit.Encodings;
+import com.hw.openai.entity.embeddings.EncodingFormat;
+import com.hw.openai.ratelimit.RateLimiter;
+import com.hw.openai.utils.TokenizerUtils;
 import com.knuddels.jtokkit.api.Encoding;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
-
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import okhttp3.OkHttpClient;
 
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static com.hw.langchain.math.utils.VectorUtils.addScaled;
+import static com.hw.langchain.math.utils.VectorUtils.normalize;
+import static com.hw.langchain.utils.ConcurrentUtils.mapConcurrently;
 import static com.hw.langchain.utils.Utils.getOrEnvOrDefault;
 
 /**
@@ -76,12 +80,47 @@ public class OpenAIEmbeddings implements Embeddings {
     @Builder.Default
     private int chunkSize = 1000;
 
+    /**
+     * Format in which the embeddings are transferred. Default is BASE64, which is decoded straight into float arrays.
+     * Set it to FLOAT for OpenAI-compatible servers that do not support it.
+     */
+    @Builder.Default
+    private EncodingFormat encodingFormat = EncodingFormat.BASE64;
+
+    /**
+     * Maximum number of chunk requests to send concurrently. Default is 1, which sends them one after another.
+     * Each request still reserves its capacity from the rateLimiter, if set.
+     */
+    @Builder.Default
+    private int maxConcurrency = 1;
+
+    /**
+     * Executor running the concurrent chunk requests. If not set, a temporary pool of maxConcurrency threads is used.
+     */
+    private Executor executor;
+
     /**
      * Maximum number of retries to make when generating.
      */
     @Builder.Default
     private int maxRetries = 6;
 
+    /**
+     * Limiter of the requests and tokens per minute, shared with the other models of the same organization.
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * HTTP client shared with the other models, whose connection pool and dispatcher are reused.
+     */
+    private OkHttpClient httpClient;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only.
+     */
+    @Builder.Default
+    private WireLogging wireLogging = WireLogging.builder().build();
+
     /**
      * Timeout for requests to OpenAI completion API. Default is 16 seconds.
      */
@@ -103,6 +142,10 @@ public class OpenAIEmbeddings implements Embeddings {
                 .openaiOrganization(openaiOrganization)
                 .openaiProxy(openaiProxy)
                 .requestTimeout(requestTimeout)
+                .maxRetries(maxRetries)
+                .rateLimiter(rateLimiter)
+                .httpClient(httpClient)
+                .wireLogging(wireLogging)
                 .build()
                 .init();
         return this;
@@ -111,14 +154,61 @@ public class OpenAIEmbeddings implements Embeddings {
     /**
      * please refer to https://github.com/openai/openai-cookbook/blob/main/examples/Embedding_long_inputs.ipynb
      */
-    private List<List<Float>> getLenSafeEmbeddings(List<String> texts) {
-        List<List<Float>> embeddings = new ArrayList<>(texts.size());
+    private List<EmbeddingVector> getLenSafeEmbeddings(List<String> texts) {
+        List<List<Integer>> tokens = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        tokenize(texts, tokens, indices);
 
+        List<List<?>> inputs = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i += chunkSize) {
+            inputs.add(tokens.subList(i, Math.min(i + chunkSize, tokens.size())));
+        }
+        List<EmbeddingResp> responses = executor != null
+                ? mapConcurrently(inputs, this::embedWithRetry, executor, maxConcurrency)
+                : mapConcurrently(inputs, this::embedWithRetry, maxConcurrency);
+        return averageEmbeddings(texts.size(), tokens, indices, collectEmbeddings(responses));
+    }
+
+    /**
+     * Same as getLenSafeEmbeddings, but all chunk requests are sent without blocking the calling thread.
+     * The number of requests in flight is bounded by the dispatcher of the client.
+     */
+    private CompletableFuture<List<EmbeddingVector>> getLenSafeEmbeddingsAsync(List<String> texts) {
         List<List<Integer>> tokens = new ArrayList<>();
         List<Integer> indices = new ArrayList<>();
-        Encoding encoding = Encodings.newDefaultEncodingRegistry()
-                .getEncodingForModel(model)
-                .orElseThrow(() -> new LangChainException("Encoding not found."));
+        tokenize(texts, tokens, indices);
+
+        List<CompletableFuture<EmbeddingResp>> futures = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i += chunkSize) {
+            List<?> input = tokens.subList(i, Math.min(i + chunkSize, tokens.size()));
+            futures.add(embedWithRetryAsync(input));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    List<EmbeddingResp> responses = futures.stream().map(CompletableFuture::join).toList();
+                    return averageEmbeddings(texts.size(), tokens, indices, collectEmbeddings(responses));
+                });
+    }
+
+    /**
+     * Flatten the embeddings of the chunk requests, which must be in chunk order, into the order of the inputs.
+     */
+    private static List<float[]> collectEmbeddings(List<EmbeddingResp> responses) {
+        List<float[]> embeddings = new ArrayList<>();
+        for (EmbeddingResp response : responses) {
+            // the data of one request is indexed by input, restore that order before flattening.
+            response.getData().stream()
+                    .sorted(Comparator.comparing(EmbeddingData::getIndex, Comparator.nullsLast(Integer::compare)))
+                    .forEach(data -> embeddings.add(data.getEmbedding()));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Split every text into chunks of at most embeddingCtxLength tokens, recording the text index of each chunk.
+     */
+    private void tokenize(List<String> texts, List<List<Integer>> tokens, List<Integer> indices) {
+        Encoding encoding = TokenizerUtils.encodingForModel(model);
 
         for (int i = 0; i < texts.size(); i++) {
             String text = texts.get(i);
@@ -133,35 +223,44 @@ public class OpenAIEmbeddings implements Embeddings {
                 indices.add(i);
             }
         }
+    }
 
-        List<List<Float>> batchedEmbeddings = new ArrayList<>();
-        for (int i = 0; i < tokens.size(); i += chunkSize) {
-            List<?> input = tokens.subList(i, Math.min(i + chunkSize, tokens.size()));
-            var response = embedWithRetry(input);
-            response.getData().forEach(result -> batchedEmbeddings.add(result.getEmbedding()));
+    /**
+     * Average the chunk embeddings of each text, weighted by the number of tokens in the chunk, and normalize it.
+     * The weighted sum is not divided by the total weight, as normalizing cancels it out. The embedding of a text
+     * with a single chunk is normalized in place, without averaging.
+     */
+    private List<EmbeddingVector> averageEmbeddings(int numTexts, List<List<Integer>> tokens, List<Integer> indices,
+            List<float[]> batchedEmbeddings) {
+        int[] numChunks = new int[numTexts];
+        for (int index : indices) {
+            numChunks[index]++;
         }
-
-        List<? extends List<List<Float>>> results = IntStream.range(0, texts.size())
-                .mapToObj(i -> new ArrayList<List<Float>>())
-                .toList();
-        List<? extends List<Integer>> numTokensInBatch = IntStream.range(0, texts.size())
-                .mapToObj(i -> new ArrayList<Integer>())
-                .toList();
+        float[][] sums = new float[numTexts][];
         for (int i = 0; i < indices.size(); i++) {
             int index = indices.get(i);
-            results.get(index).add(batchedEmbeddings.get(i));
-            numTokensInBatch.get(index).add(tokens.get(i).size());
+            float[] embedding = batchedEmbeddings.get(i);
+            if (numChunks[index] == 1) {
+                sums[index] = embedding;
+            } else {
+                if (sums[index] == null) {
+                    sums[index] = new float[embedding.length];
+                }
+                addScaled(sums[index], embedding, tokens.get(i).size());
+            }
         }
 
-        for (int i = 0; i < texts.size(); i++) {
-            INDArray average;
-            try (INDArray resultArray =
-                    Nd4j.create(results.get(i).stream().map(Floats::toArray).toArray(float[][]::new))) {
-                INDArray weightsArray = Nd4j.create(Doubles.toArray(numTokensInBatch.get(i)));
-                average = resultArray.mulRowVector(weightsArray).sum(0).div(weightsArray.sum(0));
+        List<EmbeddingVector> embeddings = new ArrayList<>(numTexts);
+        float[] emptyEmbedding = null;
+        for (float[] sum : sums) {
+            if (sum == null) {
+                // an empty text has no chunk, embed it on its own.
+                if (emptyEmbedding == null) {
+                    emptyEmbedding = embedWithRetry(List.of("")).getData().get(0).getEmbedding();
+                }
+                sum = emptyEmbedding.clone();
             }
-            INDArray normalizedAverage = average.div(average.norm2Number());
-            embeddings.add(Floats.asList(normalizedAverage.toFloatVector()));
+            embeddings.add(EmbeddingVector.wrap(normalize(sum)));
         }
         return embeddings;
     }
@@ -169,7 +268,7 @@ public class OpenAIEmbeddings implements Embeddings {
     /**
      * Call out to OpenAI's embedding endpoint.
      */
-    public List<Float> embeddingFunc(String text) {
+    public EmbeddingVector embeddingFunc(String text) {
         if (text.length() > embeddingCtxLength) {
             return getLenSafeEmbeddings(List.of(text)).get(0);
         } else {
@@ -178,7 +277,7 @@ public class OpenAIEmbeddings implements Embeddings {
                 // replace newlines, which can negatively affect performance.
                 text = text.replace("\n", " ");
             }
-            return embedWithRetry(List.of(text)).getData().get(0).getEmbedding();
+            return EmbeddingVector.wrap(embedWithRetry(List.of(text)).getData().get(0).getEmbedding());
         }
     }
 
@@ -189,7 +288,7 @@ public class OpenAIEmbeddings implements Embeddings {
      * @return List of embeddings, one for each text.
      */
     @Override
-    public List<List<Float>> embedDocuments(List<String> texts) {
+    public List<EmbeddingVector> embedDocuments(List<String> texts) {
         // NOTE: to keep things simple, we assume the list may contain texts longer
         // than the maximum context and use length-safe embedding function.
         return this.getLenSafeEmbeddings(texts);
@@ -202,15 +301,45 @@ public class OpenAIEmbeddings implements Embeddings {
      * @return Embedding for the text.
      */
     @Override
-    public List<Float> embedQuery(String text) {
+    public EmbeddingVector embedQuery(String text) {
         return embeddingFunc(text);
     }
 
+    @Override
+    public CompletableFuture<List<EmbeddingVector>> embedDocumentsAsync(List<String> texts) {
+        return getLenSafeEmbeddingsAsync(texts);
+    }
+
+    @Override
+    public CompletableFuture<EmbeddingVector> embedQueryAsync(String text) {
+        if (text.length() > embeddingCtxLength) {
+            return getLenSafeEmbeddingsAsync(List.of(text)).thenApply(embeddings -> embeddings.get(0));
+        }
+        if (model.endsWith("001")) {
+            text = text.replace("\n", " ");
+        }
+        return embedWithRetryAsync(List.of(text))
+                .thenApply(response -> EmbeddingVector.wrap(response.getData().get(0).getEmbedding()));
+    }
+
+    /**
+     * Embed the input, the client retries rate limits and transient failures up to maxRetries times.
+     */
     public EmbeddingResp embedWithRetry(List<?> input) {
         var embedding = Embedding.builder()
                 .model(model)
                 .input(input)
+                .encodingFormat(encodingFormat)
                 .build();
         return client.embedding(embedding);
     }
+
+    public CompletableFuture<EmbeddingResp> embedWithRetryAsync(List<?> input) {
+        var embedding = Embedding.builder()
+                .model(model)
+                .input(input)
+                .encodingFormat(encodingFormat)
+                .build();
+        return client.embeddingAsync(embedding);
+    }
 }
@@ -19,13 +19,18 @@
 package com.hw.langchain.llms.base;
 
 import com.hw.langchain.base.language.BaseLanguageModel;
-import com.hw.langchain.schema.BaseMessage;
-import com.hw.langchain.schema.LLMResult;
-import com.hw.langchain.schema.PromptValue;
+import com.hw.langchain.schema.*;
+import com.hw.langchain.utils.ConcurrentUtils;
 
+import io.reactivex.Flowable;
 import lombok.experimental.SuperBuilder;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 /**
  * LLM wrapper should take in a prompt and return a string.
@@ -34,16 +39,37 @@ import java.util.List;
 @SuperBuilder
 public abstract class BaseLLM implements BaseLanguageModel {
 
+    /**
+     * Cache for the generations, nothing is cached if not set.
+     */
+    protected BaseCache cache;
+
     /**
      * Return type of llm.
      */
     public abstract String llmType();
 
+    /**
+     * Get the identifying parameters, which together with llmType and stop key the cached generations.
+     */
+    public Map<String, Object> identifyingParams() {
+        return Map.of();
+    }
+
     /**
      * Run the LLM on the given prompts.
      */
     protected abstract LLMResult _generate(List<String> prompts, List<String> stop);
 
+    /**
+     * Run the LLM on the given prompts asynchronously.
+     * The default runs _generate on {@link ConcurrentUtils#blockingExecutor()}, LLMs backed by a non-blocking client
+     * should override it.
+     */
+    protected CompletableFuture<LLMResult> _generateAsync(List<String> prompts, List<String> stop) {
+        return CompletableFuture.supplyAsync(() -> _generate(prompts, stop), ConcurrentUtils.blockingExecutor());
+    }
+
     /**
      * Check Cache and run the LLM on the given prompt and input.
      */
@@ -55,11 +81,100 @@ public abstract class BaseLLM implements BaseLanguageModel {
         return call(prompt, null);
     }
 
+    public Flowable<String> stream(String prompt) {
+        return stream(prompt, null);
+    }
+
+    /**
+     * Stream the text of the completion as it is generated.
+     * The default emits the whole completion at once, LLMs supporting server-sent events should override it.
+     */
+    public Flowable<String> stream(String prompt, List<String> stop) {
+        return Flowable.fromCallable(() -> call(prompt, stop));
+    }
+
     /**
-     * Run the LLM on the given prompt and input.
+     * Run the LLM on the given prompt and input, only the prompts missing from the cache are passed to _generate.
      */
     public LLMResult generate(List<String> prompts, List<String> stop) {
-        return _generate(prompts, stop);
+        if (cache == null) {
+            return _generate(prompts, stop);
+        }
+        String llmString = getLlmString(stop);
+        List<List<Generation>> generations = new ArrayList<>(cache.lookup(prompts, llmString));
+        List<Integer> missingIndexes = missingIndexes(generations);
+        if (missingIndexes.isEmpty()) {
+            return new LLMResult(generations, Map.of());
+        }
+        LLMResult newResult = _generate(select(prompts, missingIndexes), stop);
+        return updateCache(prompts, llmString, generations, missingIndexes, newResult);
+    }
+
+    /**
+     * Run the LLM on the given prompt and input asynchronously.
+     */
+    public CompletableFuture<LLMResult> generateAsync(List<String> prompts, List<String> stop) {
+        if (cache == null) {
+            return _generateAsync(prompts, stop);
+        }
+        String llmString = getLlmString(stop);
+        List<List<Generation>> generations = new ArrayList<>(cache.lookup(prompts, llmString));
+        List<Integer> missingIndexes = missingIndexes(generations);
+        if (missingIndexes.isEmpty()) {
+            return CompletableFuture.completedFuture(new LLMResult(generations, Map.of()));
+        }
+        return _generateAsync(select(prompts, missingIndexes), stop)
+                .thenApply(newResult -> updateCache(prompts, llmString, generations, missingIndexes, newResult));
+    }
+
+    /**
+     * Build the string identifying this LLM and its parameters in the cache.
+     */
+    protected String getLlmString(List<String> stop) {
+        Map<String, Object> params = new TreeMap<>(identifyingParams());
+        params.put("_type", llmType());
+        params.put("stop", stop);
+        return params.toString();
+    }
+
+    private static List<Integer> missingIndexes(List<List<Generation>> generations) {
+        return IntStream.range(0, generations.size())
+                .filter(i -> generations.get(i) == null)
+                .boxed()
+                .toList();
+    }
+
+    private static List<String> select(List<String> prompts, List<Integer> indexes) {
+        return indexes.stream()
+                .map(prompts::get)
+                .toList();
+    }
+
+    /**
+     * Fill the missing generations with the new result and write them to the cache.
+     */
+    private LLMResult updateCache(List<String> prompts, String llmString, List<List<Generation>> generations,
+            List<Integer> missingIndexes, LLMResult newResult) {
+        List<List<Generation>> newGenerations = new ArrayList<>(missingIndexes.size());
+        for (int i = 0; i < missingIndexes.size(); i++) {
+            List<Generation> result = List.copyOf(newResult.getGenerations().get(i));
+            generations.set(missingIndexes.get(i), result);
+            newGenerations.add(result);
+        }
+        cache.update(select(prompts, missingIndexes), llmString, newGenerations);
+        return new LLMResult(generations, newResult.getLlmOutput());
+    }
+
+    /**
+     * Run the LLM on the given prompt and input asynchronously.
+     */
+    public CompletableFuture<String> callAsync(String prompt, List<String> stop) {
+        return generateAsync(List.of(prompt), stop)
+                .thenApply(result -> result.getGenerations().get(0).get(0).getText());
+    }
+
+    public CompletableFuture<String> callAsync(String prompt) {
+        return callAsync(prompt, null);
     }
 
     @Override
@@ -89,4 +204,32 @@ public abstract class BaseLLM implements BaseLanguageModel {
     public BaseMessage predictMessages(List<BaseMessage> messages, List<String> stop) {
         return null;
     }
+
+    @Override
+    public CompletableFuture<LLMResult> generatePromptAsync(List<PromptValue> prompts, List<String> stop) {
+        List<String> promptStrings = prompts.stream()
+                .map(PromptValue::toString)
+                .toList();
+        return generateAsync(promptStrings, stop);
+    }
+
+    @Override
+    public CompletableFuture<String> predictAsync(String text) {
+        return predictAsync(text, null);
+    }
+
+    @Override
+    public CompletableFuture<String> predictAsync(String text, List<String> stop) {
+        return callAsync(text, stop);
+    }
+
+    @Override
+    public CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages) {
+        return predictMessagesAsync(messages, null);
+    }
+
+    @Override
+    public CompletableFuture<BaseMessage> predictMessagesAsync(List<BaseMessage> messages, List<String> stop) {
+        return CompletableFuture.completedFuture(predictMessages(messages, stop));
+    }
 }
@@ -18,6 +18,7 @@
 
 package com.hw.langchain.llms.openai;
 
+import com.hw.client.http.WireLogging;
 import com.hw.langchain.llms.base.BaseLLM;
 import com.hw.langchain.schema.Generation;
 import com.hw.langchain.schema.LLMResult;
@@ -25,13 +26,19 @@ import com.hw.openai.OpenAiClient;
 import com.hw.openai.entity.completions.Choice;
 import com.hw.openai.entity.completions.Completion;
 import com.hw.openai.entity.completions.CompletionResp;
+import com.hw.openai.ratelimit.RateLimiter;
+import com.hw.openai.utils.TokenizerUtils;
 
+import io.reactivex.Flowable;
 import lombok.Builder;
 import lombok.experimental.SuperBuilder;
+import okhttp3.OkHttpClient;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.hw.langchain.utils.ConcurrentUtils.mapConcurrently;
 
 /**
  * Wrapper around OpenAI large language models.
@@ -41,6 +48,32 @@ import static com.google.common.base.Preconditions.checkArgument;
 @SuperBuilder
 public class BaseOpenAI extends BaseLLM {
 
+    private static final Map<String, Integer> MODEL_CONTEXT_SIZES = Map.ofEntries(
+            Map.entry("gpt-4", 8192),
+            Map.entry("gpt-4-0314", 8192),
+            Map.entry("gpt-4-0613", 8192),
+            Map.entry("gpt-4-32k", 32768),
+            Map.entry("gpt-4-32k-0314", 32768),
+            Map.entry("gpt-4-32k-0613", 32768),
+            Map.entry("gpt-3.5-turbo", 4096),
+            Map.entry("gpt-3.5-turbo-0301", 4096),
+            Map.entry("gpt-3.5-turbo-0613", 4096),
+            Map.entry("gpt-3.5-turbo-16k", 16385),
+            Map.entry("gpt-3.5-turbo-16k-0613", 16385),
+            Map.entry("text-ada-001", 2049),
+            Map.entry("ada", 2049),
+            Map.entry("text-babbage-001", 2040),
+            Map.entry("babbage", 2049),
+            Map.entry("text-curie-001", 2049),
+            Map.entry("curie", 2049),
+            Map.entry("davinci", 2049),
+            Map.entry("text-davinci-003", 4097),
+            Map.entry("text-davinci-002", 4097),
+            Map.entry("code-davinci-002", 8001),
+            Map.entry("code-davinci-001", 8001),
+            Map.entry("code-cushman-002", 2048),
+            Map.entry("code-cushman-001", 2048));
+
     protected OpenAiClient client;
 
     /**
@@ -116,6 +149,12 @@ public class BaseOpenAI extends BaseLLM {
     @Builder.Default
     protected int batchSize = 20;
 
+    /**
+     * Maximum number of batches to send to OpenAI concurrently. Default is 1, which sends them one after another.
+     */
+    @Builder.Default
+    protected int maxConcurrency = 1;
+
     /**
      * Timeout for requests to OpenAI completion API. Default is 16 seconds.
      */
@@ -133,6 +172,22 @@ public class BaseOpenAI extends BaseLLM {
     @Builder.Default
     protected int maxRetries = 6;
 
+    /**
+     * Limiter of the requests and tokens per minute, shared with the other models of the same organization.
+     */
+    protected RateLimiter rateLimiter;
+
+    /**
+     * HTTP client shared with the other models, whose connection pool and dispatcher are reused.
+     */
+    protected OkHttpClient httpClient;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only.
+     */
+    @Builder.Default
+    protected WireLogging wireLogging = WireLogging.builder().build();
+
     /**
      * Whether to stream the results or not.
      */
@@ -153,6 +208,21 @@ public class BaseOpenAI extends BaseLLM {
         return "openai";
     }
 
+    @Override
+    public Map<String, Object> identifyingParams() {
+        Map<String, Object> params = new HashMap<>(16);
+        params.put("model", model);
+        params.put("temperature", temperature);
+        params.put("maxTokens", maxTokens);
+        params.put("topP", topP);
+        params.put("frequencyPenalty", frequencyPenalty);
+        params.put("presencePenalty", presencePenalty);
+        params.put("n", n);
+        params.put("bestOf", bestOf);
+        params.put("logitBias", logitBias);
+        return params;
+    }
+
     /**
      * Call out to OpenAI's endpoint with k unique prompts.
      *
@@ -162,12 +232,90 @@ public class BaseOpenAI extends BaseLLM {
      */
     @Override
     protected LLMResult _generate(List<String> prompts, List<String> stop) {
-        List<Choice> choices = new ArrayList<>();
+        if (stream) {
+            checkArgument(prompts.size() == 1, "Cannot stream results with multiple prompts.");
+            Choice choice = streamChoices(createCompletion(prompts, stop))
+                    .reduce(BaseOpenAI::mergeChoice)
+                    .blockingGet(new Choice());
+            return createLLMResult(List.of(choice), prompts, Map.of());
+        }
         List<List<String>> subPrompts = getSubPrompts(prompts);
-        Completion completion = Completion.builder()
+        List<CompletionResp> responses = mapConcurrently(subPrompts,
+                prompt -> client.create(createCompletion(prompt, stop)), maxConcurrency);
+
+        return createLLMResult(collectChoices(responses), prompts, Map.of());
+    }
+
+    /**
+     * Send all sub-batches without blocking, the number of requests in flight is bounded by the client's dispatcher.
+     */
+    @Override
+    protected CompletableFuture<LLMResult> _generateAsync(List<String> prompts, List<String> stop) {
+        if (stream) {
+            return super._generateAsync(prompts, stop);
+        }
+        List<CompletableFuture<CompletionResp>> futures = getSubPrompts(prompts).stream()
+                .map(prompt -> client.createAsync(createCompletion(prompt, stop)))
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    List<CompletionResp> responses = futures.stream().map(CompletableFuture::join).toList();
+                    return createLLMResult(collectChoices(responses), prompts, Map.of());
+                });
+    }
+
+    @Override
+    public Flowable<String> stream(String prompt, List<String> stop) {
+        return streamChoices(createCompletion(List.of(prompt), stop))
+                .map(Choice::getText)
+                .filter(text -> !text.isEmpty());
+    }
+
+    private Flowable<Choice> streamChoices(Completion completion) {
+        return client.streamCompletion(completion)
+                .concatMapIterable(CompletionResp::getChoices)
+                .map(choice -> {
+                    if (choice.getText() == null) {
+                        choice.setText("");
+                    }
+                    return choice;
+                });
+    }
+
+    /**
+     * Append the text of a streamed chunk, the finish reason and logprobs are taken from the latest chunk.
+     */
+    private static Choice mergeChoice(Choice aggregated, Choice chunk) {
+        aggregated.setText(aggregated.getText() + chunk.getText());
+        aggregated.setFinishReason(chunk.getFinishReason());
+        aggregated.setLogprobs(chunk.getLogprobs());
+        return aggregated;
+    }
+
+    /**
+     * Flatten the choices of the sub-batch responses, which must be in prompt order.
+     */
+    private List<Choice> collectChoices(List<CompletionResp> responses) {
+        List<Choice> choices = new ArrayList<>();
+        for (CompletionResp response : responses) {
+            // choices of one request are indexed by prompt, restore that order before flattening.
+            response.getChoices().stream()
+                    .sorted(Comparator.comparing(Choice::getIndex, Comparator.nullsLast(Integer::compare)))
+                    .forEach(choices::add);
+        }
+        return choices;
+    }
+
+    /**
+     * Create the completion request for a batch of prompts.
+     */
+    private Completion createCompletion(List<String> prompt, List<String> stop) {
+        return Completion.builder()
                 .model(model)
+                .prompt(prompt)
                 .temperature(temperature)
-                .maxTokens(maxTokens)
+                .maxTokens(maxTokens == -1 ? maxTokensForPrompt(prompt.get(0)) : maxTokens)
                 .topP(topP)
                 .frequencyPenalty(frequencyPenalty)
                 .presencePenalty(presencePenalty)
@@ -175,14 +323,6 @@ public class BaseOpenAI extends BaseLLM {
                 .logitBias(logitBias)
                 .stop(stop)
                 .build();
-
-        for (var prompt : subPrompts) {
-            completion.setPrompt(prompt);
-            CompletionResp response = client.create(completion);
-            choices.addAll(response.getChoices());
-        }
-
-        return createLLMResult(choices, prompts, Map.of());
     }
 
     /**
@@ -220,7 +360,6 @@ public class BaseOpenAI extends BaseLLM {
     private List<List<String>> getSubPrompts(List<String> prompts) {
         if (maxTokens == -1) {
             checkArgument(prompts.size() == 1, "maxTokens set to -1 not supported for multiple inputs.");
-            maxTokens = maxTokensForPrompt(prompts.get(0));
         }
         List<List<String>> subPrompts = new ArrayList<>();
         for (int i = 0; i < prompts.size(); i += this.batchSize) {
@@ -229,14 +368,41 @@ public class BaseOpenAI extends BaseLLM {
         return subPrompts;
     }
 
+    /**
+     * Calculate the num tokens with the cached tiktoken encoding of the model.
+     *
+     * @param text The text to count the tokens of.
+     * @return The number of tokens in the text.
+     */
+    public int getNumTokens(String text) {
+        return TokenizerUtils.countTokens(model, text);
+    }
+
+    /**
+     * Calculate the maximum number of tokens possible to generate for a model.
+     *
+     * @param modelName The modelname we want to know the context size for.
+     * @return The maximum context size
+     */
+    public static int modelNameToContextSize(String modelName) {
+        // fine-tuned models are named after their base model, e.g. curie:ft-org-2023-01-01-00-00-00
+        String baseModel = modelName.contains("ft-") ? modelName.split(":")[0] : modelName;
+        Integer contextSize = MODEL_CONTEXT_SIZES.get(baseModel);
+        if (contextSize == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown model: %s. Please provide a valid OpenAI model name. Known models are: %s",
+                    modelName, String.join(", ", MODEL_CONTEXT_SIZES.keySet())));
+        }
+        return contextSize;
+    }
+
     /**
      * Calculate the maximum number of tokens possible to generate for a prompt.
      *
      * @param prompt The prompt to pass into the model.
      * @return The maximum number of tokens to generate for a prompt.
      */
-    private int maxTokensForPrompt(String prompt) {
-        // TODO
-        return 0;
+    public int maxTokensForPrompt(String prompt) {
+        return modelNameToContextSize(model) - getNumTokens(prompt);
     }
 }
@@ -50,6 +50,10 @@ public class OpenAI extends BaseOpenAI {
                 .openaiOrganization(openaiOrganization)
                 .openaiProxy(openaiProxy)
                 .requestTimeout(requestTimeout)
+                .maxRetries(maxRetries)
+                .rateLimiter(rateLimiter)
+                .httpClient(httpClient)
+                .wireLogging(wireLogging)
                 .build()
                 .init();
         return this;
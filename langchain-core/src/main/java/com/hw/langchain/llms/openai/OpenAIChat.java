@@ -18,19 +18,25 @@
 
 package com.hw.langchain.llms.openai;
 
+import com.hw.client.http.WireLogging;
 import com.hw.langchain.llms.base.BaseLLM;
 import com.hw.langchain.schema.Generation;
 import com.hw.langchain.schema.LLMResult;
 import com.hw.langchain.utils.Utils;
 import com.hw.openai.OpenAiClient;
+import com.hw.openai.entity.chat.ChatChoice;
 import com.hw.openai.entity.chat.ChatCompletion;
 import com.hw.openai.entity.chat.ChatCompletionResp;
 import com.hw.openai.entity.chat.Message;
+import com.hw.openai.ratelimit.RateLimiter;
 
+import io.reactivex.Flowable;
 import lombok.Builder;
 import lombok.experimental.SuperBuilder;
+import okhttp3.OkHttpClient;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -110,6 +116,22 @@ public class OpenAIChat extends BaseLLM {
     @Builder.Default
     protected int maxRetries = 6;
 
+    /**
+     * Limiter of the requests and tokens per minute, shared with the other models of the same organization.
+     */
+    protected RateLimiter rateLimiter;
+
+    /**
+     * HTTP client shared with the other models, whose connection pool and dispatcher are reused.
+     */
+    protected OkHttpClient httpClient;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only.
+     */
+    @Builder.Default
+    protected WireLogging wireLogging = WireLogging.builder().build();
+
     /**
      * Series of messages for Chat input.
      */
@@ -144,6 +166,10 @@ public class OpenAIChat extends BaseLLM {
                 .openaiOrganization(openaiOrganization)
                 .openaiProxy(openaiProxy)
                 .requestTimeout(requestTimeout)
+                .maxRetries(maxRetries)
+                .rateLimiter(rateLimiter)
+                .httpClient(httpClient)
+                .wireLogging(wireLogging)
                 .build()
                 .init();
         return this;
@@ -154,11 +180,63 @@ public class OpenAIChat extends BaseLLM {
         return "openai-chat";
     }
 
+    @Override
+    public Map<String, Object> identifyingParams() {
+        Map<String, Object> params = new HashMap<>(16);
+        params.put("model", model);
+        params.put("temperature", temperature);
+        params.put("maxTokens", maxTokens);
+        params.put("topP", topP);
+        params.put("frequencyPenalty", frequencyPenalty);
+        params.put("presencePenalty", presencePenalty);
+        params.put("n", n);
+        params.put("logitBias", logitBias);
+        params.put("prefixMessages", prefixMessages);
+        return params;
+    }
+
     @Override
     protected LLMResult _generate(List<String> prompts, List<String> stop) {
+        ChatCompletion chatCompletion = createChatCompletion(prompts, stop);
+        if (stream) {
+            String text = streamContent(chatCompletion)
+                    .collect(StringBuilder::new, StringBuilder::append)
+                    .blockingGet()
+                    .toString();
+            return new LLMResult(List.of(List.of(Generation.builder().text(text).build())), null);
+        }
+        ChatCompletionResp response = client.create(chatCompletion);
+        return createLLMResult(response);
+    }
+
+    @Override
+    protected CompletableFuture<LLMResult> _generateAsync(List<String> prompts, List<String> stop) {
+        if (stream) {
+            return super._generateAsync(prompts, stop);
+        }
+        return client.createAsync(createChatCompletion(prompts, stop))
+                .thenApply(this::createLLMResult);
+    }
+
+    @Override
+    public Flowable<String> stream(String prompt, List<String> stop) {
+        return streamContent(createChatCompletion(List.of(prompt), stop));
+    }
+
+    private Flowable<String> streamContent(ChatCompletion chatCompletion) {
+        return client.streamChatCompletion(chatCompletion)
+                .concatMapIterable(chunk -> chunk.getChoices()
+                        .stream()
+                        .map(ChatChoice::getDelta)
+                        .filter(delta -> delta != null && delta.getContent() != null)
+                        .map(Message::getContent)
+                        .toList());
+    }
+
+    private ChatCompletion createChatCompletion(List<String> prompts, List<String> stop) {
         List<Message> messages = getChatMessages(prompts);
 
-        ChatCompletion chatCompletion = ChatCompletion.builder()
+        return ChatCompletion.builder()
                 .model(model)
                 .temperature(temperature)
                 .messages(messages)
@@ -170,9 +248,9 @@ public class OpenAIChat extends BaseLLM {
                 .logitBias(logitBias)
                 .stop(stop)
                 .build();
+    }
 
-        ChatCompletionResp response = client.create(chatCompletion);
-
+    private LLMResult createLLMResult(ChatCompletionResp response) {
         List<List<Generation>> generations = new ArrayList<>();
         Generation generation = Generation.builder()
                 .text(response.getChoices().get(0).getMessage().getContent())
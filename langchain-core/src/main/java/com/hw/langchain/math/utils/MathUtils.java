@@ -18,17 +18,19 @@
 
 package com.hw.langchain.math.utils;
 
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.util.Arrays;
 import java.util.List;
 
-import static com.hw.langchain.vectorstores.utils.ArrayUtils.listToArray;
+import static com.hw.langchain.vectorstores.utils.Nd4jUtils.createFromVectors;
 import static org.nd4j.linalg.ops.transforms.Transforms.allCosineSimilarities;
 
 /**
- * Math utils.
+ * Math utils on ND4J arrays. ND4J is an optional dependency, add nd4j-native-platform to use them.
  *
  * @author HamaWhite
  */
@@ -40,15 +42,15 @@ public class MathUtils {
     /**
      * Row-wise cosine similarity between two equal-width matrices.
      */
-    public static INDArray cosineSimilarity(List<List<Float>> X, INDArray yArray) {
-        return cosineSimilarity(Nd4j.createFromArray(listToArray(X)), yArray);
+    public static INDArray cosineSimilarity(List<EmbeddingVector> X, INDArray yArray) {
+        return cosineSimilarity(createFromVectors(X), yArray);
     }
 
     /**
      * Row-wise cosine similarity between two equal-width matrices.
      */
-    public static INDArray cosineSimilarity(INDArray xArray, List<List<Float>> Y) {
-        return cosineSimilarity(xArray, Nd4j.createFromArray(listToArray(Y)));
+    public static INDArray cosineSimilarity(INDArray xArray, List<EmbeddingVector> Y) {
+        return cosineSimilarity(xArray, createFromVectors(Y));
     }
 
     /**
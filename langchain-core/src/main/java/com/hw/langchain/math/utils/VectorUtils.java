@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.math.utils;
+
+/**
+ * Pure-Java kernels on primitive float vectors, which need no native library and allocate nothing.
+ *
+ * @author HamaWhite
+ */
+public class VectorUtils {
+
+    private VectorUtils() {
+    }
+
+    /**
+     * Dot product of two vectors of the same dimension.
+     */
+    public static float dot(float[] x, float[] y) {
+        checkDimension(x, y);
+        return dot(x, 0, y, 0, x.length);
+    }
+
+    /**
+     * Dot product of two vectors stored at the offsets of larger arrays, such as rows of a contiguous matrix.
+     * Four independent accumulators let the JIT pipeline the multiply-adds instead of waiting on a single sum.
+     */
+    public static float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            sum0 += x[xOffset + i] * y[yOffset + i];
+            sum1 += x[xOffset + i + 1] * y[yOffset + i + 1];
+            sum2 += x[xOffset + i + 2] * y[yOffset + i + 2];
+            sum3 += x[xOffset + i + 3] * y[yOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += x[xOffset + i] * y[yOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Euclidean norm of the vector.
+     */
+    public static float norm(float[] x) {
+        return (float) Math.sqrt(dot(x, x));
+    }
+
+    /**
+     * Add the source vector, multiplied by the scale, to the target vector in place.
+     */
+    public static void addScaled(float[] target, float[] source, float scale) {
+        checkDimension(target, source);
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i] * scale;
+        }
+    }
+
+    /**
+     * Scale the vector in place to unit length, a zero vector is left unchanged.
+     *
+     * @return the same vector, for chaining
+     */
+    public static float[] normalize(float[] x) {
+        normalize(x, 0, x.length);
+        return x;
+    }
+
+    /**
+     * Scale the vector stored at the offset of a larger array in place to unit length, a zero vector is left
+     * unchanged.
+     */
+    public static void normalize(float[] x, int offset, int length) {
+        float norm = (float) Math.sqrt(dot(x, offset, x, offset, length));
+        if (norm != 0) {
+            float inverse = 1 / norm;
+            for (int i = offset; i < offset + length; i++) {
+                x[i] *= inverse;
+            }
+        }
+    }
+
+    private static void checkDimension(float[] x, float[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(
+                    String.format("Vectors must have the same dimension, got %d and %d.", x.length, y.length));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.schema;
+
+import java.util.List;
+
+/**
+ * Base interface for cache.
+ *
+ * @author HamaWhite
+ */
+public interface BaseCache {
+
+    /**
+     * Look up based on prompt and llmString.
+     *
+     * @param prompt    the prompt, or the serialized messages of a chat model
+     * @param llmString the string identifying the model and its parameters
+     * @return the cached generations, or null if there is no entry
+     */
+    List<Generation> lookup(String prompt, String llmString);
+
+    /**
+     * Look up a batch of prompts generated with the same llmString.
+     * Caches backed by a remote store should override it to use a single round-trip.
+     *
+     * @param prompts   the prompts to look up
+     * @param llmString the string identifying the model and its parameters
+     * @return the cached generations in prompt order, with null for every prompt that is not cached
+     */
+    default List<List<Generation>> lookup(List<String> prompts, String llmString) {
+        return prompts.stream()
+                .map(prompt -> lookup(prompt, llmString))
+                .toList();
+    }
+
+    /**
+     * Update cache based on prompt and llmString.
+     */
+    void update(String prompt, String llmString, List<Generation> returnVal);
+
+    /**
+     * Update a batch of prompts generated with the same llmString.
+     * Caches backed by a remote store should override it to write them in a single transaction.
+     *
+     * @param prompts    the prompts to update
+     * @param llmString  the string identifying the model and its parameters
+     * @param returnVals the generations of every prompt, in prompt order
+     */
+    default void update(List<String> prompts, String llmString, List<List<Generation>> returnVals) {
+        for (int i = 0; i < prompts.size(); i++) {
+            update(prompts.get(i), llmString, returnVals.get(i));
+        }
+    }
+
+    /**
+     * Clear cache.
+     */
+    void clear();
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.schema;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base interface for key-value stores, whose operations work on batches of keys so a remote or persistent store can
+ * serve each of them in a single round-trip.
+ *
+ * @author HamaWhite
+ */
+public interface BaseStore<K, V> {
+
+    /**
+     * Get the values of the keys.
+     *
+     * @param keys the keys to look up
+     * @return the values in key order, with null for every key that is not stored
+     */
+    List<V> mget(List<K> keys);
+
+    /**
+     * Set the values of the keys, replacing existing values.
+     */
+    void mset(Map<K, V> entries);
+
+    /**
+     * Delete the keys, missing keys are ignored.
+     */
+    void mdelete(List<K> keys);
+}
@@ -19,7 +19,9 @@
 package com.hw.langchain.schema;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author HamaWhite
@@ -52,4 +54,30 @@ public class Schema {
         }
         return String.join("\n", stringMessages);
     }
+
+    /**
+     * Convert a message dict, with the message type under "type", back to a message.
+     */
+    @SuppressWarnings("unchecked")
+    public static BaseMessage messageFromDict(Map<String, Object> message) {
+        String type = (String) message.get("type");
+        String content = (String) message.get("content");
+        BaseMessage result = switch (type) {
+            case "human" -> new HumanMessage(content);
+            case "ai" -> new AIMessage(content);
+            case "system" -> new SystemMessage(content);
+            case "chat" -> new ChatMessage(content, (String) message.get("role"));
+            case "function" -> {
+                FunctionMessage functionMessage = new FunctionMessage(content);
+                functionMessage.setName((String) message.get("name"));
+                yield functionMessage;
+            }
+            default -> throw new IllegalArgumentException("Got unexpected message type: " + type);
+        };
+        Object additionalKwargs = message.get("additionalKwargs");
+        if (additionalKwargs != null) {
+            result.setAdditionalKwargs(new HashMap<>((Map<String, Object>) additionalKwargs));
+        }
+        return result;
+    }
 }
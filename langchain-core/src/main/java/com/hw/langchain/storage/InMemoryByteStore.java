@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hw.langchain.schema.BaseStore;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store that keeps byte values in memory, bounded by the number of entries.
+ * The least recently used entries are evicted first once the maximum size is reached.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryByteStore implements BaseStore<String, byte[]> {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final Cache<String, byte[]> cache;
+
+    public InMemoryByteStore() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize maximum number of stored keys
+     */
+    public InMemoryByteStore(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    @Override
+    public List<byte[]> mget(List<String> keys) {
+        return keys.stream()
+                .map(cache::getIfPresent)
+                .toList();
+    }
+
+    @Override
+    public void mset(Map<String, byte[]> entries) {
+        cache.putAll(entries);
+    }
+
+    @Override
+    public void mdelete(List<String> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    /**
+     * Approximate number of stored keys.
+     */
+    public long size() {
+        return cache.size();
+    }
+}
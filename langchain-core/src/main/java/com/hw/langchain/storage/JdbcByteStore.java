@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.storage;
+
+import com.hw.langchain.schema.BaseStore;
+
+import lombok.SneakyThrows;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store that keeps byte values in a database through JDBC, such as an embedded H2 file, so the entries survive
+ * restarts and can be shared by several processes.
+ *
+ * @author HamaWhite
+ */
+public class JdbcByteStore implements BaseStore<String, byte[]>, AutoCloseable {
+
+    private static final String DEFAULT_TABLE_NAME = "byte_store";
+
+    private final JdbcTable table;
+
+    public JdbcByteStore(String url, String username, String password) {
+        this(JdbcTable.getConnection(url, username, password), DEFAULT_TABLE_NAME);
+    }
+
+    /**
+     * @param connection the connection to use, which is owned and closed by the store
+     * @param tableName  name of the store table, created if it does not exist
+     */
+    public JdbcByteStore(Connection connection, String tableName) {
+        this(new JdbcTable(connection, tableName, "store_key"));
+    }
+
+    /**
+     * @param dataSource the source of the connections, such as a pool, so concurrent calls do not wait for each other
+     * @param tableName  name of the store table, created if it does not exist
+     */
+    public JdbcByteStore(DataSource dataSource, String tableName) {
+        this(new JdbcTable(dataSource, tableName, "store_key"));
+    }
+
+    @SneakyThrows(SQLException.class)
+    private JdbcByteStore(JdbcTable table) {
+        this.table = table;
+        table.createIfNotExists("CREATE TABLE " + table.getName() + " ("
+                + "store_key VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + "store_value BLOB NOT NULL)");
+    }
+
+    /**
+     * Get the values with one query per 500 keys.
+     */
+    @Override
+    @SneakyThrows(SQLException.class)
+    public List<byte[]> mget(List<String> keys) {
+        Map<String, byte[]> found = new HashMap<>(keys.size());
+        table.selectByKeys(keys, "store_key, store_value", null, List.of(),
+                resultSet -> found.put(resultSet.getString(1), resultSet.getBytes(2)));
+        return keys.stream()
+                .map(found::get)
+                .toList();
+    }
+
+    /**
+     * Write the entries in one transaction, replacing existing values.
+     */
+    @Override
+    @SneakyThrows(SQLException.class)
+    public void mset(Map<String, byte[]> entries) {
+        table.replace(entries, List.of("store_value"), (statement, index, value) -> statement.setBytes(index, value));
+    }
+
+    @Override
+    @SneakyThrows(SQLException.class)
+    public void mdelete(List<String> keys) {
+        table.deleteKeys(keys);
+    }
+
+    /**
+     * Number of stored keys.
+     */
+    @SneakyThrows(SQLException.class)
+    public long size() {
+        return table.count();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        table.close();
+    }
+}
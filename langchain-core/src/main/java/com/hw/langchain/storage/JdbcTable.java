@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.storage;
+
+import lombok.SneakyThrows;
+
+import javax.sql.DataSource;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table keyed by a string column, which holds the JDBC plumbing shared by the caches and stores backed by a database.
+ * <p>
+ * With a DataSource, such as a connection pool, every operation borrows its own connection, so concurrent callers
+ * run in parallel. With a single Connection, which is owned and closed by the table, the operations take turns on it.
+ *
+ * @author HamaWhite
+ */
+public class JdbcTable implements AutoCloseable {
+
+    /**
+     * Maximum number of keys bound to a single IN clause.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final DataSource dataSource;
+
+    private final Connection connection;
+
+    private final ReentrantLock connectionLock = new ReentrantLock();
+
+    private final String name;
+
+    private final String keyColumn;
+
+    /**
+     * @param dataSource the source of the connections, which is not closed by the table
+     * @param name       name of the table
+     * @param keyColumn  name of the string primary key column
+     */
+    public JdbcTable(DataSource dataSource, String name, String keyColumn) {
+        this(dataSource, null, name, keyColumn);
+    }
+
+    /**
+     * @param connection the connection to use, which is owned and closed by the table
+     * @param name       name of the table
+     * @param keyColumn  name of the string primary key column
+     */
+    public JdbcTable(Connection connection, String name, String keyColumn) {
+        this(null, connection, name, keyColumn);
+    }
+
+    private JdbcTable(DataSource dataSource, Connection connection, String name, String keyColumn) {
+        if (!name.matches("[A-Za-z_]\\w*")) {
+            throw new IllegalArgumentException("Invalid table name: " + name);
+        }
+        this.dataSource = dataSource;
+        this.connection = connection;
+        this.name = name;
+        this.keyColumn = keyColumn;
+    }
+
+    @SneakyThrows(SQLException.class)
+    public static Connection getConnection(String url, String username, String password) {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Operation on a connection, which may throw a SQLException.
+     */
+    @FunctionalInterface
+    public interface SqlFunction<T, R> {
+
+        R apply(T input) throws SQLException;
+    }
+
+    /**
+     * Binder of the parameters of a statement, starting at the given index.
+     */
+    @FunctionalInterface
+    public interface ParameterBinder<T> {
+
+        void bind(PreparedStatement statement, int index, T value) throws SQLException;
+    }
+
+    /**
+     * Consumer of the rows of a result set.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+
+        void accept(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Run the function on a connection borrowed from the DataSource, or on the single connection once it is free.
+     */
+    public <R> R withConnection(SqlFunction<Connection, R> function) throws SQLException {
+        if (dataSource != null) {
+            try (Connection borrowed = dataSource.getConnection()) {
+                return function.apply(borrowed);
+            }
+        }
+        connectionLock.lock();
+        try {
+            return function.apply(connection);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Run the function in a transaction, which is rolled back if the function fails.
+     */
+    public <R> R inTransaction(SqlFunction<Connection, R> function) throws SQLException {
+        return withConnection(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                R result = function.apply(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    /**
+     * Create the table with the given statements if it does not exist, whatever the case the database stores its
+     * name in.
+     *
+     * @param statements the CREATE TABLE statement, followed by the CREATE INDEX ones
+     */
+    public void createIfNotExists(String... statements) throws SQLException {
+        withConnection(conn -> {
+            DatabaseMetaData metaData = conn.getMetaData();
+            for (String candidate : List.of(name, name.toUpperCase(), name.toLowerCase())) {
+                try (ResultSet resultSet = metaData.getTables(null, null, candidate, new String[]{"TABLE"})) {
+                    if (resultSet.next()) {
+                        return null;
+                    }
+                }
+            }
+            try (Statement statement = conn.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Select the rows of the keys with one query per {@value BATCH_SIZE} distinct keys.
+     *
+     * @param keys       the keys to look up, duplicates are queried once
+     * @param columns    the selected columns, the key column first
+     * @param condition  an extra condition ANDed to the key filter, or null
+     * @param parameters the parameters of the condition
+     * @param consumer   consumer of every row found
+     */
+    public void selectByKeys(List<String> keys, String columns, String condition, List<?> parameters,
+            RowConsumer consumer) throws SQLException {
+        List<String> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        withConnection(conn -> {
+            for (int start = 0; start < distinctKeys.size(); start += BATCH_SIZE) {
+                List<String> batch = distinctKeys.subList(start, Math.min(start + BATCH_SIZE, distinctKeys.size()));
+                String sql = "SELECT " + columns + " FROM " + name + " WHERE " + keyColumn
+                        + " IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")"
+                        + (condition != null ? " AND " + condition : "");
+                try (PreparedStatement statement = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        statement.setString(i + 1, batch.get(i));
+                    }
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(batch.size() + i + 1, parameters.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            consumer.accept(resultSet);
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Write the rows in one transaction, replacing the existing rows of the same keys. The replacement is a DELETE
+     * followed by an INSERT, which every database supports unlike MERGE or ON DUPLICATE KEY.
+     *
+     * @param rows         the values by key
+     * @param valueColumns the columns written after the key column
+     * @param binder       binder of the value columns of a row, starting at parameter index 2
+     */
+    public <T> void replace(Map<String, T> rows, List<String> valueColumns, ParameterBinder<T> binder)
+            throws SQLException {
+        String insertSql = "INSERT INTO " + name + " (" + keyColumn + ", " + String.join(", ", valueColumns)
+                + ") VALUES (" + String.join(", ", Collections.nCopies(valueColumns.size() + 1, "?")) + ")";
+        inTransaction(conn -> {
+            try (PreparedStatement delete = conn.prepareStatement(
+                    "DELETE FROM " + name + " WHERE " + keyColumn + " = ?");
+                    PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                for (Map.Entry<String, T> row : rows.entrySet()) {
+                    delete.setString(1, row.getKey());
+                    delete.addBatch();
+
+                    insert.setString(1, row.getKey());
+                    binder.bind(insert, 2, row.getValue());
+                    insert.addBatch();
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Delete the rows of the keys in one batch.
+     */
+    public void deleteKeys(Collection<String> keys) throws SQLException {
+        withConnection(conn -> {
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "DELETE FROM " + name + " WHERE " + keyColumn + " = ?")) {
+                for (String key : keys) {
+                    statement.setString(1, key);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Number of rows of the table.
+     */
+    public long count() throws SQLException {
+        return withConnection(conn -> {
+            try (Statement statement = conn.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + name)) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        });
+    }
+
+    /**
+     * Close the single connection, a DataSource is left open.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -18,10 +18,14 @@
 
 package com.hw.langchain.text.splitter;
 
+import com.hw.openai.utils.TokenizerUtils;
+import com.knuddels.jtokkit.api.Encoding;
+
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
@@ -55,4 +59,16 @@ public class TextSplitterUtils {
         }
         return splits.stream().filter(StringUtils::isNotEmpty).toList();
     }
+
+    /**
+     * Length function measuring the chunks in tokens of the model, for example to split by the context size.
+     * The encoding is taken from the process-wide cache, so creating splitters does not rebuild it.
+     *
+     * @param modelName the name of the model whose tokenizer is used
+     * @return the function counting the tokens of a text
+     */
+    public static Function<String, Integer> tiktokenLength(String modelName) {
+        Encoding encoding = TokenizerUtils.encodingForModel(modelName);
+        return encoding::countTokens;
+    }
 }
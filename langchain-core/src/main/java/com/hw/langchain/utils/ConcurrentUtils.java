@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.utils;
+
+import com.hw.langchain.exception.LangChainException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Utilities for dispatching blocking calls concurrently.
+ *
+ * @author HamaWhite
+ */
+public class ConcurrentUtils {
+
+    private static final AtomicInteger BLOCKING_THREAD_NUMBER = new AtomicInteger();
+
+    /**
+     * Shared pool of daemon threads running blocking calls made asynchronous, threads idle for 60 seconds exit.
+     */
+    private static final ExecutorService BLOCKING_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "langchain-blocking-" + BLOCKING_THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ConcurrentUtils() {
+    }
+
+    /**
+     * Get the executor of the default asynchronous methods, which wrap blocking calls such as HTTP requests.
+     * <p>
+     * Unlike the ForkJoinPool common pool, it grows with the calls waiting, so they neither starve the parallel
+     * streams sharing the common pool, nor wait for each other. Models bounding their concurrency should set their
+     * own executor instead.
+     *
+     * @return the shared executor of the blocking calls
+     */
+    public static Executor blockingExecutor() {
+        return BLOCKING_EXECUTOR;
+    }
+
+    /**
+     * Apply the function to every input with at most maxConcurrency calls in flight, using a temporary thread pool.
+     *
+     * @param inputs         the inputs to process
+     * @param function       the blocking function to apply
+     * @param maxConcurrency maximum number of concurrent calls, 1 means the inputs are processed sequentially
+     * @return the results, in the same order as the inputs
+     */
+    public static <T, R> List<R> mapConcurrently(List<T> inputs, Function<T, R> function, int maxConcurrency) {
+        int parallelism = Math.min(maxConcurrency, inputs.size());
+        if (parallelism <= 1) {
+            return inputs.stream().map(function).toList();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            return mapConcurrently(inputs, function, executor, parallelism);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Apply the function to every input on the given executor with at most maxConcurrency calls in flight.
+     * Once a call fails, no further inputs are submitted and the first failure is rethrown.
+     *
+     * @param inputs         the inputs to process
+     * @param function       the blocking function to apply
+     * @param executor       the executor running the calls
+     * @param maxConcurrency maximum number of concurrent calls
+     * @return the results, in the same order as the inputs
+     */
+    public static <T, R> List<R> mapConcurrently(List<T> inputs, Function<T, R> function, Executor executor,
+            int maxConcurrency) {
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+        try {
+            for (T input : inputs) {
+                permits.acquire();
+                if (futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    permits.release();
+                    break;
+                }
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return function.apply(input);
+                    } finally {
+                        permits.release();
+                    }
+                }, executor));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new LangChainException("Interrupted while dispatching concurrent calls.", e);
+        }
+        return futures.stream().map(ConcurrentUtils::join).toList();
+    }
+
+    /**
+     * Wait for the future and rethrow its failure unwrapped when it is a RuntimeException.
+     */
+    public static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new LangChainException(cause);
+        }
+    }
+}
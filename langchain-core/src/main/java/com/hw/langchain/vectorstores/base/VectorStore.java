@@ -18,6 +18,7 @@
 
 package com.hw.langchain.vectorstores.base;
 
+import com.hw.langchain.embeddings.base.EmbeddingVector;
 import com.hw.langchain.embeddings.base.Embeddings;
 import com.hw.langchain.schema.Document;
 
@@ -127,7 +128,7 @@ public abstract class VectorStore {
      * @param kwargs    kwargs to be passed to similarity search
      * @return List of Documents most similar to the query vector.
      */
-    public abstract List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs);
+    public abstract List<Document> similarSearchByVector(EmbeddingVector embedding, int k, Map<String, Object> kwargs);
 
     public List<Document> maxMarginalRelevanceSearch(String query) {
         return maxMarginalRelevanceSearch(query, 4, 20, 0.5f);
@@ -146,7 +147,7 @@ public abstract class VectorStore {
      */
     public abstract List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult);
 
-    public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding) {
+    public List<Document> maxMarginalRelevanceSearchByVector(EmbeddingVector embedding) {
         return maxMarginalRelevanceSearchByVector(embedding, 4, 20, 0.5f);
     }
 
@@ -161,7 +162,7 @@ public abstract class VectorStore {
      *                   to maximum diversity and 1 to minimum diversity.
      * @return List of Documents selected by maximal marginal relevance.
      */
-    public abstract List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
+    public abstract List<Document> maxMarginalRelevanceSearchByVector(EmbeddingVector embedding, int k, int fetchK,
             float lambdaMult);
 
     /**
@@ -67,6 +67,7 @@ public class VectorStoreRetriever implements BaseRetriever {
             case SIMILARITY -> vectorstore.similaritySearch(query);
             case SIMILARITY_SCORE_THRESHOLD -> vectorstore.similaritySearchWithRelevanceScores(query)
                     .stream()
+                    .filter(pair -> pair.getRight() >= (Float) searchKwargs.get("score_threshold"))
                     .map(Pair::getLeft)
                     .toList();
             case MMR -> vectorstore.maxMarginalRelevanceSearch(query);
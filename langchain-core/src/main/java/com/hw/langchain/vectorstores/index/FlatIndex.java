@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.math.utils.VectorUtils.dot;
+import static com.hw.langchain.math.utils.VectorUtils.norm;
+
+/**
+ * Exact index that scores the query against every vector.
+ * <p>
+ * Vectors are normalized on insertion and stored contiguously in pages of {@value PAGE_SIZE} vectors, so the cosine
+ * similarity is a dot product over sequential memory and growing the index only copies the vectors of its last page.
+ * The last page starts at {@value INITIAL_PAGE_ROWS} vectors and doubles until it is full, so a small index only
+ * allocates about what it holds.
+ * Searches over more than one page score the pages in parallel on the common fork-join pool, each page keeping its
+ * own top k, which are then merged.
+ *
+ * @author HamaWhite
+ */
+public class FlatIndex implements VectorIndex {
+
+    /**
+     * Number of vectors per page, which is also the unit of work of a parallel search.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * Number of vectors a new page is allocated for.
+     */
+    static final int INITIAL_PAGE_ROWS = 16;
+
+    private final int dimension;
+
+    private final boolean parallel;
+
+    private final List<float[]> pages = new ArrayList<>();
+
+    private final BitSet deleted = new BitSet();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int count;
+
+    private int deletedCount;
+
+    public FlatIndex(int dimension) {
+        this(dimension, true);
+    }
+
+    /**
+     * @param dimension dimension of the indexed vectors
+     * @param parallel  whether searches over more than one page are spread over the common fork-join pool
+     */
+    public FlatIndex(int dimension, boolean parallel) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension must be positive, got " + dimension);
+        }
+        this.dimension = dimension;
+        this.parallel = parallel;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int add(float[] vector) {
+        checkDimension(vector);
+        float norm = norm(vector);
+        float scale = norm == 0 ? 0 : 1 / norm;
+
+        lock.writeLock().lock();
+        try {
+            int ordinal = count;
+            int page = ordinal / PAGE_SIZE;
+            int row = ordinal % PAGE_SIZE;
+            if (page == pages.size()) {
+                pages.add(new float[INITIAL_PAGE_ROWS * dimension]);
+            }
+            float[] data = pages.get(page);
+            if (data.length == row * dimension) {
+                data = Arrays.copyOf(data, Math.min(2 * row, PAGE_SIZE) * dimension);
+                pages.set(page, data);
+            }
+            int offset = row * dimension;
+            for (int i = 0; i < dimension; i++) {
+                data[offset + i] = vector[i] * scale;
+            }
+            count++;
+            return ordinal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(int ordinal) {
+        lock.writeLock().lock();
+        try {
+            checkOrdinal(ordinal);
+            if (!deleted.get(ordinal)) {
+                deleted.set(ordinal);
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isDeleted(int ordinal) {
+        lock.readLock().lock();
+        try {
+            checkOrdinal(ordinal);
+            return deleted.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] vector(int ordinal) {
+        lock.readLock().lock();
+        try {
+            checkOrdinal(ordinal);
+            float[] vector = new float[dimension];
+            System.arraycopy(pages.get(ordinal / PAGE_SIZE), (ordinal % PAGE_SIZE) * dimension, vector, 0, dimension);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TopK search(float[] query, int k) {
+        checkDimension(query);
+        float[] normalized = normalizedCopy(query);
+
+        lock.readLock().lock();
+        try {
+            int numPages = pages.size();
+            if (!parallel || numPages <= 1) {
+                TopK topK = new TopK(k);
+                for (int page = 0; page < numPages; page++) {
+                    scanPage(normalized, page, topK);
+                }
+                return topK.sort();
+            }
+            return IntStream.range(0, numPages)
+                    .parallel()
+                    .mapToObj(page -> scanPage(normalized, page, new TopK(k)))
+                    .reduce((left, right) -> {
+                        left.addAll(right);
+                        return left;
+                    })
+                    .orElseGet(() -> new TopK(k))
+                    .sort();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private TopK scanPage(float[] query, int page, TopK topK) {
+        float[] data = pages.get(page);
+        int first = page * PAGE_SIZE;
+        int end = Math.min(PAGE_SIZE, count - first);
+        for (int i = 0; i < end; i++) {
+            int ordinal = first + i;
+            if (deletedCount > 0 && deleted.get(ordinal)) {
+                continue;
+            }
+            topK.offer(ordinal, dot(query, 0, data, i * dimension, dimension));
+        }
+        return topK;
+    }
+
+    private float[] normalizedCopy(float[] vector) {
+        float norm = norm(vector);
+        float scale = norm == 0 ? 0 : 1 / norm;
+        float[] normalized = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("Expected a vector of dimension %d, got %d.", dimension, vector.length));
+        }
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of bounds for count " + count);
+        }
+    }
+}
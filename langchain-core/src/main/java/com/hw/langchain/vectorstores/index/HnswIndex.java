@@ -0,0 +1,488 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.langchain.math.utils.VectorUtils.dot;
+import static com.hw.langchain.math.utils.VectorUtils.norm;
+
+/**
+ * Approximate index based on Hierarchical Navigable Small World graphs, see https://arxiv.org/abs/1603.09320.
+ * <p>
+ * Every vector is a node linked to its nearest neighbors in a graph of layers, the upper layers holding exponentially
+ * fewer nodes. A search descends greedily through the upper layers and explores the bottom layer with a beam of
+ * efSearch candidates, so it scores a few thousand vectors instead of all of them. Higher m, efConstruction and
+ * efSearch trade memory, insertion and search time for recall.
+ * <p>
+ * Vectors can be added from several threads concurrently, each neighbor list being guarded by its own node.
+ * Deleted vectors are tombstoned: they keep routing searches but are no longer returned.
+ *
+ * @author HamaWhite
+ */
+public class HnswIndex implements VectorIndex {
+
+    public static final int DEFAULT_M = 16;
+
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    private static final int PAGE_SIZE = 4096;
+
+    /**
+     * Number of vectors a new page is allocated for, it doubles until it holds PAGE_SIZE vectors.
+     */
+    private static final int INITIAL_PAGE_ROWS = 16;
+
+    private final int dimension;
+
+    private final int m;
+
+    private final int maxConnections0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private volatile int efSearch;
+
+    /**
+     * Directories of the pages of vectors and nodes. A full directory is replaced by a larger copy, and so is the last
+     * page until it holds PAGE_SIZE vectors. The copies keep what was already written, which is never modified, so a
+     * reader of a previous copy still sees the same vectors and nodes.
+     */
+    private volatile float[][] vectorPages = new float[1][];
+
+    private volatile Node[][] nodePages = new Node[1][];
+
+    /**
+     * Number of allocated ordinals, written after the vector and node of the last ordinal.
+     */
+    private volatile int count;
+
+    private final Object entryLock = new Object();
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    public HnswIndex(int dimension) {
+        this(dimension, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * @param dimension      dimension of the indexed vectors
+     * @param m              number of neighbors of a node on the upper layers, twice as many on the bottom layer
+     * @param efConstruction number of candidates explored to find the neighbors of an added vector
+     * @param efSearch       number of candidates explored by a search, at least k
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid HNSW parameters: dimension=%d, m=%d, efConstruction=%d, efSearch=%d.",
+                    dimension, m, efConstruction, efSearch));
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxConnections0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Change the number of candidates explored by the following searches.
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive, got " + efSearch);
+        }
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public int add(float[] vector) {
+        checkDimension(vector);
+        float[] query = normalizedCopy(vector);
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        int ordinal = allocate(query, level);
+
+        int entry;
+        int topLevel;
+        synchronized (entryLock) {
+            if (entryPoint == -1) {
+                entryPoint = ordinal;
+                maxLevel = level;
+                return ordinal;
+            }
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+
+        for (int layer = topLevel; layer > level; layer--) {
+            entry = greedySearch(query, entry, layer);
+        }
+        int[] entries = {entry};
+        for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+            TopK candidates = searchLayer(query, entries, efConstruction, layer, false);
+            int[] neighbors = selectNeighbors(candidates, maxConnections(layer), ordinal);
+            Node node = node(ordinal);
+            synchronized (node) {
+                System.arraycopy(neighbors, 0, node.neighbors[layer], 0, neighbors.length);
+                node.sizes[layer] = neighbors.length;
+            }
+            for (int neighbor : neighbors) {
+                link(neighbor, ordinal, layer);
+            }
+            entries = candidates.ordinals();
+        }
+
+        if (level > topLevel) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    entryPoint = ordinal;
+                    maxLevel = level;
+                }
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Store the vector and create its node, returning its ordinal.
+     */
+    private synchronized int allocate(float[] vector, int level) {
+        int ordinal = count;
+        int page = ordinal / PAGE_SIZE;
+        int slot = ordinal % PAGE_SIZE;
+        if (page == vectorPages.length) {
+            vectorPages = Arrays.copyOf(vectorPages, page * 2);
+            nodePages = Arrays.copyOf(nodePages, page * 2);
+        }
+        if (vectorPages[page] == null) {
+            vectorPages[page] = new float[INITIAL_PAGE_ROWS * dimension];
+            nodePages[page] = new Node[INITIAL_PAGE_ROWS];
+        } else if (nodePages[page].length == slot) {
+            int rows = Math.min(2 * slot, PAGE_SIZE);
+            vectorPages[page] = Arrays.copyOf(vectorPages[page], rows * dimension);
+            nodePages[page] = Arrays.copyOf(nodePages[page], rows);
+        }
+        System.arraycopy(vector, 0, vectorPages[page], slot * dimension, dimension);
+        nodePages[page][slot] = new Node(level, m, maxConnections0);
+        count = ordinal + 1;
+        return ordinal;
+    }
+
+    /**
+     * Add the ordinal to the neighbors of the node, keeping only the best neighbors if the list is full.
+     */
+    private void link(int nodeOrdinal, int ordinal, int layer) {
+        Node node = node(nodeOrdinal);
+        synchronized (node) {
+            int[] neighbors = node.neighbors[layer];
+            int size = node.sizes[layer];
+            if (size < neighbors.length) {
+                neighbors[size] = ordinal;
+                node.sizes[layer] = size + 1;
+                return;
+            }
+            TopK candidates = new TopK(size + 1);
+            for (int i = 0; i < size; i++) {
+                candidates.offer(neighbors[i], similarity(nodeOrdinal, neighbors[i]));
+            }
+            candidates.offer(ordinal, similarity(nodeOrdinal, ordinal));
+            int[] selected = selectNeighbors(candidates.sort(), neighbors.length, nodeOrdinal);
+            System.arraycopy(selected, 0, neighbors, 0, selected.length);
+            node.sizes[layer] = selected.length;
+        }
+    }
+
+    /**
+     * Select the neighbors with the heuristic of the paper: a candidate is kept only if it is closer to the base node
+     * than to every neighbor kept so far, which favors neighbors in different directions.
+     *
+     * @param candidates the candidates, sorted by descending similarity to the base node
+     * @param exclude    the ordinal of the base node, which is never selected
+     */
+    private int[] selectNeighbors(TopK candidates, int maxConnections, int exclude) {
+        int[] selected = new int[maxConnections];
+        int size = 0;
+        for (int i = 0; i < candidates.size() && size < maxConnections; i++) {
+            int candidate = candidates.ordinal(i);
+            if (candidate == exclude) {
+                continue;
+            }
+            float similarity = candidates.score(i);
+            boolean diverse = true;
+            for (int j = 0; j < size && diverse; j++) {
+                diverse = similarity(candidate, selected[j]) < similarity;
+            }
+            if (diverse) {
+                selected[size++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    @Override
+    public void delete(int ordinal) {
+        checkOrdinal(ordinal);
+        Node node = node(ordinal);
+        synchronized (node) {
+            if (!node.deleted) {
+                node.deleted = true;
+                deletedCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public boolean isDeleted(int ordinal) {
+        checkOrdinal(ordinal);
+        return node(ordinal).deleted;
+    }
+
+    @Override
+    public int size() {
+        return count - deletedCount.get();
+    }
+
+    @Override
+    public float[] vector(int ordinal) {
+        checkOrdinal(ordinal);
+        float[] vector = new float[dimension];
+        System.arraycopy(vectorPages[ordinal / PAGE_SIZE], (ordinal % PAGE_SIZE) * dimension, vector, 0, dimension);
+        return vector;
+    }
+
+    @Override
+    public TopK search(float[] query, int k) {
+        checkDimension(query);
+        float[] normalized = normalizedCopy(query);
+        int entry;
+        int topLevel;
+        synchronized (entryLock) {
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+        TopK topK = new TopK(k);
+        if (entry == -1 || k == 0) {
+            return topK.sort();
+        }
+        for (int layer = topLevel; layer > 0; layer--) {
+            entry = greedySearch(normalized, entry, layer);
+        }
+        TopK candidates = searchLayer(normalized, new int[]{entry}, Math.max(efSearch, k), 0, true);
+        for (int i = 0; i < Math.min(k, candidates.size()); i++) {
+            topK.offer(candidates.ordinal(i), candidates.score(i));
+        }
+        return topK.sort();
+    }
+
+    /**
+     * Move to the most similar neighbor until no neighbor is more similar, on one layer.
+     */
+    private int greedySearch(float[] query, int entry, int layer) {
+        int[] neighbors = new int[maxConnections0];
+        int current = entry;
+        float best = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int size = copyNeighbors(current, layer, neighbors);
+            for (int i = 0; i < size; i++) {
+                float similarity = similarity(query, neighbors[i]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer, exploring the most similar candidate first until the ef best results found so far
+     * are all more similar than any remaining candidate.
+     *
+     * @param skipDeleted whether deleted vectors are left out of the results, they are still explored
+     * @return the ef most similar vectors found, sorted by descending similarity
+     */
+    private TopK searchLayer(float[] query, int[] entries, int ef, int layer, boolean skipDeleted) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(count);
+        // a max-heap of the candidates to explore, by negated similarity
+        NeighborQueue candidates = new NeighborQueue(ef);
+        TopK results = new TopK(ef);
+        for (int entry : entries) {
+            if (visited.add(entry)) {
+                float similarity = similarity(query, entry);
+                candidates.push(entry, -similarity);
+                if (!skipDeleted || !node(entry).deleted) {
+                    results.offer(entry, similarity);
+                }
+            }
+        }
+
+        int[] neighbors = new int[maxConnections0];
+        while (!candidates.isEmpty()) {
+            int candidate = candidates.topOrdinal();
+            if (results.isFull() && -candidates.topScore() < results.minScore()) {
+                break;
+            }
+            candidates.pop();
+            int size = copyNeighbors(candidate, layer, neighbors);
+            for (int i = 0; i < size; i++) {
+                int neighbor = neighbors[i];
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float similarity = similarity(query, neighbor);
+                if (!results.isFull() || similarity > results.minScore()) {
+                    candidates.push(neighbor, -similarity);
+                    if (!skipDeleted || !node(neighbor).deleted) {
+                        results.offer(neighbor, similarity);
+                    }
+                }
+            }
+        }
+        return results.sort();
+    }
+
+    private int copyNeighbors(int ordinal, int layer, int[] target) {
+        Node node = node(ordinal);
+        synchronized (node) {
+            int size = node.sizes[layer];
+            System.arraycopy(node.neighbors[layer], 0, target, 0, size);
+            return size;
+        }
+    }
+
+    private int maxConnections(int layer) {
+        return layer == 0 ? maxConnections0 : m;
+    }
+
+    private Node node(int ordinal) {
+        return nodePages[ordinal / PAGE_SIZE][ordinal % PAGE_SIZE];
+    }
+
+    private float similarity(float[] query, int ordinal) {
+        return dot(query, 0, vectorPages[ordinal / PAGE_SIZE], (ordinal % PAGE_SIZE) * dimension, dimension);
+    }
+
+    private float similarity(int x, int y) {
+        float[][] pages = vectorPages;
+        return dot(pages[x / PAGE_SIZE], (x % PAGE_SIZE) * dimension, pages[y / PAGE_SIZE], (y % PAGE_SIZE) * dimension,
+                dimension);
+    }
+
+    private float[] normalizedCopy(float[] vector) {
+        float norm = norm(vector);
+        float scale = norm == 0 ? 0 : 1 / norm;
+        float[] normalized = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("Expected a vector of dimension %d, got %d.", dimension, vector.length));
+        }
+    }
+
+    private void checkOrdinal(int ordinal) {
+        int size = count;
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of bounds for count " + size);
+        }
+    }
+
+    /**
+     * Node of the graph, whose neighbor lists are guarded by the node itself.
+     */
+    private static final class Node {
+
+        private final int[][] neighbors;
+
+        private final int[] sizes;
+
+        private volatile boolean deleted;
+
+        Node(int level, int m, int maxConnections0) {
+            this.neighbors = new int[level + 1][];
+            this.sizes = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                neighbors[layer] = new int[layer == 0 ? maxConnections0 : m];
+            }
+        }
+    }
+
+    /**
+     * Set of visited ordinals reset in constant time, by marking every visit with the epoch of the current search.
+     */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[0];
+
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity + capacity / 2];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean add(int ordinal) {
+            if (ordinal >= marks.length) {
+                // the ordinal was added after the search started
+                marks = Arrays.copyOf(marks, Math.max(ordinal + 1, marks.length * 2));
+            }
+            if (marks[ordinal] == epoch) {
+                return false;
+            }
+            marks[ordinal] = epoch;
+            return true;
+        }
+    }
+}
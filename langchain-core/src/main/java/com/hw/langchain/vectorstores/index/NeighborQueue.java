@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable min-heap of scored ordinals, backed by primitive arrays. A max-heap is obtained by pushing negated scores.
+ *
+ * @author HamaWhite
+ */
+final class NeighborQueue {
+
+    private int[] ordinals;
+
+    private float[] scores;
+
+    private int size;
+
+    NeighborQueue(int initialCapacity) {
+        this.ordinals = new int[Math.max(1, initialCapacity)];
+        this.scores = new float[ordinals.length];
+    }
+
+    void push(int ordinal, float score) {
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            ordinals[index] = ordinals[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ordinals[index] = ordinal;
+        scores[index] = score;
+    }
+
+    int topOrdinal() {
+        return ordinals[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    /**
+     * Remove the lowest scored ordinal.
+     */
+    void pop() {
+        int ordinal = ordinals[--size];
+        float score = scores[size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            ordinals[index] = ordinals[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ordinals[index] = ordinal;
+        scores[index] = score;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
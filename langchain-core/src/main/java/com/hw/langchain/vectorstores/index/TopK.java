@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import java.util.Arrays;
+
+/**
+ * Bounded selection of the k highest scored ordinals, kept in a primitive min-heap so offering a candidate allocates
+ * nothing and costs O(log k) only when it enters the top k.
+ *
+ * @author HamaWhite
+ */
+public final class TopK {
+
+    private final int k;
+
+    private final int[] ordinals;
+
+    private final float[] scores;
+
+    private int size;
+
+    private boolean sorted;
+
+    public TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative, got " + k);
+        }
+        this.k = k;
+        this.ordinals = new int[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * Offer a candidate, which is kept if fewer than k candidates were offered or it beats the lowest kept score.
+     *
+     * @return true if the candidate was kept
+     */
+    public boolean offer(int ordinal, float score) {
+        if (sorted) {
+            throw new IllegalStateException("Cannot offer to a sorted TopK.");
+        }
+        if (size < k) {
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (k == 0 || score <= scores[0]) {
+            return false;
+        }
+        ordinals[0] = ordinal;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Offer all candidates kept by another selection.
+     */
+    public void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ordinals[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Whether k candidates are kept, so a candidate must beat {@link #minScore()} to enter.
+     */
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /**
+     * Lowest kept score, negative infinity if nothing is kept.
+     */
+    public float minScore() {
+        return size == 0 ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sort the kept candidates by descending score in place, after which no candidate can be offered.
+     *
+     * @return this, for chaining
+     */
+    public TopK sort() {
+        if (!sorted) {
+            // heap sort, each pass moves the lowest remaining score to the end
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return this;
+    }
+
+    /**
+     * Ordinal at the position, by descending score once sorted.
+     */
+    public int ordinal(int index) {
+        checkIndex(index);
+        return ordinals[index];
+    }
+
+    /**
+     * Score at the position, by descending score once sorted.
+     */
+    public float score(int index) {
+        checkIndex(index);
+        return scores[index];
+    }
+
+    /**
+     * Copy of the kept ordinals, by descending score once sorted.
+     */
+    public int[] ordinals() {
+        return Arrays.copyOf(ordinals, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int end) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (scores[index] <= scores[child]) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
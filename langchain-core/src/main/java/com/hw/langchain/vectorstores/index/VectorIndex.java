@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+/**
+ * Index of fixed-dimension vectors searched by cosine similarity.
+ * <p>
+ * Vectors are identified by ordinals assigned in insertion order, starting at 0. A deleted ordinal is never reused,
+ * so callers can keep their own data, such as documents, in arrays indexed by ordinal. Implementations must be safe
+ * for concurrent use.
+ *
+ * @author HamaWhite
+ */
+public interface VectorIndex {
+
+    /**
+     * Dimension of the indexed vectors.
+     */
+    int dimension();
+
+    /**
+     * Add a vector, which is copied.
+     *
+     * @return the ordinal of the vector
+     */
+    int add(float[] vector);
+
+    /**
+     * Delete the vector, which is no longer returned by searches. Deleting twice has no effect.
+     */
+    void delete(int ordinal);
+
+    /**
+     * Whether the ordinal was deleted.
+     */
+    boolean isDeleted(int ordinal);
+
+    /**
+     * Number of vectors that were added and not deleted.
+     */
+    int size();
+
+    /**
+     * Copy of the vector, normalized to unit length.
+     */
+    float[] vector(int ordinal);
+
+    /**
+     * Find the k vectors most similar to the query, by cosine similarity.
+     *
+     * @param query the query vector, which is not modified
+     * @param k     maximum number of vectors to return
+     * @return the ordinals and similarities of the vectors, sorted by descending similarity
+     */
+    TopK search(float[] query, int k);
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.inmemory;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.index.FlatIndex;
+import com.hw.langchain.vectorstores.index.TopK;
+import com.hw.langchain.vectorstores.index.VectorIndex;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+
+/**
+ * VectorStore that keeps the documents and their embeddings in process, so retrieval needs no network hop.
+ * <p>
+ * Documents are ranked by the cosine similarity of their embedding to the query, mapped from [-1, 1] to [0, 1] for
+ * their relevance score as Pinecone does.
+ * The embeddings are searched by a {@link VectorIndex}, by default an exact {@link FlatIndex} created with the
+ * dimension of the first embedding. Pass an {@link com.hw.langchain.vectorstores.index.HnswIndex} for corpora too
+ * large to scan on every query.
+ *
+ * @author HamaWhite
+ */
+public class InMemoryVectorStore extends VectorStore {
+
+    /**
+     * Key of the kwargs of addTexts holding the ids of the texts, random UUIDs are used if absent.
+     */
+    public static final String IDS_KEY = "ids";
+
+    private Embeddings embeddings;
+
+    private VectorIndex index;
+
+    /**
+     * Documents by ordinal, null once deleted.
+     */
+    private final List<Document> documents = new ArrayList<>();
+
+    private final Map<String, Integer> ordinalsById = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public InMemoryVectorStore(Embeddings embeddings) {
+        this(embeddings, null);
+    }
+
+    /**
+     * @param embeddings the embeddings used to embed the texts and queries
+     * @param index      the index of the embeddings, an empty FlatIndex is created on first insertion if null
+     */
+    public InMemoryVectorStore(Embeddings embeddings, VectorIndex index) {
+        this.embeddings = embeddings;
+        this.index = index;
+    }
+
+    /**
+     * Embed the texts and add them. A text whose id is already stored replaces the stored document.
+     *
+     * @param kwargs may contain the ids of the texts under {@value IDS_KEY}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas, Map<String, Object> kwargs) {
+        List<String> textIds = kwargs != null && kwargs.get(IDS_KEY) != null
+                ? (List<String>) kwargs.get(IDS_KEY)
+                : texts.stream().map(text -> UUID.randomUUID().toString()).toList();
+        if (textIds.size() != texts.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Got %d ids for %d texts.", textIds.size(), texts.size()));
+        }
+        List<EmbeddingVector> vectors = embeddings.embedDocuments(texts);
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < texts.size(); i++) {
+                float[] vector = vectors.get(i).toArray();
+                if (index == null) {
+                    index = new FlatIndex(vector.length);
+                }
+                Map<String, Object> metadata = metadatas != null && metadatas.get(i) != null
+                        ? metadatas.get(i)
+                        : new HashMap<>();
+                deleteById(textIds.get(i));
+                int ordinal = index.add(vector);
+                while (documents.size() < ordinal) {
+                    // the given index may already hold vectors that were not added through this store
+                    documents.add(null);
+                }
+                documents.add(new Document(texts.get(i), metadata));
+                ordinalsById.put(textIds.get(i), ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return textIds;
+    }
+
+    @Override
+    public boolean delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::deleteById);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void deleteById(String id) {
+        Integer ordinal = ordinalsById.remove(id);
+        if (ordinal != null) {
+            index.delete(ordinal);
+            documents.set(ordinal, null);
+        }
+    }
+
+    /**
+     * Number of stored documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(String query, int k) {
+        return similarSearchByVector(embeddings.embedQuery(query), k, null);
+    }
+
+    /**
+     * Return docs and relevance scores in [0, 1], mapped from their cosine similarity to the query in [-1, 1].
+     */
+    @Override
+    protected List<Pair<Document, Float>> _similaritySearchWithRelevanceScores(String query, int k) {
+        return similaritySearchWithScoreByVector(embeddings.embedQuery(query), k).stream()
+                .map(pair -> Pair.of(pair.getLeft(), (pair.getRight() + 1) / 2))
+                .toList();
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(EmbeddingVector embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithScoreByVector(embedding, k).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Return docs most similar to embedding vector, along with their cosine similarity.
+     */
+    public List<Pair<Document, Float>> similaritySearchWithScoreByVector(EmbeddingVector embedding, int k) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            TopK topK = index.search(embedding.toArray(), k);
+            List<Pair<Document, Float>> results = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                results.add(Pair.of(documents.get(topK.ordinal(i)), topK.score(i)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
+        return maxMarginalRelevanceSearchByVector(embeddings.embedQuery(query), k, fetchK, lambdaMult);
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearchByVector(EmbeddingVector embedding, int k, int fetchK,
+            float lambdaMult) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            TopK candidates = index.search(embedding.toArray(), fetchK);
+            List<float[]> candidateVectors = Arrays.stream(candidates.ordinals())
+                    .mapToObj(index::vector)
+                    .toList();
+            return maximalMarginalRelevance(embedding.toArray(), candidateVectors, k, lambdaMult).stream()
+                    .map(i -> documents.get(candidates.ordinal(i)))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        this.embeddings = embedding;
+        return addTexts(texts, metadatas, null).size();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Document and vector to store under an id. The vector is normalized to unit length.
+ *
+ * @author HamaWhite
+ */
+final class Entry {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<HashMap<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    final String id;
+
+    final String text;
+
+    final Map<String, Object> metadata;
+
+    final float[] vector;
+
+    Entry(String id, String text, Map<String, Object> metadata, float[] vector) {
+        this.id = id;
+        this.text = text;
+        this.metadata = metadata;
+        this.vector = vector;
+    }
+
+    /**
+     * Encode the text and metadata as a length-prefixed UTF-8 string and a length-prefixed JSON object.
+     */
+    @SneakyThrows(IOException.class)
+    byte[] encodeDocument() {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] metadataBytes = OBJECT_MAPPER.writeValueAsBytes(metadata);
+        return ByteBuffer.allocate(Integer.BYTES * 2 + textBytes.length + metadataBytes.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(textBytes.length)
+                .put(textBytes)
+                .putInt(metadataBytes.length)
+                .put(metadataBytes)
+                .array();
+    }
+
+    static String readText(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @SneakyThrows(IOException.class)
+    static Map<String, Object> readMetadata(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return OBJECT_MAPPER.readValue(bytes, METADATA_TYPE);
+    }
+}
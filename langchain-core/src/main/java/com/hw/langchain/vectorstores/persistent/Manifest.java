@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Manifest naming the current segment generation and the first write-ahead log to replay on top of it. It is replaced
+ * atomically by a compaction, which is what makes the new segment current.
+ *
+ * @author HamaWhite
+ */
+final class Manifest {
+
+    static final String FILE_NAME = "MANIFEST";
+
+    private static final String VERSION = "1";
+
+    /**
+     * Generation of the current segment, 0 if no segment was written yet.
+     */
+    final long generation;
+
+    /**
+     * Number of the first write-ahead log not included in the segment.
+     */
+    final long walNumber;
+
+    Manifest(long generation, long walNumber) {
+        this.generation = generation;
+        this.walNumber = walNumber;
+    }
+
+    /**
+     * Read the manifest of the directory, an empty store has generation 0 and log 0.
+     */
+    static Manifest read(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return new Manifest(0, 0);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        if (!VERSION.equals(properties.getProperty("version"))) {
+            throw new IOException("Unsupported manifest version " + properties.getProperty("version") + " in " + file);
+        }
+        return new Manifest(Long.parseLong(properties.getProperty("generation")),
+                Long.parseLong(properties.getProperty("wal")));
+    }
+
+    /**
+     * Write the manifest to a temporary file, force it to disk and move it over the current manifest.
+     */
+    void write(Path directory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", VERSION);
+        properties.setProperty("generation", Long.toString(generation));
+        properties.setProperty("wal", Long.toString(walNumber));
+
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            properties.store(out, null);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(FILE_NAME), ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.vectorstores.base.VectorStore;
+import com.hw.langchain.vectorstores.index.FlatIndex;
+import com.hw.langchain.vectorstores.index.TopK;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.SneakyThrows;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.hw.langchain.math.utils.VectorUtils.normalize;
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+
+/**
+ * VectorStore persisted in a local directory, which opens near-instantly because its vectors are memory-mapped
+ * instead of being loaded and indexed again.
+ * <p>
+ * The directory holds an immutable {@link Segment} of vectors, ids and documents, the write-ahead logs of the
+ * additions and deletions made since the segment was written, and a MANIFEST naming both. Additions and deletions are
+ * forced to the log before they are applied, and the added entries are searched in memory until a compaction merges
+ * them into a new segment. Compactions run in the background once compactionThreshold entries were added to or
+ * deleted from the segment since the last one, which also bounds the replay on startup. A compaction becomes current
+ * by atomically replacing the manifest, so the store is consistent after a crash at any point.
+ * <p>
+ * Documents are ranked by the cosine similarity of their embedding to the query, mapped from [-1, 1] to [0, 1] for
+ * their relevance score as Pinecone does.
+ * Segment vectors are scanned exactly, the graph of an approximate index is not persisted.
+ *
+ * @author HamaWhite
+ */
+public class PersistentVectorStore extends VectorStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentVectorStore.class);
+
+    /**
+     * Key of the kwargs of addTexts holding the ids of the texts, random UUIDs are used if absent.
+     */
+    public static final String IDS_KEY = "ids";
+
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.(vec|doc)");
+
+    private static final Pattern WAL_FILE = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final Path directory;
+
+    private Embeddings embeddings;
+
+    private final int compactionThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vector-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long generation;
+
+    private long walNumber;
+
+    private WriteAheadLog wal;
+
+    private Segment segment;
+
+    private int dimension;
+
+    private BitSet segmentDeleted;
+
+    private int segmentDeletedCount;
+
+    /**
+     * Entries added since the segment was written, their vectors being held by the tail index.
+     */
+    private FlatIndex tail;
+
+    private List<Entry> tailEntries;
+
+    /**
+     * Ordinals of the live ids, the ordinals of the tail entries following those of the segment.
+     */
+    private Map<String, Integer> ordinals;
+
+    public PersistentVectorStore(Path directory, Embeddings embeddings) {
+        this(directory, embeddings, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Open the store in the directory, creating it if it does not exist.
+     *
+     * @param directory           the directory of the store files
+     * @param embeddings          the embeddings used to embed the texts and queries
+     * @param compactionThreshold number of entries added or deleted since the last compaction that triggers a new one
+     */
+    @SneakyThrows(IOException.class)
+    public PersistentVectorStore(Path directory, Embeddings embeddings, int compactionThreshold) {
+        this.directory = directory;
+        this.embeddings = embeddings;
+        this.compactionThreshold = compactionThreshold;
+
+        Files.createDirectories(directory);
+        Manifest manifest = Manifest.read(directory);
+        generation = manifest.generation;
+        segment = generation > 0 ? Segment.open(directory, generation) : null;
+        walNumber = load(manifest.walNumber);
+        wal = WriteAheadLog.open(WriteAheadLog.file(directory, walNumber));
+        deleteObsoleteFiles(generation, manifest.walNumber);
+    }
+
+    /**
+     * Reset the in-memory state to the current segment and replay the logs from the given number on top of it.
+     *
+     * @return the number of the last log, to which the following writes are appended
+     */
+    private long load(long firstWalNumber) throws IOException {
+        dimension = segment != null ? segment.dimension() : 0;
+        segmentDeleted = new BitSet();
+        segmentDeletedCount = 0;
+        tail = null;
+        tailEntries = new ArrayList<>();
+        ordinals = new HashMap<>();
+        for (int i = 0; i < segmentCount(); i++) {
+            ordinals.put(segment.id(i), i);
+        }
+
+        List<Long> walNumbers = listFiles(WAL_FILE).stream()
+                .filter(number -> number >= firstWalNumber)
+                .sorted()
+                .toList();
+        for (long number : walNumbers) {
+            WriteAheadLog.replay(WriteAheadLog.file(directory, number), this::applyAdd, this::applyDelete);
+        }
+        return walNumbers.isEmpty() ? firstWalNumber : walNumbers.get(walNumbers.size() - 1);
+    }
+
+    private List<Long> listFiles(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .distinct()
+                    .toList();
+        }
+    }
+
+    /**
+     * Delete the segments other than the current one and the logs already merged into it.
+     */
+    private void deleteObsoleteFiles(long currentGeneration, long firstWalNumber) throws IOException {
+        for (long number : listFiles(SEGMENT_FILE)) {
+            if (number != currentGeneration) {
+                Files.deleteIfExists(Segment.vectorFile(directory, number));
+                Files.deleteIfExists(Segment.documentFile(directory, number));
+            }
+        }
+        for (long number : listFiles(WAL_FILE)) {
+            if (number < firstWalNumber) {
+                Files.deleteIfExists(WriteAheadLog.file(directory, number));
+            }
+        }
+        Files.deleteIfExists(directory.resolve(Manifest.FILE_NAME + ".tmp"));
+    }
+
+    private int segmentCount() {
+        return segment != null ? segment.count() : 0;
+    }
+
+    private void applyAdd(Entry entry) {
+        applyDelete(entry.id);
+        if (tail == null) {
+            dimension = entry.vector.length;
+            tail = new FlatIndex(dimension);
+        }
+        int ordinal = tail.add(entry.vector);
+        tailEntries.add(new Entry(entry.id, entry.text, entry.metadata, null));
+        ordinals.put(entry.id, segmentCount() + ordinal);
+    }
+
+    private void applyDelete(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        if (ordinal < segmentCount()) {
+            segmentDeleted.set(ordinal);
+            segmentDeletedCount++;
+        } else {
+            tail.delete(ordinal - segmentCount());
+        }
+    }
+
+    /**
+     * Embed the texts and add them. A text whose id is already stored replaces the stored document.
+     *
+     * @param kwargs may contain the ids of the texts under {@value IDS_KEY}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @SneakyThrows(IOException.class)
+    public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas, Map<String, Object> kwargs) {
+        List<String> ids = kwargs != null && kwargs.get(IDS_KEY) != null
+                ? (List<String>) kwargs.get(IDS_KEY)
+                : texts.stream().map(text -> UUID.randomUUID().toString()).toList();
+        if (ids.size() != texts.size()) {
+            throw new IllegalArgumentException(String.format("Got %d ids for %d texts.", ids.size(), texts.size()));
+        }
+        List<EmbeddingVector> vectors = embeddings.embedDocuments(texts);
+        List<Entry> entries = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            Map<String, Object> metadata = metadatas != null && metadatas.get(i) != null
+                    ? metadatas.get(i)
+                    : new HashMap<>();
+            entries.add(new Entry(ids.get(i), texts.get(i), metadata, normalize(vectors.get(i).toArray())));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Entry entry : entries) {
+                checkDimension(entry.vector);
+            }
+            wal.appendAdds(entries);
+            entries.forEach(this::applyAdd);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompactionIfNeeded();
+        return ids;
+    }
+
+    @Override
+    @SneakyThrows(IOException.class)
+    public boolean delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            List<String> storedIds = ids.stream()
+                    .filter(ordinals::containsKey)
+                    .distinct()
+                    .toList();
+            if (!storedIds.isEmpty()) {
+                wal.appendDeletes(storedIds);
+                storedIds.forEach(this::applyDelete);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompactionIfNeeded();
+        return true;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (dimension != 0 && vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("Expected a vector of dimension %d, got %d.", dimension, vector.length));
+        }
+    }
+
+    /**
+     * Number of stored documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(String query, int k) {
+        return similarSearchByVector(embeddings.embedQuery(query), k, null);
+    }
+
+    /**
+     * Return docs and relevance scores in [0, 1], mapped from their cosine similarity to the query in [-1, 1].
+     */
+    @Override
+    protected List<Pair<Document, Float>> _similaritySearchWithRelevanceScores(String query, int k) {
+        return similaritySearchWithScoreByVector(embeddings.embedQuery(query), k).stream()
+                .map(pair -> Pair.of(pair.getLeft(), (pair.getRight() + 1) / 2))
+                .toList();
+    }
+
+    @Override
+    public List<Document> similarSearchByVector(EmbeddingVector embedding, int k, Map<String, Object> kwargs) {
+        return similaritySearchWithScoreByVector(embedding, k).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Return docs most similar to embedding vector, along with their cosine similarity.
+     */
+    @SneakyThrows(IOException.class)
+    public List<Pair<Document, Float>> similaritySearchWithScoreByVector(EmbeddingVector embedding, int k) {
+        lock.readLock().lock();
+        try {
+            TopK topK = search(embedding, k);
+            List<Pair<Document, Float>> results = new ArrayList<>(topK.size());
+            for (int i = 0; i < topK.size(); i++) {
+                results.add(Pair.of(document(topK.ordinal(i)), topK.score(i)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scan the live segment vectors and search the tail, the caller must hold the read lock.
+     */
+    private TopK search(EmbeddingVector embedding, int k) {
+        float[] query = normalize(embedding.toArray());
+        TopK topK = new TopK(k);
+        if (ordinals.isEmpty()) {
+            return topK.sort();
+        }
+        checkDimension(query);
+        float[] scratch = new float[dimension];
+        for (int i = 0; i < segmentCount(); i++) {
+            if (segmentDeletedCount == 0 || !segmentDeleted.get(i)) {
+                topK.offer(i, segment.similarity(query, i, scratch));
+            }
+        }
+        if (tail != null) {
+            TopK tailTopK = tail.search(query, k);
+            for (int i = 0; i < tailTopK.size(); i++) {
+                topK.offer(segmentCount() + tailTopK.ordinal(i), tailTopK.score(i));
+            }
+        }
+        return topK.sort();
+    }
+
+    private Document document(int ordinal) throws IOException {
+        if (ordinal < segmentCount()) {
+            return segment.document(ordinal);
+        }
+        Entry entry = tailEntries.get(ordinal - segmentCount());
+        return new Document(entry.text, new HashMap<>(entry.metadata));
+    }
+
+    private float[] vector(int ordinal) {
+        return ordinal < segmentCount() ? segment.vector(ordinal) : tail.vector(ordinal - segmentCount());
+    }
+
+    @Override
+    public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
+        return maxMarginalRelevanceSearchByVector(embeddings.embedQuery(query), k, fetchK, lambdaMult);
+    }
+
+    @Override
+    @SneakyThrows(IOException.class)
+    public List<Document> maxMarginalRelevanceSearchByVector(EmbeddingVector embedding, int k, int fetchK,
+            float lambdaMult) {
+        lock.readLock().lock();
+        try {
+            TopK candidates = search(embedding, fetchK);
+            List<float[]> candidateVectors = Arrays.stream(candidates.ordinals())
+                    .mapToObj(this::vector)
+                    .toList();
+            List<Document> documents = new ArrayList<>();
+            for (int i : maximalMarginalRelevance(embedding.toArray(), candidateVectors, k, lambdaMult)) {
+                documents.add(document(candidates.ordinal(i)));
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        this.embeddings = embedding;
+        return addTexts(texts, metadatas, null).size();
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (isCompactionNeeded() && !compactionExecutor.isShutdown()) {
+            compactionExecutor.execute(() -> {
+                if (compactionLock.tryLock()) {
+                    try {
+                        if (isCompactionNeeded()) {
+                            compact();
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.warn("Failed to compact vector store {}", directory, e);
+                    } finally {
+                        compactionLock.unlock();
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean isCompactionNeeded() {
+        lock.readLock().lock();
+        try {
+            return tailEntries.size() + segmentDeletedCount >= compactionThreshold;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merge the segment and the entries added since into a new segment without the deleted entries.
+     * <p>
+     * The log is rotated first, so writes can go on while the new segment is written from a snapshot. The new segment
+     * becomes current when the manifest is replaced, then the writes made during the compaction are replayed from the
+     * new log on top of it.
+     */
+    @SneakyThrows(IOException.class)
+    public void compact() {
+        compactionLock.lock();
+        try {
+            Segment oldSegment;
+            FlatIndex oldTail;
+            List<Entry> oldTailEntries;
+            int[] liveOrdinals;
+            int oldSegmentCount;
+            long newWalNumber;
+            lock.writeLock().lock();
+            try {
+                if (tailEntries.isEmpty() && segmentDeletedCount == 0) {
+                    return;
+                }
+                oldSegment = segment;
+                oldTail = tail;
+                oldTailEntries = List.copyOf(tailEntries);
+                oldSegmentCount = segmentCount();
+                liveOrdinals = ordinals.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+                wal.close();
+                newWalNumber = walNumber + 1;
+                wal = WriteAheadLog.open(WriteAheadLog.file(directory, newWalNumber));
+                walNumber = newWalNumber;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long newGeneration = generation + 1;
+            Segment.write(directory, newGeneration, dimension, liveOrdinals.length, index -> {
+                int ordinal = liveOrdinals[index];
+                if (ordinal < oldSegmentCount) {
+                    return oldSegment.entry(ordinal);
+                }
+                Entry entry = oldTailEntries.get(ordinal - oldSegmentCount);
+                return new Entry(entry.id, entry.text, entry.metadata, oldTail.vector(ordinal - oldSegmentCount));
+            });
+            new Manifest(newGeneration, newWalNumber).write(directory);
+
+            lock.writeLock().lock();
+            try {
+                generation = newGeneration;
+                segment = Segment.open(directory, newGeneration);
+                load(newWalNumber);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (oldSegment != null) {
+                oldSegment.close();
+            }
+            deleteObsoleteFiles(newGeneration, newWalNumber);
+            LOG.debug("Compacted vector store {} into segment {} of {} entries", directory, newGeneration,
+                    liveOrdinals.length);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Wait for a running compaction and close the files.
+     */
+    @Override
+    public void close() throws IOException {
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            wal.close();
+            if (segment != null) {
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
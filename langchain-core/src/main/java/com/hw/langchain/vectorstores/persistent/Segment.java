@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import com.hw.langchain.schema.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.hw.langchain.math.utils.VectorUtils.dot;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Immutable, memory-mapped segment of entries, written once by a compaction. It is made of two files, all numbers
+ * being little-endian:
+ * <ul>
+ * <li>segment-{generation}.vec: a 16-byte header (magic, version, dimension, count) followed by the normalized
+ * vectors, as rows of float32.</li>
+ * <li>segment-{generation}.doc: a 32-byte header (magic, version, count, reserved, position of the ids, position of
+ * the offsets), the documents, the ids as length-prefixed UTF-8 strings, and the count + 1 offsets of the documents
+ * as int64.</li>
+ * </ul>
+ * Opening a segment maps the vectors and the offsets and reads the ids, the documents are read on demand, so the
+ * operating system page cache serves the queries.
+ *
+ * @author HamaWhite
+ */
+final class Segment implements Closeable {
+
+    static final int VECTOR_MAGIC = 0x4C435653;
+
+    static final int DOCUMENT_MAGIC = 0x4C434453;
+
+    static final int VERSION = 1;
+
+    private static final int VECTOR_HEADER_SIZE = 16;
+
+    private static final int DOCUMENT_HEADER_SIZE = 32;
+
+    /**
+     * Maximum size of one mapping of the vectors, a single mapping cannot exceed 2 GB.
+     */
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final int dimension;
+
+    private final int count;
+
+    private final int rowsPerChunk;
+
+    private final FloatBuffer[] vectorChunks;
+
+    private final String[] ids;
+
+    private final LongBuffer offsets;
+
+    private final FileChannel documentChannel;
+
+    private Segment(int dimension, int count, FloatBuffer[] vectorChunks, String[] ids, LongBuffer offsets,
+            FileChannel documentChannel) {
+        this.dimension = dimension;
+        this.count = count;
+        this.rowsPerChunk = rowsPerChunk(dimension);
+        this.vectorChunks = vectorChunks;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.documentChannel = documentChannel;
+    }
+
+    static Path vectorFile(Path directory, long generation) {
+        return directory.resolve("segment-" + generation + ".vec");
+    }
+
+    static Path documentFile(Path directory, long generation) {
+        return directory.resolve("segment-" + generation + ".doc");
+    }
+
+    private static int rowsPerChunk(int dimension) {
+        return (int) Math.max(1, MAX_CHUNK_BYTES / ((long) dimension * Float.BYTES));
+    }
+
+    /**
+     * Write the entries to the files of a new segment and force them to disk.
+     */
+    static void write(Path directory, long generation, int dimension, int count, EntrySource entries)
+            throws IOException {
+        String[] segmentIds = new String[count];
+        long[] documentOffsets = new long[count + 1];
+        try (FileChannel vectorChannel = FileChannel.open(vectorFile(directory, generation), CREATE,
+                TRUNCATE_EXISTING, WRITE);
+                FileChannel documentChannel = FileChannel.open(documentFile(directory, generation), CREATE,
+                        TRUNCATE_EXISTING, WRITE)) {
+            OutputStream vectorOut = new BufferedOutputStream(Channels.newOutputStream(vectorChannel), 1 << 16);
+            OutputStream documentOut = new BufferedOutputStream(Channels.newOutputStream(documentChannel), 1 << 16);
+            vectorOut.write(allocate(VECTOR_HEADER_SIZE).putInt(VECTOR_MAGIC).putInt(VERSION).putInt(dimension)
+                    .putInt(count).array());
+            documentOut.write(new byte[DOCUMENT_HEADER_SIZE]);
+
+            ByteBuffer row = allocate(dimension * Float.BYTES);
+            long position = DOCUMENT_HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                Entry entry = entries.get(i);
+                row.clear();
+                row.asFloatBuffer().put(entry.vector);
+                vectorOut.write(row.array());
+
+                byte[] document = entry.encodeDocument();
+                documentOffsets[i] = position;
+                documentOut.write(document);
+                position += document.length;
+                segmentIds[i] = entry.id;
+            }
+            documentOffsets[count] = position;
+
+            long idsPosition = position;
+            for (String id : segmentIds) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                documentOut.write(allocate(Integer.BYTES).putInt(bytes.length).array());
+                documentOut.write(bytes);
+                position += Integer.BYTES + bytes.length;
+            }
+            long offsetsPosition = position;
+            ByteBuffer offsetBytes = allocate(documentOffsets.length * Long.BYTES);
+            offsetBytes.asLongBuffer().put(documentOffsets);
+            documentOut.write(offsetBytes.array());
+
+            vectorOut.flush();
+            documentOut.flush();
+            ByteBuffer documentHeader = allocate(DOCUMENT_HEADER_SIZE).putInt(DOCUMENT_MAGIC).putInt(VERSION)
+                    .putInt(count).putInt(0).putLong(idsPosition).putLong(offsetsPosition).flip();
+            while (documentHeader.hasRemaining()) {
+                documentChannel.write(documentHeader, documentHeader.position());
+            }
+            vectorChannel.force(true);
+            documentChannel.force(true);
+        }
+    }
+
+    /**
+     * Open the files of a segment, mapping the vectors and the offsets of the documents.
+     */
+    static Segment open(Path directory, long generation) throws IOException {
+        int dimension;
+        int count;
+        FloatBuffer[] vectorChunks;
+        try (FileChannel channel = FileChannel.open(vectorFile(directory, generation), READ)) {
+            ByteBuffer header = read(channel, 0, VECTOR_HEADER_SIZE);
+            checkHeader(header.getInt(), VECTOR_MAGIC, header.getInt(), vectorFile(directory, generation));
+            dimension = header.getInt();
+            count = header.getInt();
+            long expectedSize = VECTOR_HEADER_SIZE + (long) count * dimension * Float.BYTES;
+            if (channel.size() != expectedSize) {
+                throw new IOException(String.format("Segment %s has %d bytes instead of %d.",
+                        vectorFile(directory, generation), channel.size(), expectedSize));
+            }
+            int rowsPerChunk = rowsPerChunk(dimension);
+            vectorChunks = new FloatBuffer[(count + rowsPerChunk - 1) / rowsPerChunk];
+            for (int chunk = 0; chunk < vectorChunks.length; chunk++) {
+                long rows = Math.min(rowsPerChunk, count - (long) chunk * rowsPerChunk);
+                vectorChunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        VECTOR_HEADER_SIZE + (long) chunk * rowsPerChunk * dimension * Float.BYTES,
+                        rows * dimension * Float.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asFloatBuffer();
+            }
+        }
+
+        FileChannel channel = FileChannel.open(documentFile(directory, generation), READ);
+        try {
+            ByteBuffer header = read(channel, 0, DOCUMENT_HEADER_SIZE);
+            checkHeader(header.getInt(), DOCUMENT_MAGIC, header.getInt(), documentFile(directory, generation));
+            if (header.getInt() != count) {
+                throw new IOException("Segment files of generation " + generation + " do not match.");
+            }
+            header.getInt();
+            long idsPosition = header.getLong();
+            long offsetsPosition = header.getLong();
+
+            ByteBuffer idBytes = channel.map(FileChannel.MapMode.READ_ONLY, idsPosition, offsetsPosition - idsPosition)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            String[] ids = new String[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = Entry.readText(idBytes);
+            }
+            LongBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsPosition,
+                    (count + 1L) * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            return new Segment(dimension, count, vectorChunks, ids, offsets, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkHeader(int magic, int expectedMagic, int version, Path file) throws IOException {
+        if (magic != expectedMagic || version != VERSION) {
+            throw new IOException(String.format("Unsupported segment file %s, magic %x version %d.", file, magic,
+                    version));
+        }
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment file.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int count() {
+        return count;
+    }
+
+    String id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    /**
+     * Cosine similarity of the normalized query to the vector, copied into the scratch row to use the array kernel.
+     */
+    float similarity(float[] query, int ordinal, float[] scratch) {
+        vectorChunks[ordinal / rowsPerChunk].get((ordinal % rowsPerChunk) * dimension, scratch, 0, dimension);
+        return dot(query, 0, scratch, 0, dimension);
+    }
+
+    float[] vector(int ordinal) {
+        float[] vector = new float[dimension];
+        vectorChunks[ordinal / rowsPerChunk].get((ordinal % rowsPerChunk) * dimension, vector, 0, dimension);
+        return vector;
+    }
+
+    Document document(int ordinal) throws IOException {
+        long start = offsets.get(ordinal);
+        ByteBuffer buffer = read(documentChannel, start, Math.toIntExact(offsets.get(ordinal + 1) - start));
+        String text = Entry.readText(buffer);
+        return new Document(text, Entry.readMetadata(buffer));
+    }
+
+    Entry entry(int ordinal) throws IOException {
+        Document document = document(ordinal);
+        return new Entry(ids[ordinal], document.getPageContent(), document.getMetadata(), vector(ordinal));
+    }
+
+    @Override
+    public void close() throws IOException {
+        documentChannel.close();
+    }
+
+    /**
+     * Source of the entries written to a segment, by position.
+     */
+    interface EntrySource {
+
+        Entry get(int index) throws IOException;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only log of the additions and deletions since the last compaction. Every batch is forced to disk before it
+ * is applied, so an acknowledged write survives a crash.
+ * <p>
+ * A record is framed as the length of its payload and the CRC32 of the payload, both little-endian int32, followed by
+ * the payload. A torn record at the end of the log, left by a crash during an append, is truncated on replay. A
+ * failed append is truncated right away, so later acknowledged records are never written after a torn one.
+ *
+ * @author HamaWhite
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final byte ADD = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+
+    /**
+     * Failure of an append whose partial records could not be truncated, after which every append is rejected.
+     */
+    private IOException failure;
+
+    WriteAheadLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static Path file(Path directory, long number) {
+        return directory.resolve("wal-" + number + ".log");
+    }
+
+    /**
+     * Open the log for appending, creating it if it does not exist.
+     */
+    static WriteAheadLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, CREATE, WRITE);
+        channel.position(channel.size());
+        return new WriteAheadLog(channel);
+    }
+
+    /**
+     * Replay the records of the log in order, truncating a torn record at its end. A missing log has no record.
+     */
+    static void replay(Path file, Consumer<Entry> onAdd, Consumer<String> onDelete) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+            long size = channel.size();
+            long position = 0;
+            while (position + FRAME_SIZE <= size) {
+                ByteBuffer frame = read(channel, position, FRAME_SIZE);
+                int length = frame.getInt();
+                int checksum = frame.getInt();
+                if (length <= 0 || position + FRAME_SIZE + length > size) {
+                    break;
+                }
+                ByteBuffer payload = read(channel, position + FRAME_SIZE, length);
+                if (checksum(payload.array()) != checksum) {
+                    break;
+                }
+                if (payload.get() == ADD) {
+                    String id = Entry.readText(payload);
+                    String text = Entry.readText(payload);
+                    var metadata = Entry.readMetadata(payload);
+                    float[] vector = new float[payload.getInt()];
+                    payload.asFloatBuffer().get(vector);
+                    onAdd.accept(new Entry(id, text, metadata, vector));
+                } else {
+                    onDelete.accept(Entry.readText(payload));
+                }
+                position += FRAME_SIZE + length;
+            }
+            if (position < size) {
+                LOG.warn("Truncating torn record at offset {} of write-ahead log {}", position, file);
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Append the additions as one batch and force them to disk.
+     */
+    void appendAdds(List<Entry> entries) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            byte[] id = entry.id.getBytes(StandardCharsets.UTF_8);
+            byte[] document = entry.encodeDocument();
+            ByteBuffer payload = ByteBuffer.allocate(1 + Integer.BYTES * 2 + id.length + document.length
+                    + entry.vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            payload.put(ADD).putInt(id.length).put(id).put(document).putInt(entry.vector.length);
+            payload.asFloatBuffer().put(entry.vector);
+            payloads.add(payload.array());
+        }
+        append(payloads);
+    }
+
+    /**
+     * Append the deletions as one batch and force them to disk.
+     */
+    void appendDeletes(List<String> ids) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            payloads.add(ByteBuffer.allocate(1 + Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN)
+                    .put(DELETE).putInt(bytes.length).put(bytes).array());
+        }
+        append(payloads);
+    }
+
+    private void append(List<byte[]> payloads) throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log is unusable after a failed append.", failure);
+        }
+        int size = payloads.stream().mapToInt(payload -> FRAME_SIZE + payload.length).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte[] payload : payloads) {
+            buffer.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        }
+        buffer.flip();
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            rollback(start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Truncate what a failed append wrote, otherwise the following records would be appended after a torn one and
+     * dropped with it on replay.
+     */
+    private void rollback(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+            LOG.error("Failed to truncate a failed append of the write-ahead log, rejecting further appends", e);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of write-ahead log.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -18,9 +18,20 @@
 
 package com.hw.langchain.vectorstores.pinecone;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.hw.client.retry.RetryWithBackoff;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
 import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.exception.LangChainException;
+import com.hw.langchain.schema.BaseStore;
 import com.hw.langchain.schema.Document;
+import com.hw.langchain.utils.ConcurrentUtils;
 import com.hw.langchain.vectorstores.base.VectorStore;
 import com.hw.pinecone.IndexClient;
 import com.hw.pinecone.PineconeClient;
@@ -33,13 +44,17 @@ import org.slf4j.LoggerFactory;
 
 import lombok.Builder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.hw.langchain.vectorstores.utils.Nd4jUtils.createFromList;
 import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
 
 /**
@@ -50,23 +65,89 @@ public class Pinecone extends VectorStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(Pinecone.class);
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<HashMap<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * Key of the kwargs of addTexts holding the ids of the texts.
+     */
+    public static final String IDS_KEY = "ids";
+
+    /**
+     * Key of the kwargs of similarSearchByVector holding the metadata filter, applied by Pinecone.
+     */
+    public static final String FILTER_KEY = "filter";
+
+    /**
+     * Maximum number of ids of a delete request.
+     */
+    private static final int MAX_DELETE_IDS = 1000;
+
     private PineconeClient client;
 
     private IndexClient index;
 
     private String indexName;
 
-    private Function<String, List<Float>> embeddingFunction;
+    private Function<String, EmbeddingVector> embeddingFunction;
 
     @Builder.Default
     private String textKey = "text";
 
+    /**
+     * Number of texts embedded at once, while the vectors of the previous texts are being upserted.
+     */
     @Builder.Default
     private Integer batchSize = 32;
 
     @Builder.Default
     private String namespace = "";
 
+    /**
+     * Embeddings used by addTexts to embed the texts in batches. If not set, the texts are embedded one at a time
+     * with embeddingFunction.
+     */
+    private Embeddings embeddings;
+
+    /**
+     * Maximum number of vectors per upsert request. Default is 100, the batch size recommended by Pinecone.
+     */
+    @Builder.Default
+    private int upsertBatchSize = 100;
+
+    /**
+     * Maximum estimated size of an upsert request in bytes. Default is 2MB, the request size limit of Pinecone.
+     */
+    @Builder.Default
+    private long maxRequestBytes = 2L * 1024 * 1024;
+
+    /**
+     * Maximum number of upsert requests in flight. Embedding the texts is paused once they are all busy.
+     */
+    @Builder.Default
+    private int maxConcurrentUpserts = 4;
+
+    /**
+     * Executor running the upsert requests. If not set, a temporary pool of maxConcurrentUpserts threads is used.
+     */
+    private Executor executor;
+
+    /**
+     * Retry policy of the upsert and delete requests. Transient HTTP and I/O failures are retried with exponential
+     * backoff, and the retried requests resume on its resumeScheduler rather than on a timer thread.
+     */
+    @Builder.Default
+    private RetryWithBackoff retry = RetryWithBackoff.builder().maxRetries(3).build();
+
+    /**
+     * Side store of the documents by id, such as an InMemoryByteStore or a JdbcByteStore. When set, the texts are
+     * written to it instead of the Pinecone metadata and the queries only return ids and scores, which shrinks the
+     * payloads. Documents missing from it, such as the ones upserted without it, are fetched once and cached.
+     */
+    private BaseStore<String, byte[]> docstore;
+
     /**
      * Validate parameters and init client
      */
@@ -87,14 +168,43 @@ public class Pinecone extends VectorStore {
         return this;
     }
 
+    /**
+     * Embed the texts and upsert them, see {@link #upsertTexts}.
+     *
+     * @param kwargs may contain the ids of the texts under {@value IDS_KEY}, random UUIDs are used if absent
+     * @return the ids of the texts
+     * @throws PineconeUpsertException if some vectors could not be upserted
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public List<String> addTexts(List<String> texts, List<Map<String, Object>> metadatas, Map<String, Object> kwargs) {
-        return null;
+        List<String> ids = kwargs != null && kwargs.get(IDS_KEY) != null
+                ? (List<String>) kwargs.get(IDS_KEY)
+                : createIdsBatch(texts.size());
+        Function<List<String>, List<EmbeddingVector>> embedder = embeddings != null
+                ? embeddings::embedDocuments
+                : batch -> batch.stream().map(embeddingFunction).toList();
+        upsertTexts(texts, metadatas, ids, embedder);
+        return ids;
     }
 
+    /**
+     * Delete the vectors by id, in requests of at most 1000 ids.
+     */
     @Override
     public boolean delete(List<String> ids) {
-        return false;
+        checkNotNull(ids, "ids must not be null");
+        for (List<String> batch : Lists.partition(ids, MAX_DELETE_IDS)) {
+            DeleteRequest request = DeleteRequest.builder()
+                    .ids(batch)
+                    .namespace(namespace)
+                    .build();
+            index.withRetry(retry).delete(request);
+            if (docstore != null) {
+                docstore.mdelete(batch);
+            }
+        }
+        return true;
     }
 
     /**
@@ -105,17 +215,75 @@ public class Pinecone extends VectorStore {
      * @return List of Documents most similar to the query and score for each
      */
     private List<Pair<Document, Float>> similaritySearchWithScore(String query, int k) {
-        List<Float> queryObj = embeddingFunction.apply(query);
-        QueryRequest queryRequest = QueryRequest.builder()
-                .vector(queryObj)
+        return similaritySearchWithScoreByVector(embeddingFunction.apply(query), k, null);
+    }
+
+    /**
+     * Return pinecone documents most similar to embedding vector, along with scores.
+     *
+     * @param embedding Embedding to look up documents similar to.
+     * @param k         Number of Documents to return.
+     * @param filter    Metadata filter applied by Pinecone, such as {"genre": {"$eq": "drama"}}, may be null.
+     * @return List of Documents most similar to the query vector and score for each
+     */
+    public List<Pair<Document, Float>> similaritySearchWithScoreByVector(EmbeddingVector embedding, int k,
+            Map<String, Object> filter) {
+        QueryResponse results = index.query(createQueryRequest(embedding, k, filter));
+        return toDocuments(results.getMatches());
+    }
+
+    /**
+     * Return the documents most similar to each query, the queries are searched concurrently.
+     *
+     * @param queries Texts to look up documents similar to, such as the expansions of a question.
+     * @param k       Number of Documents to return per query.
+     * @return the Documents most similar to each query, in the order of the queries
+     */
+    public List<List<Document>> batchSimilaritySearch(List<String> queries, int k) {
+        return batchSimilaritySearchByVector(queries.stream().map(embeddingFunction).toList(), k);
+    }
+
+    /**
+     * Return the documents most similar to each query vector, the query vectors are searched concurrently without
+     * blocking a thread per query.
+     *
+     * @param embeddingList Embeddings to look up documents similar to.
+     * @param k             Number of Documents to return per query vector.
+     * @return the Documents most similar to each query vector, in the order of the query vectors
+     */
+    public List<List<Document>> batchSimilaritySearchByVector(List<EmbeddingVector> embeddingList, int k) {
+        List<CompletableFuture<QueryResponse>> futures = embeddingList.stream()
+                .map(embedding -> index.queryAsync(createQueryRequest(embedding, k, null)))
+                .toList();
+        return futures.stream()
+                .map(future -> toDocuments(ConcurrentUtils.join(future).getMatches()).stream()
+                        .map(Pair::getLeft)
+                        .toList())
+                .toList();
+    }
+
+    /**
+     * Create the request of a query, the metadata is only returned when it holds the texts.
+     */
+    private QueryRequest createQueryRequest(EmbeddingVector embedding, int k, Map<String, Object> filter) {
+        return QueryRequest.builder()
+                .vector(embedding.toArray())
                 .topK(k)
                 .namespace(namespace)
-                .includeMetadata(true)
+                .filter(filter)
+                .includeMetadata(docstore == null)
                 .build();
-        QueryResponse results = index.query(queryRequest);
+    }
 
+    /**
+     * Convert the matches to documents and scores, skipping the matches without text.
+     */
+    private List<Pair<Document, Float>> toDocuments(List<ScoredVector> matches) {
+        if (docstore != null) {
+            return loadDocuments(matches);
+        }
         List<Pair<Document, Float>> docs = new ArrayList<>();
-        for (var res : results.getMatches()) {
+        for (var res : matches) {
             var metadata = res.getMetadata();
             if (metadata.containsKey(textKey)) {
                 var text = metadata.remove(textKey).toString();
@@ -141,72 +309,285 @@ public class Pinecone extends VectorStore {
         return docsAndScores.stream().map(Pair::getLeft).toList();
     }
 
+    /**
+     * Return pinecone documents most similar to query, among the documents matching the metadata filter.
+     *
+     * @param query  Text to look up documents similar to.
+     * @param k      Number of Documents to return.
+     * @param filter Metadata filter applied by Pinecone, such as {"genre": {"$eq": "drama"}}, may be null.
+     * @return List of Documents most similar to the query
+     */
+    public List<Document> similaritySearch(String query, int k, Map<String, Object> filter) {
+        return similaritySearchWithScoreByVector(embeddingFunction.apply(query), k, filter).stream()
+                .map(Pair::getLeft)
+                .toList();
+    }
+
+    /**
+     * Return docs and relevance scores, assuming an index with the cosine metric: Pinecone returns cosine similarities
+     * in [-1, 1], which are mapped to [0, 1].
+     */
     @Override
     protected List<Pair<Document, Float>> _similaritySearchWithRelevanceScores(String query, int k) {
-        return null;
+        return similaritySearchWithScore(query, k).stream()
+                .map(pair -> Pair.of(pair.getLeft(), (pair.getRight() + 1) / 2))
+                .toList();
     }
 
+    /**
+     * Return docs most similar to embedding vector.
+     *
+     * @param kwargs may contain a metadata filter under {@value FILTER_KEY}
+     */
     @Override
-    public List<Document> similarSearchByVector(List<Float> embedding, int k, Map<String, Object> kwargs) {
-        return null;
+    @SuppressWarnings("unchecked")
+    public List<Document> similarSearchByVector(EmbeddingVector embedding, int k, Map<String, Object> kwargs) {
+        Map<String, Object> filter = kwargs != null ? (Map<String, Object>) kwargs.get(FILTER_KEY) : null;
+        return similaritySearchWithScoreByVector(embedding, k, filter).stream()
+                .map(Pair::getLeft)
+                .toList();
     }
 
     @Override
     public List<Document> maxMarginalRelevanceSearch(String query, int k, int fetchK, float lambdaMult) {
-        List<Float> embedding = embeddingFunction.apply(query);
+        EmbeddingVector embedding = embeddingFunction.apply(query);
         return maxMarginalRelevanceSearchByVector(embedding, k, fetchK, lambdaMult);
     }
 
     @Override
-    public List<Document> maxMarginalRelevanceSearchByVector(List<Float> embedding, int k, int fetchK,
+    public List<Document> maxMarginalRelevanceSearchByVector(EmbeddingVector embedding, int k, int fetchK,
             float lambdaMult) {
         QueryRequest queryRequest = QueryRequest.builder()
-                .vector(embedding)
+                .vector(embedding.toArray())
                 .topK(fetchK)
                 .namespace(namespace)
                 .includeValues(true)
-                .includeMetadata(true)
+                .includeMetadata(docstore == null)
                 .build();
         QueryResponse results = index.query(queryRequest);
 
         List<Integer> mmrSelected = maximalMarginalRelevance(
-                createFromList(embedding),
+                embedding.toArray(),
                 results.getMatches().stream().map(ScoredVector::getValues).toList(),
                 k,
                 lambdaMult);
 
         checkNotNull(mmrSelected, "mmrSelected must not be null");
-        List<Map<String, Object>> selected = mmrSelected.stream()
-                .map(i -> results.getMatches().get(i).getMetadata())
+        List<ScoredVector> selected = mmrSelected.stream()
+                .map(i -> results.getMatches().get(i))
                 .toList();
-
-        return selected.stream()
-                .map(metadata -> new Document(metadata.remove(textKey).toString(), metadata))
+        // only the selected documents are loaded from the docstore
+        return toDocuments(selected).stream()
+                .map(Pair::getLeft)
                 .toList();
     }
 
+    /**
+     * Load the documents of the matches from the docstore, fetching the missing ones from the index.
+     */
+    private List<Pair<Document, Float>> loadDocuments(List<ScoredVector> matches) {
+        List<String> ids = matches.stream().map(ScoredVector::getId).toList();
+        List<byte[]> values = docstore.mget(ids);
+        Map<String, Document> documents = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (values.get(i) != null) {
+                documents.put(ids.get(i), decodeDocument(values.get(i)));
+            } else {
+                missingIds.add(ids.get(i));
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            documents.putAll(fetchDocuments(missingIds));
+        }
+
+        List<Pair<Document, Float>> docs = new ArrayList<>();
+        for (var match : matches) {
+            Document document = documents.get(match.getId());
+            if (document != null) {
+                docs.add(Pair.of(document, match.getScore()));
+            } else {
+                LOG.warn("Found document {} with no `{}` key. Skipping.", match.getId(), textKey);
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * Fetch the documents of vectors whose metadata holds the text, and cache them in the docstore.
+     */
+    private Map<String, Document> fetchDocuments(List<String> ids) {
+        FetchResponse response = index.fetch(FetchRequest.builder().ids(ids).namespace(namespace).build());
+        Map<String, Document> documents = new HashMap<>();
+        Map<String, byte[]> entries = new HashMap<>();
+        response.getVectors().forEach((id, vector) -> {
+            Map<String, Object> metadata = vector.getMetadata() != null
+                    ? new HashMap<>(vector.getMetadata())
+                    : new HashMap<>();
+            Object text = metadata.remove(textKey);
+            if (text != null) {
+                Document document = new Document(text.toString(), metadata);
+                documents.put(id, document);
+                entries.put(id, encodeDocument(document));
+            }
+        });
+        docstore.mset(entries);
+        return documents;
+    }
+
+    private void storeDocuments(List<String> ids, List<String> texts, List<Map<String, Object>> metadata) {
+        Map<String, byte[]> entries = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            entries.put(ids.get(i), encodeDocument(new Document(texts.get(i), metadata.get(i))));
+        }
+        docstore.mset(entries);
+    }
+
+    private static byte[] encodeDocument(Document document) {
+        ObjectNode node = OBJECT_MAPPER.createObjectNode().put("pageContent", document.getPageContent());
+        node.set("metadata", OBJECT_MAPPER.valueToTree(document.getMetadata()));
+        return node.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Document decodeDocument(byte[] bytes) {
+        try {
+            JsonNode node = OBJECT_MAPPER.readTree(bytes);
+            Map<String, Object> metadata = OBJECT_MAPPER.convertValue(node.get("metadata"), METADATA_TYPE);
+            return new Document(node.get("pageContent").asText(), metadata != null ? metadata : new HashMap<>());
+        } catch (IOException e) {
+            throw new LangChainException("Failed to decode a document of the docstore.", e);
+        }
+    }
+
     @Override
     public int fromTexts(List<String> texts, Embeddings embedding, List<Map<String, Object>> metadatas) {
+        return upsertTexts(texts, metadatas, createIdsBatch(texts.size()), embedding::embedDocuments);
+    }
+
+    /**
+     * Embed the texts in batches of batchSize and upsert them as a pipeline: the next batch is embedded on the calling
+     * thread while up to maxConcurrentUpserts requests are in flight. The vectors are grouped into requests of at most
+     * upsertBatchSize vectors and maxRequestBytes, and each request is retried on transient failures.
+     * <p>
+     * Once a request fails for good, or embedding a batch fails, no further batch is embedded, the requests in flight
+     * are completed and the ids not upserted are reported.
+     *
+     * @return the number of vectors upserted
+     * @throws PineconeUpsertException if some vectors could not be upserted
+     */
+    private int upsertTexts(List<String> texts, List<Map<String, Object>> metadatas, List<String> ids,
+            Function<List<String>, List<EmbeddingVector>> embedder) {
+        checkArgument(ids.size() == texts.size(), "Got %s ids for %s texts", ids.size(), texts.size());
+        ExecutorService pool =
+                executor == null ? Executors.newFixedThreadPool(Math.max(1, maxConcurrentUpserts)) : null;
+        Executor upsertExecutor = executor != null ? executor : pool;
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrentUpserts));
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Pair<List<String>, CompletableFuture<Integer>>> requests = new ArrayList<>();
+        RuntimeException embedFailure = null;
+        try {
+            List<Vector> pending = new ArrayList<>();
+            long pendingBytes = 0;
+            for (int i = 0; i < texts.size() && !failed.get(); i += batchSize) {
+                int end = Math.min(i + batchSize, texts.size());
+                List<String> linesBatch = texts.subList(i, end);
+                var embeds = embedder.apply(linesBatch);
+                var metadata = createMetadata(linesBatch, metadatas, i);
+                if (docstore != null) {
+                    storeDocuments(ids.subList(i, end), linesBatch, metadata);
+                }
+                for (Vector vector : createVectors(ids.subList(i, end), embeds, metadata)) {
+                    long size = estimateSize(vector);
+                    if (!pending.isEmpty()
+                            && (pending.size() >= upsertBatchSize || pendingBytes + size > maxRequestBytes)) {
+                        requests.add(submitUpsert(pending, permits, failed, upsertExecutor));
+                        pending = new ArrayList<>();
+                        pendingBytes = 0;
+                    }
+                    pending.add(vector);
+                    pendingBytes += size;
+                }
+            }
+            if (!pending.isEmpty() && !failed.get()) {
+                requests.add(submitUpsert(pending, permits, failed, upsertExecutor));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requests.forEach(request -> request.getRight().cancel(true));
+            throw new LangChainException("Interrupted while upserting vectors.", e);
+        } catch (RuntimeException e) {
+            embedFailure = e;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return collectUpserts(requests, ids, embedFailure);
+    }
+
+    private int upsert(List<Vector> vectors) {
+        UpsertRequest request = new UpsertRequest(vectors, namespace);
+        return index.withRetry(retry).upsert(request).getUpsertedCount();
+    }
+
+    /**
+     * Submit the upsert of the vectors once one of the permits is free, the failed flag is raised if it fails.
+     */
+    private Pair<List<String>, CompletableFuture<Integer>> submitUpsert(List<Vector> vectors, Semaphore permits,
+            AtomicBoolean failed, Executor upsertExecutor) throws InterruptedException {
+        permits.acquire();
+        CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return upsert(vectors);
+            } catch (RuntimeException e) {
+                failed.set(true);
+                throw e;
+            } finally {
+                permits.release();
+            }
+        }, upsertExecutor);
+        return Pair.of(vectors.stream().map(Vector::getId).toList(), future);
+    }
+
+    /**
+     * Wait for the upsert requests and sum the upserted vectors. If a request failed, or embedFailure is not null,
+     * every id not upserted by a successful request is reported, including the ones never submitted.
+     */
+    private static int collectUpserts(List<Pair<List<String>, CompletableFuture<Integer>>> requests,
+            List<String> ids, RuntimeException embedFailure) {
         int total = 0;
-        for (int i = 0; i < texts.size(); i += batchSize) {
-            // set end position of batch
-            int iEnd = Math.min(i + batchSize, texts.size());
-            // get batch of texts and ids
-            List<String> linesBatch = texts.subList(i, iEnd);
-            // create ids if not provided
-            List<String> idsBatch = createIdsBatch(iEnd - i);
-            // create embeddings
-            var embeds = embedding.embedDocuments(linesBatch);
-            // prepare metadata and upsert batch
-            var metadata = createMetadata(linesBatch, metadatas, i, iEnd);
-            List<Vector> vectors = createVectors(idsBatch, embeds, metadata);
-            // upsert to Pinecone
-            var response = index.upsert(new UpsertRequest(vectors, namespace));
-            total += response.getUpsertedCount();
+        Set<String> upsertedIds = new HashSet<>();
+        Throwable failure = embedFailure;
+        for (var request : requests) {
+            try {
+                total += request.getRight().join();
+                upsertedIds.addAll(request.getLeft());
+            } catch (CompletionException | CancellationException e) {
+                failure = failure != null ? failure : (e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        if (failure != null) {
+            List<String> failedIds = ids.stream().filter(id -> !upsertedIds.contains(id)).toList();
+            throw new PineconeUpsertException(failedIds, ids.size(), failure);
         }
         return total;
     }
 
+    /**
+     * Estimate the size of the vector in a JSON request, counting 15 characters per value.
+     */
+    private static long estimateSize(Vector vector) {
+        long size = 64L + vector.getId().length() + 15L * vector.getValues().length;
+        if (vector.getMetadata() != null) {
+            try {
+                size += OBJECT_MAPPER.writeValueAsBytes(vector.getMetadata()).length;
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Metadata of vector " + vector.getId() + " is not serializable", e);
+            }
+        }
+        return size;
+    }
+
     private List<String> createIdsBatch(int batchSize) {
         return Stream.generate(UUID::randomUUID)
                 .limit(batchSize)
@@ -215,25 +596,24 @@ public class Pinecone extends VectorStore {
     }
 
     private List<Map<String, Object>> createMetadata(List<String> linesBatch, List<Map<String, Object>> metadatas,
-            int start, int end) {
+            int start) {
         List<Map<String, Object>> metadata = new ArrayList<>();
-        if (metadatas != null) {
-            metadata.addAll(metadatas.subList(start, end));
-        } else {
-            for (int i = 0; i < linesBatch.size(); i++) {
-                metadata.add(Maps.newHashMap());
-            }
-        }
         for (int j = 0; j < linesBatch.size(); j++) {
-            metadata.get(j).put(textKey, linesBatch.get(j));
+            Map<String, Object> map = metadatas != null && metadatas.get(start + j) != null
+                    ? new HashMap<>(metadatas.get(start + j))
+                    : Maps.newHashMap();
+            if (docstore == null) {
+                map.put(textKey, linesBatch.get(j));
+            }
+            metadata.add(map);
         }
         return metadata;
     }
 
-    private List<Vector> createVectors(List<String> idsBatch, List<List<Float>> embeds,
+    private List<Vector> createVectors(List<String> idsBatch, List<EmbeddingVector> embeds,
             List<Map<String, Object>> metadata) {
         return IntStream.range(0, idsBatch.size())
-                .mapToObj(k -> new Vector(idsBatch.get(k), embeds.get(k), metadata.get(k)))
+                .mapToObj(k -> new Vector(idsBatch.get(k), embeds.get(k).toArray(), metadata.get(k)))
                 .toList();
     }
 }
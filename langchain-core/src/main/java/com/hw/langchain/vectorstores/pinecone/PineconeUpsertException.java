@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.pinecone;
+
+import com.hw.langchain.exception.LangChainException;
+
+import java.util.List;
+
+/**
+ * Thrown when some vectors could not be upserted, the other vectors of the call were written.
+ * Upserting the texts of the failed ids again, with the same ids, completes the ingestion.
+ *
+ * @author HamaWhite
+ */
+public class PineconeUpsertException extends LangChainException {
+
+    private static final long serialVersionUID = -4164917262372961405L;
+
+    private final transient List<String> failedIds;
+
+    /**
+     * Creates a new exception with the ids of the vectors not upserted.
+     *
+     * @param failedIds the ids of the vectors not upserted
+     * @param total     the number of vectors of the call
+     * @param cause     the first failure
+     */
+    public PineconeUpsertException(List<String> failedIds, int total, Throwable cause) {
+        super(String.format("Failed to upsert %d of %d vectors.", failedIds.size(), total), cause);
+        this.failedIds = List.copyOf(failedIds);
+    }
+
+    /**
+     * Get the ids of the vectors not upserted.
+     */
+    public List<String> getFailedIds() {
+        return failedIds;
+    }
+}
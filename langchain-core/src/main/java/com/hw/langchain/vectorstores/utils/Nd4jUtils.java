@@ -18,14 +18,16 @@
 
 package com.hw.langchain.vectorstores.utils;
 
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.util.List;
 
-import static com.hw.langchain.vectorstores.utils.ArrayUtils.listToArray;
-
 /**
+ * Helpers converting vectors to ND4J arrays. ND4J is an optional dependency, add nd4j-native-platform to use them.
+ *
  * @author HamaWhite
  */
 public class Nd4jUtils {
@@ -33,8 +35,30 @@ public class Nd4jUtils {
     private Nd4jUtils() {
     }
 
-    public static INDArray createFromList(List<Float> list) {
-        Float[][] array = listToArray(List.of(list));
-        return Nd4j.createFromArray(array);
+    /**
+     * Create a 1 x dimension matrix holding the vector.
+     */
+    public static INDArray createFromVector(EmbeddingVector vector) {
+        return Nd4j.create(vector.toArray(), new long[]{1, vector.dimension()}, 'c');
+    }
+
+    /**
+     * Create a matrix holding one vector per row.
+     */
+    public static INDArray createFromVectors(List<EmbeddingVector> vectors) {
+        return Nd4j.create(vectors.stream().map(EmbeddingVector::toArray).toArray(float[][]::new));
+    }
+
+    /**
+     * Calculate maximal marginal relevance.
+     *
+     * @deprecated use {@link Utils#maximalMarginalRelevance(EmbeddingVector, List, int, float)}, which needs no
+     *             native library
+     */
+    @Deprecated
+    public static List<Integer> maximalMarginalRelevance(INDArray queryEmbedding, List<EmbeddingVector> embeddingList,
+            int k, float lambdaMult) {
+        return Utils.maximalMarginalRelevance(EmbeddingVector.wrap(queryEmbedding.toFloatVector()), embeddingList, k,
+                lambdaMult);
     }
 }
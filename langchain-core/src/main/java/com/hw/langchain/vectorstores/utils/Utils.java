@@ -18,17 +18,15 @@
 
 package com.hw.langchain.vectorstores.utils;
 
-import com.google.common.collect.Lists;
-
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.ops.transforms.Transforms;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
-import static com.hw.langchain.math.utils.MathUtils.cosineSimilarity;
-import static com.hw.langchain.vectorstores.utils.Nd4jUtils.createFromList;
+import static com.hw.langchain.math.utils.VectorUtils.dot;
+import static com.hw.langchain.math.utils.VectorUtils.normalize;
 import static java.lang.Float.NEGATIVE_INFINITY;
 
 /**
@@ -43,38 +41,88 @@ public class Utils {
 
     /**
      * Calculate maximal marginal relevance.
+     *
+     * @param queryEmbedding the query vector
+     * @param embeddingList  the candidate vectors
+     * @param k              number of candidates to select
+     * @param lambdaMult     number between 0 and 1 that determines the degree of diversity among the results with 0
+     *                       corresponding to maximum diversity and 1 to minimum diversity
+     * @return indexes of the selected candidates, in order of selection
+     */
+    public static List<Integer> maximalMarginalRelevance(EmbeddingVector queryEmbedding,
+            List<EmbeddingVector> embeddingList, int k, float lambdaMult) {
+        return maximalMarginalRelevance(queryEmbedding.toArray(),
+                embeddingList.stream().map(EmbeddingVector::toArray).toList(), k, lambdaMult);
+    }
+
+    /**
+     * Calculate maximal marginal relevance on primitive vectors.
+     * <p>
+     * The candidates are normalized once into a contiguous matrix, and the maximum similarity of every candidate to
+     * the selected ones is updated with the last selected candidate only, so selecting k of n candidates of dimension
+     * d takes O(k * n * d) without allocating per round.
+     *
+     * @param queryEmbedding the query vector
+     * @param embeddingList  the candidate vectors, none of them is modified
+     * @param k              number of candidates to select
+     * @param lambdaMult     number between 0 and 1 that determines the degree of diversity among the results with 0
+     *                       corresponding to maximum diversity and 1 to minimum diversity
+     * @return indexes of the selected candidates, in order of selection
      */
-    public static List<Integer> maximalMarginalRelevance(INDArray queryEmbedding, List<List<Float>> embeddingList,
-            int k, float lambdaMult) {
-        if (Math.min(k, embeddingList.size()) <= 0) {
+    public static List<Integer> maximalMarginalRelevance(float[] queryEmbedding, List<float[]> embeddingList, int k,
+            float lambdaMult) {
+        int count = Math.min(k, embeddingList.size());
+        if (count <= 0) {
             return new ArrayList<>();
         }
-        if (queryEmbedding.rank() == 1) {
-            queryEmbedding = Nd4j.expandDims(queryEmbedding, 0);
+        int n = embeddingList.size();
+        int dimension = queryEmbedding.length;
+        float[] query = normalize(queryEmbedding.clone());
+        float[] candidates = new float[n * dimension];
+        for (int i = 0; i < n; i++) {
+            float[] candidate = embeddingList.get(i);
+            if (candidate.length != dimension) {
+                throw new IllegalArgumentException(String.format(
+                        "Candidate %d has dimension %d, expected %d.", i, candidate.length, dimension));
+            }
+            System.arraycopy(candidate, 0, candidates, i * dimension, dimension);
+            normalize(candidates, i * dimension, dimension);
         }
-        INDArray similarityToQuery = cosineSimilarity(queryEmbedding, embeddingList).getRow(0);
-        int mostSimilar = Nd4j.argMax(similarityToQuery).getInt(0);
-        List<Integer> idxs = Lists.newArrayList(mostSimilar);
-        INDArray selected = createFromList(embeddingList.get(mostSimilar));
 
-        while (idxs.size() < Math.min(k, embeddingList.size())) {
+        float[] similarityToQuery = new float[n];
+        int mostSimilar = 0;
+        for (int i = 0; i < n; i++) {
+            similarityToQuery[i] = dot(query, 0, candidates, i * dimension, dimension);
+            if (similarityToQuery[i] > similarityToQuery[mostSimilar]) {
+                mostSimilar = i;
+            }
+        }
+
+        float[] similarityToSelected = new float[n];
+        Arrays.fill(similarityToSelected, NEGATIVE_INFINITY);
+        BitSet selected = new BitSet(n);
+        List<Integer> idxs = new ArrayList<>(count);
+        int last = mostSimilar;
+        while (true) {
+            idxs.add(last);
+            selected.set(last);
+            if (idxs.size() == count) {
+                return idxs;
+            }
             float bestScore = NEGATIVE_INFINITY;
             int idxToAdd = -1;
-            INDArray similarityToSelected = cosineSimilarity(embeddingList, selected);
-            for (int i = 0; i < similarityToQuery.columns(); i++) {
-                if (idxs.contains(i)) {
-                    continue;
+            for (int i = selected.nextClearBit(0); i < n; i = selected.nextClearBit(i + 1)) {
+                float similarity = dot(candidates, i * dimension, candidates, last * dimension, dimension);
+                if (similarity > similarityToSelected[i]) {
+                    similarityToSelected[i] = similarity;
                 }
-                float redundantScore = Transforms.max(similarityToSelected.getRow(i), 0).getFloat(0);
-                float equationScore = lambdaMult * similarityToQuery.getFloat(i) - (1 - lambdaMult) * redundantScore;
-                if (equationScore > bestScore) {
+                float equationScore = lambdaMult * similarityToQuery[i] - (1 - lambdaMult) * similarityToSelected[i];
+                if (idxToAdd < 0 || equationScore > bestScore) {
                     bestScore = equationScore;
                     idxToAdd = i;
                 }
             }
-            idxs.add(idxToAdd);
-            selected = Nd4j.vstack(selected, createFromList(embeddingList.get(idxToAdd)));
+            last = idxToAdd;
         }
-        return idxs;
     }
 }
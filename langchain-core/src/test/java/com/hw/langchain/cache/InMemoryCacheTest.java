@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.hw.langchain.chat.models.base.BaseChatModel;
+import com.hw.langchain.llms.base.BaseLLM;
+import com.hw.langchain.schema.*;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.experimental.SuperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class InMemoryCacheTest {
+
+    @Test
+    void testLookupAndEviction() {
+        InMemoryCache cache = new InMemoryCache(2);
+        cache.update("foo", "llm", List.of(new Generation("bar")));
+
+        assertThat(cache.lookup("foo", "llm")).extracting(Generation::getText).containsExactly("bar");
+        assertThat(cache.lookup("foo", "other-llm")).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+
+        cache.update("a", "llm", List.of(new Generation("1")));
+        cache.update("b", "llm", List.of(new Generation("2")));
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testGenerateOnlyMissingPrompts() {
+        InMemoryCache cache = new InMemoryCache();
+        EchoLLM llm = EchoLLM.builder().cache(cache).build();
+
+        llm.generate(List.of("a", "b"), null);
+        LLMResult result = llm.generate(List.of("a", "c", "b"), null);
+
+        assertThat(llm.calls).containsExactly(List.of("a", "b"), List.of("c"));
+        assertThat(result.getGenerations())
+                .extracting(generations -> generations.get(0).getText())
+                .containsExactly("echo a", "echo c", "echo b");
+
+        // a different stop list is a different llmString
+        llm.generate(List.of("a"), List.of("\n"));
+        assertThat(llm.calls).hasSize(3);
+        assertThat(cache.hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testChatGenerateUsesCache() {
+        InMemoryCache cache = new InMemoryCache();
+        EchoChatModel chatModel = EchoChatModel.builder().cache(cache).build();
+
+        List<BaseMessage> conversation = List.of(new SystemMessage("Be brief."), new HumanMessage("hi"));
+        chatModel.generate(List.of(conversation));
+        BaseMessage message = chatModel.call(conversation);
+
+        assertThat(chatModel.calls).isOne();
+        assertThat(message).isInstanceOf(AIMessage.class);
+        assertThat(message.getContent()).isEqualTo("echo hi");
+
+        // same content with a different role is another conversation
+        chatModel.call(List.of(new SystemMessage("Be brief."), new AIMessage("hi")));
+        assertThat(chatModel.calls).isEqualTo(2);
+    }
+
+    @SuperBuilder
+    static class EchoLLM extends BaseLLM {
+
+        private final List<List<String>> calls = new ArrayList<>();
+
+        @Override
+        public String llmType() {
+            return "echo";
+        }
+
+        @Override
+        protected LLMResult _generate(List<String> prompts, List<String> stop) {
+            calls.add(prompts);
+            List<List<Generation>> generations = prompts.stream()
+                    .map(prompt -> List.of(new Generation("echo " + prompt)))
+                    .toList();
+            return new LLMResult(generations, Map.of());
+        }
+    }
+
+    @SuperBuilder
+    static class EchoChatModel extends BaseChatModel {
+
+        private int calls;
+
+        @Override
+        public String llmType() {
+            return "echo-chat";
+        }
+
+        @Override
+        public ChatResult _generate(List<BaseMessage> messages, List<String> stop) {
+            calls++;
+            String content = "echo " + messages.get(messages.size() - 1).getContent();
+            return new ChatResult(List.of(new ChatGeneration(new AIMessage(content))), Map.of());
+        }
+    }
+}
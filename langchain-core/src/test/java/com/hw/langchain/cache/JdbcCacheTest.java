@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.hw.langchain.schema.AIMessage;
+import com.hw.langchain.schema.ChatGeneration;
+import com.hw.langchain.schema.Generation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class JdbcCacheTest {
+
+    private final String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    private final List<JdbcCache> caches = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        for (JdbcCache cache : caches) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void testBatchLookupAndUpdate() {
+        JdbcCache cache = createCache(0, null);
+        Generation generation = new Generation("bar", Map.of("finishReason", "stop"));
+        ChatGeneration chatGeneration = new ChatGeneration(new AIMessage("hello"));
+
+        cache.update(List.of("foo", "hi"), "llm", List.of(List.of(generation), List.of(chatGeneration)));
+        List<List<Generation>> actual = cache.lookup(List.of("foo", "missing", "hi", "foo"), "llm");
+
+        assertThat(actual).hasSize(4);
+        assertThat(actual.get(0)).containsExactly(generation);
+        assertThat(actual.get(1)).isNull();
+        assertThat(actual.get(2).get(0)).isInstanceOfSatisfying(ChatGeneration.class, restored -> {
+            assertThat(restored.getMessage()).isInstanceOf(AIMessage.class);
+            assertThat(restored.getText()).isEqualTo("hello");
+        });
+        assertThat(actual.get(3)).containsExactly(generation);
+        assertThat(cache.lookup("foo", "other-llm")).isNull();
+    }
+
+    @Test
+    void testEntriesSharedAcrossInstances() {
+        createCache(0, null).update("foo", "llm", List.of(new Generation("bar")));
+        JdbcCache cache = createCache(0, null);
+
+        assertThat(cache.lookup("foo", "llm")).extracting(Generation::getText).containsExactly("bar");
+
+        cache.update("foo", "llm", List.of(new Generation("baz")));
+        assertThat(cache.lookup("foo", "llm")).extracting(Generation::getText).containsExactly("baz");
+        assertThat(cache.size()).isOne();
+    }
+
+    @Test
+    void testEvictBySize() {
+        JdbcCache cache = createCache(10, null);
+        IntStream.range(0, 25).forEach(i -> cache.update("prompt" + i, "llm", List.of(new Generation("" + i))));
+
+        cache.evict();
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    void testExpiredEntriesAreIgnored() throws InterruptedException {
+        JdbcCache cache = createCache(0, Duration.ofMillis(50));
+        cache.update("foo", "llm", List.of(new Generation("bar")));
+        assertThat(cache.lookup("foo", "llm")).isNotNull();
+
+        Thread.sleep(100);
+        assertThat(cache.lookup("foo", "llm")).isNull();
+
+        cache.evict();
+        assertThat(cache.size()).isZero();
+    }
+
+    private JdbcCache createCache(long maxSize, Duration maxAge) {
+        try {
+            JdbcCache cache = new JdbcCache(DriverManager.getConnection(url, "root", ""), "llm_cache", maxSize, maxAge);
+            caches.add(cache);
+            return cache;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
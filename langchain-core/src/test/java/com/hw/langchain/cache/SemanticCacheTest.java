@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.cache;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.schema.Generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class SemanticCacheTest {
+
+    /**
+     * Embeds a text as its counts of the letters a, b and c, so anagrams are identical.
+     */
+    private static class LetterEmbeddings implements Embeddings {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public List<EmbeddingVector> embedDocuments(List<String> texts) {
+            calls.incrementAndGet();
+            return texts.stream().map(this::embed).toList();
+        }
+
+        @Override
+        public EmbeddingVector embedQuery(String text) {
+            calls.incrementAndGet();
+            return embed(text);
+        }
+
+        private EmbeddingVector embed(String text) {
+            return EmbeddingVector.of(count(text, 'a'), count(text, 'b'), count(text, 'c'));
+        }
+
+        private static float count(String text, char letter) {
+            return text.chars().filter(c -> c == letter).count();
+        }
+    }
+
+    /**
+     * Embeds the queries in another space than the documents, as asymmetric retrieval models do.
+     */
+    private static class AsymmetricEmbeddings extends LetterEmbeddings {
+
+        @Override
+        public EmbeddingVector embedQuery(String text) {
+            EmbeddingVector document = super.embedQuery(text);
+            return EmbeddingVector.of(document.get(2), document.get(0), document.get(1));
+        }
+    }
+
+    @Test
+    void testLookupSimilarPrompt() {
+        LetterEmbeddings embeddings = new LetterEmbeddings();
+        SemanticCache cache = new SemanticCache(embeddings, 0.99f, 100);
+
+        assertThat(cache.lookup("aab", "llm")).isNull();
+        cache.update("aab", "llm", List.of(new Generation("cached")));
+        // the embedding computed by the lookup is reused by the update
+        assertThat(embeddings.calls).hasValue(1);
+
+        assertThat(cache.lookup("aba", "llm")).extracting(Generation::getText).containsExactly("cached");
+        assertThat(cache.lookup("abc", "llm")).isNull();
+        assertThat(cache.lookup("aba", "other-llm")).isNull();
+
+        assertThat(cache.hitCount()).isOne();
+        assertThat(cache.missCount()).isEqualTo(3);
+        assertThat(cache.hitRate()).isEqualTo(0.25);
+        assertThat(cache.averageLookupLatency()).isPositive();
+    }
+
+    @Test
+    void testBatchLookupAndEviction() {
+        LetterEmbeddings embeddings = new LetterEmbeddings();
+        SemanticCache cache = new SemanticCache(embeddings, 0.99f, 2);
+
+        cache.update(List.of("a", "b", "c"), "llm",
+                List.of(List.of(new Generation("1")), List.of(new Generation("2")), List.of(new Generation("3"))));
+        assertThat(cache.size()).isEqualTo(2);
+
+        List<List<Generation>> actual = cache.lookup(List.of("aa", "bb", "cc"), "llm");
+        assertThat(actual.get(0)).isNull();
+        assertThat(actual.get(1)).extracting(Generation::getText).containsExactly("2");
+        assertThat(actual.get(2)).extracting(Generation::getText).containsExactly("3");
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testSingleAndBatchPromptsShareKeys() {
+        SemanticCache cache = new SemanticCache(new AsymmetricEmbeddings(), 0.99f, 100);
+
+        cache.update(List.of("aab", "bbc"), "llm", List.of(List.of(new Generation("1")), List.of(new Generation("2"))));
+        cache.update("ccb", "llm", List.of(new Generation("3")));
+
+        assertThat(cache.lookup("aab", "llm")).extracting(Generation::getText).containsExactly("1");
+        assertThat(cache.lookup(List.of("ccb", "bbc"), "llm"))
+                .extracting(generations -> generations.get(0).getText())
+                .containsExactly("3", "2");
+    }
+}
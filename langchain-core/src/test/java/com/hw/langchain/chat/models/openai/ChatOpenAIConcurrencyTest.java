@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.chat.models.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.langchain.schema.BaseMessage;
+import com.hw.langchain.schema.HumanMessage;
+import com.hw.langchain.schema.LLMResult;
+import com.hw.openai.entity.completions.Usage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.SneakyThrows;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the concurrent generation of ChatOpenAI against a local server, which answers the later conversations first.
+ *
+ * @author HamaWhite
+ */
+class ChatOpenAIConcurrencyTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final int CONVERSATIONS = 8;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    int index = indexOf(request);
+                    TimeUnit.MILLISECONDS.sleep(20L * (CONVERSATIONS - index));
+                    return new MockResponse().setBody(reply(index));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new MockResponse().setResponseCode(500);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Get i of the conversation "prompt-i" of the request.
+     */
+    @SneakyThrows
+    private static int indexOf(RecordedRequest request) {
+        JsonNode messages = OBJECT_MAPPER.readTree(request.getBody().readUtf8()).get("messages");
+        return Integer.parseInt(messages.get(messages.size() - 1).get("content").asText().substring(7));
+    }
+
+    /**
+     * Reply "reply-i" to the conversation i, using i + 1 prompt tokens and 1 completion token.
+     */
+    private static String reply(int index) {
+        ObjectNode response = OBJECT_MAPPER.createObjectNode()
+                .put("id", "chatcmpl-" + index)
+                .put("object", "chat.completion")
+                .put("model", "gpt-3.5-turbo");
+        ObjectNode choice = response.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+        choice.putObject("message").put("role", "assistant").put("content", "reply-" + index);
+        response.putObject("usage")
+                .put("prompt_tokens", index + 1)
+                .put("completion_tokens", 1)
+                .put("total_tokens", index + 2);
+        return response.toString();
+    }
+
+    private ChatOpenAI.ChatOpenAIBuilder<?, ?> builder() {
+        return ChatOpenAI.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key");
+    }
+
+    private static List<List<BaseMessage>> conversations() {
+        return IntStream.range(0, CONVERSATIONS)
+                .mapToObj(i -> List.<BaseMessage>of(new HumanMessage("prompt-" + i)))
+                .toList();
+    }
+
+    private static void assertCombinedResult(LLMResult result) {
+        assertThat(result.getGenerations())
+                .extracting(generations -> generations.get(0).getText())
+                .containsExactlyElementsOf(IntStream.range(0, CONVERSATIONS).mapToObj(i -> "reply-" + i).toList());
+
+        Usage usage = (Usage) result.getLlmOutput().get("token_usage");
+        assertThat(usage.getPromptTokens()).isEqualTo(36L);
+        assertThat(usage.getCompletionTokens()).isEqualTo(8L);
+        assertThat(usage.getTotalTokens()).isEqualTo(44L);
+    }
+
+    @Test
+    void testGenerateConcurrentlyKeepsOrderAndSumsUsage() {
+        ChatOpenAI chat = builder().maxConcurrency(4).build().init();
+
+        LLMResult result = chat.generate(conversations());
+
+        assertCombinedResult(result);
+        assertThat(server.getRequestCount()).isEqualTo(CONVERSATIONS);
+        assertThat(maxInFlight.get()).isBetween(2, 4);
+    }
+
+    @Test
+    void testGenerateOnCustomExecutor() {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        AtomicInteger submitted = new AtomicInteger();
+        Executor executor = command -> {
+            submitted.incrementAndGet();
+            pool.execute(command);
+        };
+        try {
+            ChatOpenAI chat = builder().maxConcurrency(3).executor(executor).build().init();
+
+            LLMResult result = chat.generate(conversations());
+
+            assertCombinedResult(result);
+            assertThat(submitted.get()).isEqualTo(CONVERSATIONS);
+            assertThat(maxInFlight.get()).isBetween(2, 3);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Embeddings for tests, which compute the vector of a text locally instead of calling a model.
+ *
+ * @author HamaWhite
+ */
+public class FakeEmbeddings implements Embeddings {
+
+    private final Function<String, EmbeddingVector> embedder;
+
+    public FakeEmbeddings(Function<String, EmbeddingVector> embedder) {
+        this.embedder = embedder;
+    }
+
+    /**
+     * Embed each text as its vector in the map.
+     */
+    public static FakeEmbeddings of(Map<String, EmbeddingVector> vectors) {
+        return new FakeEmbeddings(vectors::get);
+    }
+
+    /**
+     * Embed "text-i" as (i, 1, 0, 0).
+     */
+    public static FakeEmbeddings indexed() {
+        return new FakeEmbeddings(text -> EmbeddingVector.of(Float.parseFloat(text.substring(5)), 1f, 0f, 0f));
+    }
+
+    @Override
+    public List<EmbeddingVector> embedDocuments(List<String> texts) {
+        return texts.stream().map(embedder).toList();
+    }
+
+    @Override
+    public EmbeddingVector embedQuery(String text) {
+        return embedder.apply(text);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ReadOnlyBufferException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class EmbeddingVectorTest {
+
+    @Test
+    void testViewsShareValues() {
+        float[] values = {3f, 4f};
+        EmbeddingVector vector = EmbeddingVector.wrap(values);
+
+        assertThat(vector.dimension()).isEqualTo(2);
+        assertThat(vector.asList()).containsExactly(3f, 4f);
+        assertThat(vector.asFloatBuffer().get(1)).isEqualTo(4f);
+        assertThrows(UnsupportedOperationException.class, () -> vector.asList().set(0, 1f));
+        assertThrows(ReadOnlyBufferException.class, () -> vector.asFloatBuffer().put(0, 1f));
+
+        // the copies do not leak the backing array
+        vector.toArray()[0] = 1f;
+        assertThat(vector.get(0)).isEqualTo(3f);
+    }
+
+    @Test
+    void testOffHeap() {
+        EmbeddingVector heap = EmbeddingVector.of(List.of(3f, 4f));
+        EmbeddingVector offHeap = EmbeddingVector.offHeap(new float[]{3f, 4f});
+
+        assertThat(offHeap.isOffHeap()).isTrue();
+        assertThat(heap.isOffHeap()).isFalse();
+        assertThat(offHeap).isEqualTo(heap).hasSameHashCodeAs(heap);
+        assertThat(offHeap.toArray()).containsExactly(3f, 4f);
+    }
+
+    @Test
+    void testByteArray() {
+        EmbeddingVector vector = EmbeddingVector.of(1f, -2.5f, 3e-7f);
+        byte[] bytes = vector.toByteArray();
+
+        assertThat(bytes).hasSize(12).startsWith(0, 0, (byte) 0x80, 0x3f);
+        assertThat(EmbeddingVector.fromByteArray(bytes)).isEqualTo(vector);
+        assertThat(EmbeddingVector.offHeap(vector.toArray()).toByteArray()).isEqualTo(bytes);
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingVector.fromByteArray(new byte[5]));
+    }
+
+    @Test
+    void testSimilarity() {
+        EmbeddingVector x = EmbeddingVector.of(3f, 4f);
+        EmbeddingVector y = EmbeddingVector.of(4f, 3f);
+
+        assertThat(x.norm()).isEqualTo(5f);
+        assertThat(x.dot(y)).isEqualTo(24f);
+        assertThat(x.cosineSimilarity(y)).isCloseTo(0.96f, within(1e-6f));
+        assertThat(x.cosineSimilarity(EmbeddingVector.of(0f, 0f))).isZero();
+        assertThrows(IllegalArgumentException.class, () -> x.dot(EmbeddingVector.of(1f)));
+    }
+}
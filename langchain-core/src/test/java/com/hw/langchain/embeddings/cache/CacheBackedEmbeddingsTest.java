@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.cache;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.langchain.storage.InMemoryByteStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class CacheBackedEmbeddingsTest {
+
+    private final InMemoryByteStore store = new InMemoryByteStore();
+
+    private final FakeEmbeddings underlying = new FakeEmbeddings();
+
+    @Test
+    void testOnlyMissesAreEmbeddedInOneCall() {
+        CacheBackedEmbeddings embeddings = new CacheBackedEmbeddings(underlying, store, "fake-model");
+
+        List<EmbeddingVector> first = embeddings.embedDocuments(List.of("a", "bb", "a"));
+        List<EmbeddingVector> second = embeddings.embedDocuments(List.of("ccc", "bb", "a", "ccc"));
+
+        assertThat(first).containsExactly(vector("a"), vector("bb"), vector("a"));
+        assertThat(second).containsExactly(vector("ccc"), vector("bb"), vector("a"), vector("ccc"));
+        assertThat(underlying.calls).containsExactly(List.of("a", "bb"), List.of("ccc"));
+        assertThat(store.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testAllCachedSkipsUnderlyingModel() {
+        CacheBackedEmbeddings embeddings = new CacheBackedEmbeddings(underlying, store, "fake-model");
+        embeddings.embedDocuments(List.of("a", "bb"));
+
+        assertThat(embeddings.embedDocumentsAsync(List.of("bb", "a")).join()).containsExactly(vector("bb"),
+                vector("a"));
+        assertThat(underlying.calls).hasSize(1);
+    }
+
+    @Test
+    void testNamespacesDoNotCollide() {
+        new CacheBackedEmbeddings(underlying, store, "model-1").embedDocuments(List.of("a"));
+        new CacheBackedEmbeddings(underlying, store, "model-2").embedDocuments(List.of("a"));
+
+        assertThat(underlying.calls).hasSize(2);
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testQueriesAreNotCached() {
+        CacheBackedEmbeddings embeddings = new CacheBackedEmbeddings(underlying, store, "fake-model");
+
+        assertThat(embeddings.embedQuery("a")).isEqualTo(vector("a"));
+        assertThat(store.size()).isZero();
+    }
+
+    private static EmbeddingVector vector(String text) {
+        return EmbeddingVector.of(text.length(), text.charAt(0));
+    }
+
+    private static class FakeEmbeddings implements Embeddings {
+
+        private final List<List<String>> calls = new ArrayList<>();
+
+        @Override
+        public List<EmbeddingVector> embedDocuments(List<String> texts) {
+            calls.add(texts);
+            return texts.stream().map(CacheBackedEmbeddingsTest::vector).toList();
+        }
+
+        @Override
+        public EmbeddingVector embedQuery(String text) {
+            return vector(text);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.embeddings.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.openai.entity.embeddings.EncodingFormat;
+import com.hw.openai.utils.TokenizerUtils;
+import com.knuddels.jtokkit.api.Encoding;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.SneakyThrows;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAIEmbeddingsTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(50);
+                    return new MockResponse().setBody(embed(request.getBody().readUtf8()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new MockResponse().setResponseCode(500);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Embed each token input as (number of tokens, first token), listing the data in reverse order.
+     */
+    @SneakyThrows
+    private static String embed(String requestBody) {
+        JsonNode input = OBJECT_MAPPER.readTree(requestBody).get("input");
+        ArrayNode data = OBJECT_MAPPER.createArrayNode();
+        for (int i = input.size() - 1; i >= 0; i--) {
+            ObjectNode item = data.addObject().put("object", "embedding").put("index", i);
+            item.putArray("embedding").add(input.get(i).size()).add(input.get(i).get(0).asInt());
+        }
+        ObjectNode response = OBJECT_MAPPER.createObjectNode().put("object", "list");
+        response.set("data", data);
+        return response.toString();
+    }
+
+    @Test
+    void testEmbedDocumentsConcurrently() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .encodingFormat(EncodingFormat.FLOAT)
+                .chunkSize(2)
+                .maxConcurrency(3)
+                .build()
+                .init();
+        List<String> texts = IntStream.range(0, 12)
+                .mapToObj(i -> "token" + " token".repeat(i))
+                .toList();
+
+        List<EmbeddingVector> vectors = embeddings.embedDocuments(texts);
+
+        assertThat(server.getRequestCount()).isEqualTo(6);
+        assertThat(maxInFlight.get()).isBetween(2, 3);
+        // the embeddings are in the order of the texts, as (number of tokens, first token) normalized
+        for (int i = 0; i < texts.size(); i++) {
+            float numTokens = i + 1;
+            float firstToken = vectors.get(0).get(1) / vectors.get(0).get(0);
+            float norm = (float) Math.sqrt(numTokens * numTokens + firstToken * firstToken);
+            assertThat(vectors.get(i).get(0)).isCloseTo(numTokens / norm, within(1e-6f));
+        }
+    }
+
+    @Test
+    void testEmbedDocumentsAveragesChunks() {
+        OpenAIEmbeddings embeddings = OpenAIEmbeddings.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .encodingFormat(EncodingFormat.FLOAT)
+                .embeddingCtxLength(2)
+                .build()
+                .init();
+        Encoding encoding = TokenizerUtils.encodingForModel("text-embedding-ada-002");
+        float first = encoding.encode("token").get(0);
+        float next = encoding.encode(" token").get(0);
+
+        List<EmbeddingVector> vectors = embeddings.embedDocuments(List.of("token token token", "token"));
+
+        // the chunks (2, first) and (1, next) are weighted by their number of tokens, 2 and 1
+        assertVector(vectors.get(0), 2 * 2 + 1, 2 * first + next);
+        // a single chunk is only normalized
+        assertVector(vectors.get(1), 1, first);
+    }
+
+    private static void assertVector(EmbeddingVector vector, float x, float y) {
+        float norm = (float) Math.sqrt(x * x + y * y);
+        assertThat(vector.get(0)).isCloseTo(x / norm, within(1e-6f));
+        assertThat(vector.get(1)).isCloseTo(y / norm, within(1e-6f));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.llms.openai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class BaseOpenAITest {
+
+    @Test
+    void testMaxTokensForPrompt() {
+        OpenAI llm = OpenAI.builder()
+                .model("gpt-3.5-turbo-instruct")
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> llm.maxTokensForPrompt("Tell me a joke."));
+
+        OpenAI davinci = OpenAI.builder().build();
+        assertThat(davinci.getNumTokens("Tell me a joke.")).isEqualTo(5);
+        assertThat(davinci.maxTokensForPrompt("Tell me a joke.")).isEqualTo(4097 - 5);
+    }
+
+    @Test
+    void testModelNameToContextSize() {
+        assertThat(BaseOpenAI.modelNameToContextSize("gpt-4-32k")).isEqualTo(32768);
+        assertThat(BaseOpenAI.modelNameToContextSize("curie:ft-personal-2023-06-01-00-00-00")).isEqualTo(2049);
+    }
+}
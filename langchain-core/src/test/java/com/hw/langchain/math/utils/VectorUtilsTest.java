@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.math.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.hw.langchain.math.utils.VectorUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class VectorUtilsTest {
+
+    @Test
+    void testDotAndNorm() {
+        assertThat(dot(new float[]{1, 2, 3}, new float[]{4, 5, 6})).isEqualTo(32);
+        assertThat(norm(new float[]{3, 4})).isEqualTo(5);
+        assertThrows(IllegalArgumentException.class, () -> dot(new float[]{1}, new float[]{1, 2}));
+    }
+
+    @Test
+    void testAddScaledAndNormalize() {
+        float[] sum = new float[2];
+        addScaled(sum, new float[]{1, 0}, 3);
+        addScaled(sum, new float[]{0, 2}, 2);
+
+        assertThat(sum).containsExactly(3, 4);
+        assertThat(normalize(sum)).isSameAs(sum).containsExactly(0.6f, 0.8f);
+    }
+
+    @Test
+    void testNormalizeZeroVector() {
+        assertThat(normalize(new float[3])).containsExactly(0, 0, 0);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.storage;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.utils.ConcurrentUtils.mapConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class JdbcByteStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEntriesSurviveReopening() throws SQLException {
+        String url = "jdbc:h2:file:" + tempDir.resolve("store");
+        try (JdbcByteStore store = new JdbcByteStore(url, "root", "")) {
+            store.mset(Map.of("foo", new byte[]{1, 2}, "bar", new byte[]{3}));
+            store.mset(Map.of("foo", new byte[]{4}));
+        }
+        try (JdbcByteStore store = new JdbcByteStore(url, "root", "")) {
+            List<byte[]> values = store.mget(List.of("foo", "missing", "bar", "foo"));
+
+            assertThat(values.get(0)).containsExactly(4);
+            assertThat(values.get(1)).isNull();
+            assertThat(values.get(2)).containsExactly(3);
+            assertThat(values.get(3)).containsExactly(4);
+
+            store.mdelete(List.of("foo", "missing"));
+            assertThat(store.mget(List.of("foo"))).containsOnlyNulls();
+            assertThat(store.size()).isOne();
+        }
+    }
+
+    @Test
+    void testBatchesBeyondOneInClause() throws SQLException {
+        try (JdbcByteStore store = new JdbcByteStore("jdbc:h2:mem:", "root", "")) {
+            List<String> keys = IntStream.range(0, 1200).mapToObj(i -> "key" + i).toList();
+            store.mset(keys.stream().collect(Collectors.toMap(key -> key, String::getBytes)));
+
+            List<byte[]> values = store.mget(keys);
+            assertThat(values).hasSize(1200);
+            assertThat(IntStream.range(0, 1200).allMatch(i -> Arrays.equals(values.get(i), keys.get(i).getBytes())))
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void testConcurrentCallsOnDataSource() {
+        JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "root", "");
+        try {
+            JdbcByteStore store = new JdbcByteStore(pool, "byte_store");
+            List<Integer> writers = IntStream.range(0, 8).boxed().toList();
+
+            List<List<byte[]>> values = mapConcurrently(writers, writer -> {
+                List<String> keys = IntStream.range(0, 50).mapToObj(i -> writer + "-" + i).toList();
+                store.mset(keys.stream().collect(Collectors.toMap(key -> key, String::getBytes)));
+                return store.mget(keys);
+            }, 8);
+
+            for (int writer = 0; writer < 8; writer++) {
+                assertThat(values.get(writer)).hasSize(50);
+                assertThat(values.get(writer).get(7)).isEqualTo((writer + "-7").getBytes());
+            }
+            assertThat(store.size()).isEqualTo(400);
+        } finally {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.utils;
+
+import com.hw.langchain.embeddings.FakeEmbeddings;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static com.hw.langchain.utils.ConcurrentUtils.mapConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class ConcurrentUtilsTest {
+
+    @Test
+    void testMapConcurrentlyKeepsOrderAndBound() {
+        List<Integer> inputs = IntStream.range(0, 50).boxed().toList();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<Integer> results = mapConcurrently(inputs, i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(ThreadLocalRandom.current().nextInt(5));
+            inFlight.decrementAndGet();
+            return i * 2;
+        }, 4);
+
+        assertThat(results).isEqualTo(inputs.stream().map(i -> i * 2).toList());
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void testMapConcurrentlyRethrowsFailure() {
+        List<Integer> inputs = IntStream.range(0, 10).boxed().toList();
+
+        var exception = assertThrows(IllegalStateException.class, () -> mapConcurrently(inputs, i -> {
+            if (i == 3) {
+                throw new IllegalStateException("failed at " + i);
+            }
+            return i;
+        }, 3));
+        assertThat(exception).hasMessage("failed at 3");
+    }
+
+    @Test
+    void testDefaultAsyncCallsDoNotRunOnCommonPool() {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        FakeEmbeddings embeddings = new FakeEmbeddings(text -> {
+            thread.set(Thread.currentThread());
+            return EmbeddingVector.of(text.length());
+        });
+
+        embeddings.embedQueryAsync("a").join();
+
+        assertThat(thread.get().getName()).startsWith("langchain-blocking-");
+        assertThat(thread.get().isDaemon()).isTrue();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
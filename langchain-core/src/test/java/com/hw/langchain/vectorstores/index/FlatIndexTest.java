@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class FlatIndexTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlatIndexTest.class);
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testTopKKeepsHighestScores() {
+        TopK topK = new TopK(3);
+        float[] scores = {0.5f, 0.1f, 0.9f, 0.3f, 0.7f, 0.8f};
+        for (int i = 0; i < scores.length; i++) {
+            topK.offer(i, scores[i]);
+        }
+
+        assertThat(topK.minScore()).isEqualTo(0.7f);
+        topK.sort();
+        assertThat(topK.ordinals()).containsExactly(2, 5, 4);
+        assertThat(topK.score(0)).isEqualTo(0.9f);
+        assertThrows(IllegalStateException.class, () -> topK.offer(6, 1f));
+    }
+
+    @Test
+    void testSearchMatchesNaiveScoring() {
+        int dimension = 24;
+        float[][] vectors = randomVectors(FlatIndex.PAGE_SIZE * 2 + 100, dimension);
+        FlatIndex parallel = new FlatIndex(dimension);
+        FlatIndex sequential = new FlatIndex(dimension, false);
+        for (float[] vector : vectors) {
+            parallel.add(vector);
+            sequential.add(vector);
+        }
+        float[] query = randomVectors(1, dimension)[0];
+
+        int[] expected = IntStream.range(0, vectors.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> -cosine(query, vectors[i])))
+                .limit(10)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        TopK actual = parallel.search(query, 10);
+
+        assertThat(actual.ordinals()).containsExactly(expected);
+        assertThat(sequential.search(query, 10).ordinals()).containsExactly(expected);
+        assertThat(actual.score(0)).isCloseTo((float) cosine(query, vectors[expected[0]]), within(1e-5f));
+    }
+
+    @Test
+    void testDeletedVectorsAreSkipped() {
+        FlatIndex index = new FlatIndex(2);
+        index.add(new float[]{1, 0});
+        index.add(new float[]{3, 1});
+        index.add(new float[]{0, 1});
+
+        index.delete(0);
+        index.delete(0);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.isDeleted(0)).isTrue();
+        assertThat(index.search(new float[]{1, 0}, 5).ordinals()).containsExactly(1, 2);
+        assertThat(index.vector(1)).containsExactly(new float[]{0.9486833f, 0.31622776f}, within(1e-6f));
+        assertThrows(IllegalArgumentException.class, () -> index.add(new float[3]));
+    }
+
+    /**
+     * Not a rigorous benchmark, it logs the average latency of a top 10 search over 100k vectors of dimension 256.
+     */
+    @Test
+    @Disabled("Benchmark measuring wall-clock time, can be run manually.")
+    void testSearchLatency() {
+        int dimension = 256;
+        FlatIndex index = new FlatIndex(dimension);
+        for (float[] vector : randomVectors(100_000, dimension)) {
+            index.add(vector);
+        }
+        float[][] queries = randomVectors(50, dimension);
+        for (int i = 0; i < 20; i++) {
+            index.search(queries[i], 10);
+        }
+
+        long start = System.nanoTime();
+        for (float[] query : queries) {
+            index.search(query, 10);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / queries.length;
+        LOG.info("FlatIndex top 10 of 100k x {}: {} us per search", dimension, Math.round(micros));
+        assertThat(index.size()).isEqualTo(100_000);
+    }
+
+    private float[][] randomVectors(int count, int dimension) {
+        float[][] vectors = new float[count][dimension];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static double cosine(float[] x, float[] y) {
+        double dot = 0;
+        double xx = 0;
+        double yy = 0;
+        for (int i = 0; i < x.length; i++) {
+            dot += x[i] * y[i];
+            xx += x[i] * x[i];
+            yy += y[i] * y[i];
+        }
+        return dot / Math.sqrt(xx * yy);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.index;
+
+import com.hw.langchain.math.utils.VectorUtils;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class HnswIndexTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HnswIndexTest.class);
+
+    private static final int DIMENSION = 32;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testRecallAgainstBruteForce() {
+        float[][] vectors = randomVectors(10_000);
+        HnswIndex hnsw = new HnswIndex(DIMENSION, 16, 100, 64);
+        FlatIndex flat = new FlatIndex(DIMENSION, false);
+        for (float[] vector : vectors) {
+            hnsw.add(vector);
+            flat.add(vector);
+        }
+        float[][] queries = randomVectors(100);
+
+        double recall = recall(hnsw, flat, queries, 10);
+        assertThat(recall).isGreaterThan(0.9);
+    }
+
+    /**
+     * Not a rigorous benchmark, it logs recall and average latency against brute force.
+     */
+    @Test
+    @Disabled("Benchmark measuring wall-clock time, can be run manually.")
+    void testSearchLatency() {
+        float[][] vectors = randomVectors(10_000);
+        HnswIndex hnsw = new HnswIndex(DIMENSION, 16, 100, 64);
+        FlatIndex flat = new FlatIndex(DIMENSION, false);
+        for (float[] vector : vectors) {
+            hnsw.add(vector);
+            flat.add(vector);
+        }
+        float[][] queries = randomVectors(100);
+
+        for (int efSearch : new int[]{16, 64, 256}) {
+            hnsw.setEfSearch(efSearch);
+            LOG.info("HNSW efSearch={}: recall@10 {}, {} us per search, brute force {} us", efSearch,
+                    String.format("%.3f", recall(hnsw, flat, queries, 10)), Math.round(latencyMicros(hnsw, queries)),
+                    Math.round(latencyMicros(flat, queries)));
+        }
+    }
+
+    @Test
+    void testVectorsSurvivePageGrowth() {
+        HnswIndex hnsw = new HnswIndex(DIMENSION, 8, 50, 50);
+        float[][] vectors = randomVectors(5_000);
+        for (float[] vector : vectors) {
+            hnsw.add(vector);
+        }
+
+        for (int ordinal : new int[]{0, 15, 16, 31, 32, 4095, 4096, 4999}) {
+            float[] expected = vectors[ordinal].clone();
+            VectorUtils.normalize(expected);
+            assertThat(hnsw.vector(ordinal)).containsExactly(expected, within(1e-6f));
+        }
+    }
+
+    @Test
+    void testConcurrentInsertion() throws Exception {
+        float[][] vectors = randomVectors(8_000);
+        HnswIndex hnsw = new HnswIndex(DIMENSION, 16, 100, 64);
+        FlatIndex flat = new FlatIndex(DIMENSION, false);
+        int[] ordinals = new int[vectors.length];
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = IntStream.range(0, 4)
+                    .mapToObj(thread -> executor.submit(() -> {
+                        for (int i = thread; i < vectors.length; i += 4) {
+                            ordinals[i] = hnsw.add(vectors[i]);
+                        }
+                    }))
+                    .toArray(Future[]::new);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // insert into the brute-force index in ordinal order, so the ordinals of both indexes match
+        float[][] byOrdinal = new float[vectors.length][];
+        for (int i = 0; i < vectors.length; i++) {
+            byOrdinal[ordinals[i]] = vectors[i];
+        }
+        Arrays.stream(byOrdinal).forEach(flat::add);
+
+        assertThat(hnsw.size()).isEqualTo(vectors.length);
+        assertThat(Arrays.stream(ordinals).distinct().count()).isEqualTo(vectors.length);
+        assertThat(recall(hnsw, flat, randomVectors(100), 10)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void testDeletedVectorsAreNotReturned() {
+        HnswIndex hnsw = new HnswIndex(DIMENSION, 8, 50, 50);
+        float[][] vectors = randomVectors(500);
+        for (float[] vector : vectors) {
+            hnsw.add(vector);
+        }
+        int nearest = hnsw.search(vectors[7], 1).ordinal(0);
+        assertThat(nearest).isEqualTo(7);
+
+        hnsw.delete(7);
+        hnsw.delete(7);
+
+        assertThat(hnsw.isDeleted(7)).isTrue();
+        assertThat(hnsw.size()).isEqualTo(499);
+        assertThat(hnsw.search(vectors[7], 20).ordinals()).hasSize(20).doesNotContain(7);
+        assertThrows(IndexOutOfBoundsException.class, () -> hnsw.delete(500));
+    }
+
+    @Test
+    void testEmptyIndex() {
+        HnswIndex hnsw = new HnswIndex(DIMENSION);
+
+        assertThat(hnsw.search(new float[DIMENSION], 5).size()).isZero();
+        assertThrows(IllegalArgumentException.class, () -> new HnswIndex(DIMENSION, 1, 10, 10));
+    }
+
+    private static double recall(VectorIndex index, FlatIndex exact, float[][] queries, int k) {
+        int found = 0;
+        for (float[] query : queries) {
+            int[] expected = exact.search(query, k).ordinals();
+            int[] actual = index.search(query, k).ordinals();
+            found += (int) Arrays.stream(actual).filter(ordinal -> Arrays.stream(expected).anyMatch(e -> e == ordinal))
+                    .count();
+        }
+        return (double) found / (queries.length * k);
+    }
+
+    private static double latencyMicros(VectorIndex index, float[][] queries) {
+        long start = System.nanoTime();
+        for (float[] query : queries) {
+            index.search(query, 10);
+        }
+        return (System.nanoTime() - start) / 1e3 / queries.length;
+    }
+
+    private float[][] randomVectors(int count) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.inmemory;
+
+import com.hw.langchain.embeddings.FakeEmbeddings;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.schema.Document;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author HamaWhite
+ */
+class InMemoryVectorStoreTest {
+
+    private static final Map<String, EmbeddingVector> VECTORS = Map.of(
+            "apple", EmbeddingVector.of(1f, 0f, 0f),
+            "banana", EmbeddingVector.of(0.8f, 0.6f, 0f),
+            "cherry", EmbeddingVector.of(0f, 1f, 0f),
+            "durian", EmbeddingVector.of(0f, 0f, 1f),
+            "fruit", EmbeddingVector.of(2f, 0f, 0f));
+
+    private InMemoryVectorStore vectorStore;
+
+    @BeforeEach
+    void setUp() {
+        vectorStore = new InMemoryVectorStore(FakeEmbeddings.of(VECTORS));
+        vectorStore.addTexts(List.of("apple", "banana", "cherry", "durian"),
+                List.of(Map.of("id", 1), Map.of("id", 2), Map.of("id", 3), Map.of("id", 4)),
+                Map.of(InMemoryVectorStore.IDS_KEY, List.of("a", "b", "c", "d")));
+    }
+
+    @Test
+    void testSimilaritySearch() {
+        List<Document> docs = vectorStore.similaritySearch("fruit", 2);
+
+        assertThat(docs).extracting(Document::getPageContent).containsExactly("apple", "banana");
+        assertThat(docs.get(1).getMetadata()).containsEntry("id", 2);
+    }
+
+    @Test
+    void testRelevanceScoresAreMappedCosineSimilarities() {
+        List<Pair<Document, Float>> results = vectorStore.similaritySearchWithRelevanceScores("fruit", 3);
+
+        assertThat(results).extracting(pair -> pair.getLeft().getPageContent())
+                .containsExactly("apple", "banana", "cherry");
+        // cosine similarities 1, 0.8 and 0 mapped to [0, 1]
+        assertThat(results.get(0).getRight()).isCloseTo(1f, within(1e-6f));
+        assertThat(results.get(1).getRight()).isCloseTo(0.9f, within(1e-6f));
+        assertThat(results.get(2).getRight()).isCloseTo(0.5f, within(1e-6f));
+    }
+
+    @Test
+    void testDeleteAndReplaceById() {
+        vectorStore.delete(List.of("a", "missing"));
+        assertThat(vectorStore.similaritySearch("fruit", 1)).extracting(Document::getPageContent)
+                .containsExactly("banana");
+
+        vectorStore.addTexts(List.of("apple"), null, Map.of(InMemoryVectorStore.IDS_KEY, List.of("c")));
+        assertThat(vectorStore.size()).isEqualTo(3);
+        assertThat(vectorStore.similaritySearch("fruit", 4)).extracting(Document::getPageContent)
+                .containsExactly("apple", "banana", "durian");
+    }
+
+    @Test
+    void testFromTextsWithRandomIds() {
+        InMemoryVectorStore store = new InMemoryVectorStore(null);
+
+        assertThat(store.similarSearchByVector(VECTORS.get("fruit"), 1, null)).isEmpty();
+        assertThat(store.fromTexts(List.of("cherry", "durian"), FakeEmbeddings.of(VECTORS), null)).isEqualTo(2);
+        assertThat(store.similarSearchByVector(VECTORS.get("durian"), 1, null)).extracting(Document::getPageContent)
+                .containsExactly("durian");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import com.hw.langchain.embeddings.FakeEmbeddings;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.schema.Document;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author HamaWhite
+ */
+class PersistentVectorStoreTest {
+
+    private static final Map<String, EmbeddingVector> VECTORS = Map.of(
+            "apple", EmbeddingVector.of(1f, 0f, 0f),
+            "banana", EmbeddingVector.of(0.8f, 0.6f, 0f),
+            "cherry", EmbeddingVector.of(0f, 1f, 0f),
+            "durian", EmbeddingVector.of(0f, 0f, 1f),
+            "fruit", EmbeddingVector.of(2f, 0f, 0f));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReopenReplaysLog() throws IOException {
+        try (PersistentVectorStore store = createStore(100)) {
+            addTexts(store, List.of("apple", "banana", "cherry"), List.of("a", "b", "c"));
+            store.delete(List.of("a"));
+        }
+        try (PersistentVectorStore store = createStore(100)) {
+            assertThat(store.size()).isEqualTo(2);
+            List<Pair<Document, Float>> results = store.similaritySearchWithRelevanceScores("fruit", 2);
+            assertThat(results).extracting(pair -> pair.getLeft().getPageContent()).containsExactly("banana", "cherry");
+            assertThat(results.get(0).getLeft().getMetadata()).containsEntry("name", "banana");
+            // cosine similarity 0.8 mapped to [0, 1]
+            assertThat(results.get(0).getRight()).isCloseTo(0.9f, within(1e-6f));
+        }
+        assertThat(listFiles()).containsExactly("wal-0.log");
+    }
+
+    @Test
+    void testCompactionAndReopen() throws IOException {
+        try (PersistentVectorStore store = createStore(100)) {
+            addTexts(store, List.of("apple", "banana", "cherry"), List.of("a", "b", "c"));
+            store.compact();
+            // writes after the compaction go to a new log, on top of the segment
+            addTexts(store, List.of("durian", "apple"), List.of("d", "c"));
+            store.delete(List.of("b"));
+
+            assertThat(store.similaritySearch("fruit", 4)).extracting(Document::getPageContent)
+                    .containsExactly("apple", "apple", "durian");
+        }
+        // a segment left by a compaction that crashed before replacing the manifest
+        Files.write(directory.resolve("segment-2.vec"), new byte[]{1, 2, 3});
+
+        try (PersistentVectorStore store = createStore(100)) {
+            assertThat(store.size()).isEqualTo(3);
+            assertThat(store.similaritySearch("fruit", 4)).extracting(Document::getPageContent)
+                    .containsExactly("apple", "apple", "durian");
+            assertThat(listFiles()).containsExactly("MANIFEST", "segment-1.doc", "segment-1.vec", "wal-1.log");
+
+            store.compact();
+            assertThat(store.similaritySearch("fruit", 1).get(0).getMetadata()).containsEntry("name", "apple");
+        }
+        assertThat(listFiles()).containsExactly("MANIFEST", "segment-2.doc", "segment-2.vec", "wal-2.log");
+    }
+
+    @Test
+    void testTornLogTailIsTruncated() throws IOException {
+        try (PersistentVectorStore store = createStore(100)) {
+            addTexts(store, List.of("apple", "banana"), List.of("a", "b"));
+        }
+        Path wal = directory.resolve("wal-0.log");
+        long size = Files.size(wal);
+        // a frame announcing more bytes than were written before the crash
+        Files.write(wal, new byte[]{100, 0, 0, 0, 1, 2, 3, 4, 1}, StandardOpenOption.APPEND);
+
+        try (PersistentVectorStore store = createStore(100)) {
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(Files.size(wal)).isEqualTo(size);
+            addTexts(store, List.of("cherry"), List.of("c"));
+        }
+        try (PersistentVectorStore store = createStore(100)) {
+            assertThat(store.size()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void testBackgroundCompaction() throws IOException {
+        try (PersistentVectorStore store = createStore(2)) {
+            addTexts(store, List.of("apple", "banana", "cherry"), List.of("a", "b", "c"));
+
+            Awaitility.await()
+                    .atMost(Duration.ofSeconds(10))
+                    .until(() -> Files.exists(directory.resolve("segment-1.vec")));
+            assertThat(store.similaritySearch("fruit", 1)).extracting(Document::getPageContent)
+                    .containsExactly("apple");
+        }
+    }
+
+    private PersistentVectorStore createStore(int compactionThreshold) {
+        return new PersistentVectorStore(directory, FakeEmbeddings.of(VECTORS), compactionThreshold);
+    }
+
+    private static void addTexts(PersistentVectorStore store, List<String> texts, List<String> ids) {
+        List<Map<String, Object>> metadatas = texts.stream()
+                .map(text -> Map.<String, Object>of("name", text))
+                .toList();
+        store.addTexts(texts, metadatas, Map.of(PersistentVectorStore.IDS_KEY, ids));
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.persistent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFailedAppendIsTruncated() throws IOException {
+        Path file = WriteAheadLog.file(directory, 1);
+        FaultyFileChannel channel = new FaultyFileChannel(FileChannel.open(file, CREATE, WRITE));
+        try (WriteAheadLog wal = new WriteAheadLog(channel)) {
+            wal.appendDeletes(List.of("a"));
+            channel.failWrite = true;
+            assertThrows(IOException.class, () -> wal.appendDeletes(List.of("b")));
+            wal.appendDeletes(List.of("c"));
+        }
+
+        assertThat(replayDeletes(file)).containsExactly("a", "c");
+    }
+
+    @Test
+    void testAppendsAreRejectedWhenTruncationFails() throws IOException {
+        Path file = WriteAheadLog.file(directory, 1);
+        FaultyFileChannel channel = new FaultyFileChannel(FileChannel.open(file, CREATE, WRITE));
+        try (WriteAheadLog wal = new WriteAheadLog(channel)) {
+            wal.appendDeletes(List.of("a"));
+            channel.failWrite = true;
+            channel.failTruncate = true;
+            assertThrows(IOException.class, () -> wal.appendDeletes(List.of("b")));
+
+            var exception = assertThrows(IOException.class, () -> wal.appendDeletes(List.of("c")));
+            assertThat(exception).hasMessageContaining("unusable");
+        }
+
+        assertThat(replayDeletes(file)).containsExactly("a");
+    }
+
+    private static List<String> replayDeletes(Path file) throws IOException {
+        List<String> deletes = new ArrayList<>();
+        WriteAheadLog.replay(file, entry -> {
+        }, deletes::add);
+        return deletes;
+    }
+
+    /**
+     * Channel that fails the next write after writing half of it, and optionally the truncation that follows.
+     */
+    private static class FaultyFileChannel extends FileChannel {
+
+        private final FileChannel delegate;
+
+        private boolean failWrite;
+
+        private boolean failTruncate;
+
+        FaultyFileChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failWrite) {
+                return delegate.write(src);
+            }
+            failWrite = false;
+            ByteBuffer half = src.slice().limit(src.remaining() / 2);
+            delegate.write(half);
+            throw new IOException("Injected write failure");
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Injected truncate failure");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
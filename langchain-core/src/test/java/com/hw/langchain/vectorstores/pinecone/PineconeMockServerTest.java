@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.pinecone;
+
+import com.hw.client.retry.RetryWithBackoff;
+import com.hw.langchain.embeddings.FakeEmbeddings;
+import com.hw.langchain.schema.Document;
+import com.hw.pinecone.PineconeClient;
+import com.hw.pinecone.entity.index.CreateIndexRequest;
+import com.hw.pinecone.mock.MockPineconeServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the Pinecone vector store end to end against the local mock server.
+ *
+ * @author HamaWhite
+ */
+class PineconeMockServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PineconeMockServerTest.class);
+
+    private MockPineconeServer server;
+
+    private PineconeClient client;
+
+    @BeforeEach
+    void setUp() {
+        server = MockPineconeServer.builder()
+                .latency(Duration.ofMillis(10))
+                .latencyJitter(Duration.ofMillis(10))
+                .build()
+                .start();
+        client = PineconeClient.builder()
+                .host(server.getControllerUrl())
+                .pineconeApiKey("test-key")
+                .pineconeEnv("local")
+                .build()
+                .init();
+        client.createIndex(CreateIndexRequest.builder()
+                .name("langchain")
+                .dimension(4)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testFromTextsRetriesInjectedFailures() {
+        FakeEmbeddings embeddings = FakeEmbeddings.indexed();
+        Pinecone pinecone = Pinecone.builder()
+                .client(client)
+                .indexName("langchain")
+                .namespace("test")
+                .embeddingFunction(embeddings::embedQuery)
+                .upsertBatchSize(50)
+                .maxConcurrentUpserts(4)
+                .retry(RetryWithBackoff.builder()
+                        .maxRetries(10)
+                        .initialDelay(Duration.ofMillis(1))
+                        .maxDelay(Duration.ofMillis(10))
+                        .build())
+                .build()
+                .init();
+        List<String> texts = IntStream.range(0, 2000).mapToObj(i -> "text-" + i).toList();
+        server.setErrorRate(0.05);
+        server.failNext(2, 503);
+
+        int total = pinecone.fromTexts(texts, embeddings, null);
+        LOG.info("Pinecone fromTexts of {} texts against the mock server: {} requests, {} injected failures", total,
+                server.getRequestCount(), server.getInjectedFailures());
+
+        assertThat(total).isEqualTo(2000);
+        assertThat(server.vectorCount("langchain", "test")).isEqualTo(2000);
+        assertThat(server.getInjectedFailures()).isGreaterThanOrEqualTo(2);
+
+        server.setErrorRate(0);
+        List<Document> documents = pinecone.similaritySearch("text-7", 1);
+        assertThat(documents).extracting(Document::getPageContent).containsExactly("text-7");
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.pinecone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+import com.hw.langchain.schema.BaseStore;
+import com.hw.langchain.schema.Document;
+import com.hw.langchain.storage.InMemoryByteStore;
+import com.hw.langchain.vectorstores.base.VectorStoreRetriever;
+import com.hw.pinecone.IndexClient;
+import com.hw.pinecone.PineconeClient;
+import com.hw.pinecone.service.VectorService;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.SneakyThrows;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hw.langchain.vectorstores.base.SearchType.SIMILARITY_SCORE_THRESHOLD;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class PineconeSearchTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final Queue<JsonNode> requestBodies = new ConcurrentLinkedQueue<>();
+
+    private final Queue<String> fetchedPaths = new ConcurrentLinkedQueue<>();
+
+    private MockWebServer server;
+
+    private PineconeClient client;
+
+    private Pinecone pinecone;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                    return new MockResponse().setBody(respond(request));
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        client = PineconeClient.builder()
+                .pineconeApiKey("test-key")
+                .pineconeEnv("test")
+                .build()
+                .init();
+
+        pinecone = createPinecone(null);
+    }
+
+    private Pinecone createPinecone(BaseStore<String, byte[]> docstore) {
+        String baseUrl = server.url("/").toString();
+        IndexClient index = new IndexClient(client.createRetrofit(baseUrl).create(VectorService.class),
+                client.createRetrofit(baseUrl, RxJava2CallAdapterFactory.createAsync()).create(VectorService.class));
+        return Pinecone.builder()
+                .index(index)
+                .embeddingFunction(text -> EmbeddingVector.of(Float.parseFloat(text.substring(6)), 1f))
+                .docstore(docstore)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.shutdown();
+    }
+
+    /**
+     * Answer a query with topK matches "doc-{first value}-{rank}", scored 1 / (rank + 1), whose text is their id.
+     * A fetch returns the same text for every id.
+     */
+    @SneakyThrows
+    private String respond(RecordedRequest request) {
+        ObjectNode response = OBJECT_MAPPER.createObjectNode();
+        if (request.getPath().startsWith("/vectors/fetch")) {
+            fetchedPaths.add(request.getPath());
+            ObjectNode vectors = response.putObject("vectors");
+            for (String id : request.getRequestUrl().queryParameterValues("ids")) {
+                vectors.putObject(id).put("id", id).putObject("metadata").put("text", id).put("rank", -1);
+            }
+            return response.toString();
+        }
+        JsonNode body = OBJECT_MAPPER.readTree(request.getBody().readUtf8());
+        requestBodies.add(body);
+        if (request.getPath().startsWith("/vectors/upsert")) {
+            return response.put("upsertedCount", body.get("vectors").size()).toString();
+        }
+        if (request.getPath().startsWith("/vectors/delete")) {
+            return response.toString();
+        }
+        var matches = response.putArray("matches");
+        for (int rank = 0; rank < body.get("topK").asInt(); rank++) {
+            String id = "doc-" + body.get("vector").get(0).asInt() + "-" + rank;
+            ObjectNode match = matches.addObject().put("id", id).put("score", 1f / (rank + 1));
+            if (body.get("includeMetadata").asBoolean()) {
+                match.putObject("metadata").put("text", id).put("rank", rank);
+            }
+        }
+        return response.toString();
+    }
+
+    @Test
+    void testBatchSimilaritySearchRunsQueriesConcurrently() {
+        List<List<Document>> results = pinecone.batchSimilaritySearch(List.of("query-1", "query-2", "query-3"), 2);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(1)).extracting(Document::getPageContent).containsExactly("doc-2-0", "doc-2-1");
+        assertThat(results.get(2).get(1).getMetadata()).containsEntry("rank", 1).doesNotContainKey("text");
+        assertThat(server.getRequestCount()).isEqualTo(3);
+        assertThat(maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void testSimilarSearchByVectorPassesFilter() {
+        Map<String, Object> filter = Map.of("genre", Map.of("$eq", "drama"));
+
+        List<Document> docs = pinecone.similarSearchByVector(EmbeddingVector.of(7f, 1f), 2,
+                Map.of(Pinecone.FILTER_KEY, filter));
+
+        assertThat(docs).extracting(Document::getPageContent).containsExactly("doc-7-0", "doc-7-1");
+        JsonNode body = requestBodies.peek();
+        assertThat(body.get("filter").get("genre").get("$eq").asText()).isEqualTo("drama");
+        assertThat(body.get("includeMetadata").asBoolean()).isTrue();
+    }
+
+    @Test
+    void testRelevanceScoresAndScoreThreshold() {
+        List<Pair<Document, Float>> results = pinecone.similaritySearchWithRelevanceScores("query-1", 4);
+
+        // cosine similarities 1, 1/2, 1/3 and 1/4 are mapped from [-1, 1] to [0, 1]
+        assertThat(results).extracting(Pair::getRight).containsExactly(1f, 0.75f, 2f / 3, 0.625f);
+
+        var retriever = new VectorStoreRetriever(pinecone, SIMILARITY_SCORE_THRESHOLD,
+                Map.of("score_threshold", 0.7f));
+        assertThat(retriever.getRelevantDocuments("query-1")).extracting(Document::getPageContent)
+                .containsExactly("doc-1-0", "doc-1-1");
+    }
+
+    @Test
+    void testDocstoreKeepsTextsOutOfQueries() {
+        InMemoryByteStore docstore = new InMemoryByteStore();
+        Pinecone sideCached = createPinecone(docstore);
+        sideCached.addTexts(List.of("query-9"), List.of(Map.of("genre", "drama")),
+                Map.of(Pinecone.IDS_KEY, List.of("doc-1-0")));
+
+        List<Document> docs = sideCached.similaritySearch("query-1", 2);
+        sideCached.similaritySearch("query-1", 2);
+
+        assertThat(docs).extracting(Document::getPageContent).containsExactly("query-9", "doc-1-1");
+        assertThat(docs.get(0).getMetadata()).containsExactly(Map.entry("genre", "drama"));
+        assertThat(docs.get(1).getMetadata()).containsExactly(Map.entry("rank", -1));
+        // the upserted metadata holds no text, the queries no metadata, and the missing document is fetched once
+        JsonNode upsert = requestBodies.poll();
+        assertThat(upsert.get("vectors").get(0).get("metadata").has("text")).isFalse();
+        assertThat(requestBodies).allMatch(body -> !body.get("includeMetadata").asBoolean());
+        assertThat(fetchedPaths).containsExactly("/vectors/fetch?ids=doc-1-1&namespace=");
+        assertThat(docstore.size()).isEqualTo(2);
+
+        sideCached.delete(List.of("doc-1-0"));
+        assertThat(docstore.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.pinecone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.client.retry.RetryWithBackoff;
+import com.hw.langchain.embeddings.FakeEmbeddings;
+import com.hw.langchain.embeddings.base.Embeddings;
+import com.hw.pinecone.IndexClient;
+import com.hw.pinecone.PineconeClient;
+import com.hw.pinecone.service.VectorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.SneakyThrows;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class PineconeUpsertTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Queue<String> upsertedIds = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Integer> upsertSizes = new ConcurrentLinkedQueue<>();
+
+    private final Queue<JsonNode> deleteRequests = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Number of upsert requests still to be answered with a transient 503.
+     */
+    private final AtomicInteger transientFailures = new AtomicInteger();
+
+    /**
+     * Number of upsert requests still to be answered by dropping the connection.
+     */
+    private final AtomicInteger disconnects = new AtomicInteger();
+
+    /**
+     * Upsert requests rejected with a permanent 400.
+     */
+    private Predicate<JsonNode> rejected = request -> false;
+
+    /**
+     * Names of the threads sending the requests.
+     */
+    private final Queue<String> requestThreads = new ConcurrentLinkedQueue<>();
+
+    private MockWebServer server;
+
+    private OkHttpClient httpClient;
+
+    private PineconeClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                    return respond(request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new MockResponse().setResponseCode(500);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        // a dropped connection fails the call instead of being retried by OkHttp itself
+        httpClient = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .addInterceptor(chain -> {
+                    requestThreads.add(Thread.currentThread().getName());
+                    return chain.proceed(chain.request());
+                })
+                .build();
+        client = PineconeClient.builder()
+                .pineconeApiKey("test-key")
+                .pineconeEnv("test")
+                .httpClient(httpClient)
+                .build()
+                .init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        httpClient.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @SneakyThrows
+    private MockResponse respond(RecordedRequest request) {
+        JsonNode body = OBJECT_MAPPER.readTree(request.getBody().readUtf8());
+        if ("/vectors/delete".equals(request.getPath())) {
+            deleteRequests.add(body);
+            return new MockResponse().setBody("{}");
+        }
+        if (rejected.test(body)) {
+            return new MockResponse().setResponseCode(400).setBody("{\"message\":\"rejected\"}");
+        }
+        if (disconnects.getAndDecrement() > 0) {
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        if (transientFailures.getAndDecrement() > 0) {
+            return new MockResponse().setResponseCode(503);
+        }
+        JsonNode vectors = body.get("vectors");
+        vectors.forEach(vector -> upsertedIds.add(vector.get("id").asText()));
+        upsertSizes.add(vectors.size());
+        return new MockResponse().setBody("{\"upsertedCount\":" + vectors.size() + "}");
+    }
+
+    private Pinecone createPinecone(long maxRequestBytes) {
+        return createPinecone(maxRequestBytes, FakeEmbeddings.indexed());
+    }
+
+    private Pinecone createPinecone(long maxRequestBytes, Embeddings embeddings) {
+        IndexClient index = new IndexClient(client.createRetrofit(server.url("/").toString())
+                .create(VectorService.class));
+        return Pinecone.builder()
+                .index(index)
+                .namespace("test")
+                .embeddings(embeddings)
+                .batchSize(10)
+                .upsertBatchSize(8)
+                .maxRequestBytes(maxRequestBytes)
+                .maxConcurrentUpserts(2)
+                .retry(RetryWithBackoff.builder().initialDelay(Duration.ofMillis(1)).build())
+                .build();
+    }
+
+    @Test
+    void testAddTextsUpsertsInBoundedBatches() {
+        transientFailures.set(1);
+        List<String> texts = IntStream.range(0, 100).mapToObj(i -> "text-" + i).toList();
+        List<String> ids = IntStream.range(0, 100).mapToObj(i -> "id-" + i).toList();
+        List<Map<String, Object>> metadatas = IntStream.range(0, 100)
+                .mapToObj(i -> (Map<String, Object>) new HashMap<String, Object>(Map.of("n", i)))
+                .toList();
+
+        List<String> result = createPinecone(2L * 1024 * 1024)
+                .addTexts(texts, metadatas, Map.of(Pinecone.IDS_KEY, ids));
+
+        assertThat(result).isEqualTo(ids);
+        assertThat(upsertedIds).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(upsertSizes).allMatch(size -> size <= 8);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        assertThat(metadatas.get(0)).containsOnlyKeys("n");
+    }
+
+    @Test
+    void testRequestsStayBelowMaxRequestBytes() {
+        List<String> texts = IntStream.range(0, 30).mapToObj(i -> "text-" + i).toList();
+
+        int total = createPinecone(600).fromTexts(texts, FakeEmbeddings.indexed(), null);
+
+        assertThat(total).isEqualTo(30);
+        assertThat(upsertSizes).hasSizeGreaterThanOrEqualTo(10).allMatch(size -> size <= 3);
+    }
+
+    @Test
+    void testFailedIdsAreReported() {
+        rejected = request -> request.toString().contains("\"id-42\"");
+        List<String> texts = IntStream.range(0, 100).mapToObj(i -> "text-" + i).toList();
+        List<String> ids = IntStream.range(0, 100).mapToObj(i -> "id-" + i).toList();
+        Pinecone pinecone = createPinecone(2L * 1024 * 1024);
+
+        var exception = assertThrows(PineconeUpsertException.class,
+                () -> pinecone.addTexts(texts, null, Map.of(Pinecone.IDS_KEY, ids)));
+
+        assertThat(exception.getFailedIds()).contains("id-42", "id-99").doesNotContainAnyElementsOf(upsertedIds);
+        List<String> all = new ArrayList<>(upsertedIds);
+        all.addAll(exception.getFailedIds());
+        assertThat(all).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void testEmbedderFailureReportsIdsNotUpserted() {
+        FakeEmbeddings indexed = FakeEmbeddings.indexed();
+        IllegalStateException embedFailure = new IllegalStateException("embedding failed");
+        Embeddings embeddings = new FakeEmbeddings(text -> {
+            if ("text-50".equals(text)) {
+                throw embedFailure;
+            }
+            return indexed.embedQuery(text);
+        });
+        List<String> texts = IntStream.range(0, 100).mapToObj(i -> "text-" + i).toList();
+        List<String> ids = IntStream.range(0, 100).mapToObj(i -> "id-" + i).toList();
+        Pinecone pinecone = createPinecone(2L * 1024 * 1024, embeddings);
+
+        var exception = assertThrows(PineconeUpsertException.class,
+                () -> pinecone.addTexts(texts, null, Map.of(Pinecone.IDS_KEY, ids)));
+
+        // the 6 full requests of the first 50 vectors are awaited, the 2 vectors left pending are reported
+        assertThat(exception.getCause()).isSameAs(embedFailure);
+        assertThat(upsertedIds).hasSize(48);
+        assertThat(exception.getFailedIds()).isEqualTo(ids.subList(48, 100));
+    }
+
+    @Test
+    void testRetriedUpsertsDoNotRunOnTimerThreads() {
+        transientFailures.set(2);
+        List<String> texts = IntStream.range(0, 10).mapToObj(i -> "text-" + i).toList();
+
+        assertThat(createPinecone(2L * 1024 * 1024).fromTexts(texts, FakeEmbeddings.indexed(), null)).isEqualTo(10);
+
+        assertThat(requestThreads).hasSize(4).noneMatch(thread -> thread.startsWith("RxComputationThreadPool"));
+    }
+
+    @Test
+    void testDroppedConnectionsAreRetried() {
+        disconnects.set(2);
+        List<String> texts = IntStream.range(0, 10).mapToObj(i -> "text-" + i).toList();
+
+        assertThat(createPinecone(2L * 1024 * 1024).fromTexts(texts, FakeEmbeddings.indexed(), null)).isEqualTo(10);
+
+        assertThat(upsertedIds).hasSize(10);
+        assertThat(server.getRequestCount()).isEqualTo(4);
+    }
+
+    @Test
+    void testDeleteBatchesIds() {
+        List<String> ids = IntStream.range(0, 2500).mapToObj(i -> "id-" + i).toList();
+
+        assertThat(createPinecone(2L * 1024 * 1024).delete(ids)).isTrue();
+
+        assertThat(deleteRequests).extracting(request -> request.get("ids").size()).containsExactly(1000, 1000, 500);
+        assertThat(deleteRequests).allMatch(request -> "test".equals(request.get("namespace").asText()));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.langchain.vectorstores.utils;
+
+import com.hw.langchain.embeddings.base.EmbeddingVector;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.hw.langchain.vectorstores.utils.Utils.maximalMarginalRelevance;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class UtilsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UtilsTest.class);
+
+    private final Random random = new Random(42);
+
+    @Test
+    void testMaximalMarginalRelevancePrefersDiversity() {
+        EmbeddingVector query = EmbeddingVector.of(1, 0);
+        List<EmbeddingVector> candidates = List.of(
+                EmbeddingVector.of(2, 0),
+                EmbeddingVector.of(1, 0.05f),
+                EmbeddingVector.of(1, 1));
+
+        assertThat(maximalMarginalRelevance(query, candidates, 2, 1f)).containsExactly(0, 1);
+        assertThat(maximalMarginalRelevance(query, candidates, 2, 0.3f)).containsExactly(0, 2);
+        assertThat(maximalMarginalRelevance(query, candidates, 5, 0.3f)).containsExactly(0, 2, 1);
+        assertThat(maximalMarginalRelevance(query, candidates, 0, 0.5f)).isEmpty();
+        assertThat(maximalMarginalRelevance(query, List.of(), 3, 0.5f)).isEmpty();
+        assertThat(maximalMarginalRelevance(query, List.of(query), 20, 0.5f)).containsExactly(0);
+    }
+
+    @Test
+    void testMaximalMarginalRelevanceMatchesNaiveSelection() {
+        float[] query = randomVectors(1, 32).get(0);
+        List<float[]> candidates = randomVectors(200, 32);
+
+        for (float lambdaMult : new float[]{0f, 0.3f, 0.7f, 1f}) {
+            assertThat(maximalMarginalRelevance(query, candidates, 20, lambdaMult))
+                    .isEqualTo(naiveMaximalMarginalRelevance(query, candidates, 20, lambdaMult));
+        }
+    }
+
+    /**
+     * Not a rigorous benchmark, it logs the average latency of selecting 20 of fetchK candidates of dimension 1536.
+     */
+    @Test
+    @Disabled("Benchmark measuring wall-clock time, can be run manually.")
+    void testMaximalMarginalRelevanceLatency() {
+        float[] query = randomVectors(1, 1536).get(0);
+        for (int fetchK : new int[]{20, 100, 500, 1000}) {
+            List<float[]> candidates = randomVectors(fetchK, 1536);
+            for (int i = 0; i < 5; i++) {
+                maximalMarginalRelevance(query, candidates, 20, 0.5f);
+            }
+
+            int rounds = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                maximalMarginalRelevance(query, candidates, 20, 0.5f);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / rounds;
+            LOG.info("MMR top 20 of {} x 1536: {} us per selection", fetchK, Math.round(micros));
+        }
+    }
+
+    /**
+     * Reference selection recomputing the similarity to every selected candidate in every round.
+     */
+    private static List<Integer> naiveMaximalMarginalRelevance(float[] query, List<float[]> candidates, int k,
+            float lambdaMult) {
+        List<Integer> selected = new ArrayList<>();
+        while (selected.size() < Math.min(k, candidates.size())) {
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int best = -1;
+            for (int i = 0; i < candidates.size(); i++) {
+                if (selected.contains(i)) {
+                    continue;
+                }
+                double redundancy = Double.NEGATIVE_INFINITY;
+                for (int j : selected) {
+                    redundancy = Math.max(redundancy, cosine(candidates.get(i), candidates.get(j)));
+                }
+                double score = selected.isEmpty()
+                        ? cosine(query, candidates.get(i))
+                        : lambdaMult * cosine(query, candidates.get(i)) - (1 - lambdaMult) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            selected.add(best);
+        }
+        return selected;
+    }
+
+    private List<float[]> randomVectors(int count, int dimension) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static double cosine(float[] x, float[] y) {
+        double dot = 0;
+        double xx = 0;
+        double yy = 0;
+        for (int i = 0; i < x.length; i++) {
+            dot += x[i] * y[i];
+            xx += x[i] * x[i];
+            yy += y[i] * y[i];
+        }
+        return dot / Math.sqrt(xx * yy);
+    }
+}
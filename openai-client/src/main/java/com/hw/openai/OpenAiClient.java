@@ -19,6 +19,8 @@
 package com.hw.openai;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.client.http.WireLogging;
+import com.hw.client.retry.RetryWithBackoff;
 import com.hw.openai.entity.chat.ChatCompletion;
 import com.hw.openai.entity.chat.ChatCompletionResp;
 import com.hw.openai.entity.completions.Completion;
@@ -27,6 +29,9 @@ import com.hw.openai.entity.embeddings.Embedding;
 import com.hw.openai.entity.embeddings.EmbeddingResp;
 import com.hw.openai.entity.models.Model;
 import com.hw.openai.entity.models.ModelResp;
+import com.hw.openai.http.HttpClientConfig;
+import com.hw.openai.ratelimit.RateLimiter;
+import com.hw.openai.ratelimit.TokenEstimator;
 import com.hw.openai.service.OpenAiService;
 import com.hw.openai.utils.ProxyUtils;
 
@@ -34,16 +39,30 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
 import lombok.Builder;
 import lombok.Data;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.logging.HttpLoggingInterceptor;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.HttpException;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 /**
  * Represents a client for interacting with the OpenAI API.
@@ -56,6 +75,17 @@ public class OpenAiClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(OpenAiClient.class);
 
+    private static final String SSE_DATA_PREFIX = "data:";
+
+    private static final String SSE_DONE = "[DONE]";
+
+    private static final LongSupplier NO_TOKENS = () -> 0;
+
+    /**
+     * Used for automatic discovery and registration of Jackson modules, the configured mapper is thread-safe.
+     */
+    private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+
     private String openaiApiBase;
 
     private String openaiApiKey;
@@ -70,10 +100,50 @@ public class OpenAiClient {
     @Builder.Default
     protected long requestTimeout = 16;
 
+    /**
+     * Maximum number of retries of a request failed with a rate limit, server error or I/O failure. Default is 2.
+     */
+    @Builder.Default
+    private int maxRetries = 2;
+
+    /**
+     * Retry policy of the requests, built from maxRetries if not set.
+     */
+    private RetryWithBackoff retry;
+
+    /**
+     * Limiter of the requests and tokens per minute, to be shared by the clients of the same organization.
+     * No limit if not set.
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only.
+     */
+    @Builder.Default
+    private WireLogging wireLogging = WireLogging.builder().build();
+
     private OpenAiService service;
 
+    /**
+     * Service whose calls are enqueued on the OkHttp dispatcher, so no thread waits for the response.
+     */
+    private OpenAiService asyncService;
+
+    /**
+     * Shared HTTP client, see {@link HttpClientConfig}. The client of this instance is derived from it and shares
+     * its connection pool and dispatcher, which are left open by {@link #close()}.
+     * A dedicated client is created if not set.
+     */
     private OkHttpClient httpClient;
 
+    /**
+     * Object mapper of the requests and responses, a mapper shared by all the clients is used if not set.
+     */
+    private ObjectMapper objectMapper;
+
+    private boolean sharedHttpClient;
+
     /**
      * Initializes the OpenAiClient instance.
      *
@@ -83,8 +153,11 @@ public class OpenAiClient {
         openaiApiBase = getOrEnvOrDefault(openaiApiBase, "OPENAI_API_BASE", "https://api.openai.com/v1/");
         openaiProxy = getOrEnvOrDefault(openaiProxy, "OPENAI_PROXY");
 
-        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
-                .connectTimeout(requestTimeout, TimeUnit.SECONDS)
+        sharedHttpClient = httpClient != null;
+        OkHttpClient.Builder httpClientBuilder = sharedHttpClient
+                ? httpClient.newBuilder()
+                : new OkHttpClient.Builder();
+        httpClientBuilder.connectTimeout(requestTimeout, TimeUnit.SECONDS)
                 .readTimeout(requestTimeout, TimeUnit.SECONDS)
                 .writeTimeout(requestTimeout, TimeUnit.SECONDS)
                 .callTimeout(requestTimeout, TimeUnit.SECONDS);
@@ -103,35 +176,46 @@ public class OpenAiClient {
             return chain.proceed(request);
         });
 
-        // Add HttpLogging interceptor
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor(LOG::debug);
-        loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-        httpClientBuilder.addInterceptor(loggingInterceptor);
+        // Add the wire logging interceptor, the calls are not intercepted at all when it is disabled.
+        if (wireLogging.getMode() != WireLogging.Mode.NONE && LOG.isDebugEnabled()) {
+            httpClientBuilder.addInterceptor(wireLogging.createInterceptor(LOG::debug));
+        }
 
         if (StringUtils.isNotEmpty(openaiProxy)) {
             httpClientBuilder.proxy(ProxyUtils.http(openaiProxy));
         }
         httpClient = httpClientBuilder.build();
 
-        // Used for automatic discovery and registration of Jackson modules
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.findAndRegisterModules();
+        if (objectMapper == null) {
+            objectMapper = DEFAULT_OBJECT_MAPPER;
+        }
+
+        if (retry == null) {
+            retry = RetryWithBackoff.builder().maxRetries(maxRetries).build();
+        }
 
+        this.service = createService(RxJava2CallAdapterFactory.create());
+        this.asyncService = createService(RxJava2CallAdapterFactory.createAsync());
+        return this;
+    }
+
+    private OpenAiService createService(CallAdapter.Factory callAdapterFactory) {
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(openaiApiBase)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addCallAdapterFactory(callAdapterFactory)
                 .addConverterFactory(JacksonConverterFactory.create(objectMapper))
                 .client(httpClient)
                 .build();
-
-        this.service = retrofit.create(OpenAiService.class);
-        return this;
+        return retrofit.create(OpenAiService.class);
     }
 
     /**
-     * Closes the HttpClient connection pool.
+     * Closes the HttpClient connection pool, unless it is shared with other clients.
      */
     public void close() {
+        if (sharedHttpClient) {
+            return;
+        }
         // Cancel all ongoing requests
         httpClient.dispatcher().cancelAll();
 
@@ -161,7 +245,16 @@ public class OpenAiClient {
      * @return the response containing the list of available models
      */
     public ModelResp listModels() {
-        return service.listModels().blockingGet();
+        return execute(service.listModels(), NO_TOKENS);
+    }
+
+    /**
+     * Lists the currently available models without blocking the calling thread.
+     *
+     * @return a future completed with the response containing the list of available models
+     */
+    public CompletableFuture<ModelResp> listModelsAsync() {
+        return toFuture(asyncService.listModels(), NO_TOKENS);
     }
 
     /**
@@ -171,7 +264,17 @@ public class OpenAiClient {
      * @return the retrieved model
      */
     public Model retrieveModel(String model) {
-        return service.retrieveModel(model).blockingGet();
+        return execute(service.retrieveModel(model), NO_TOKENS);
+    }
+
+    /**
+     * Retrieves a model instance without blocking the calling thread.
+     *
+     * @param model the ID of the model to retrieve
+     * @return a future completed with the retrieved model
+     */
+    public CompletableFuture<Model> retrieveModelAsync(String model) {
+        return toFuture(asyncService.retrieveModel(model), NO_TOKENS);
     }
 
     /**
@@ -181,7 +284,7 @@ public class OpenAiClient {
      * @return the generated completion text
      */
     public String completion(Completion completion) {
-        CompletionResp response = service.completion(completion).blockingGet();
+        CompletionResp response = execute(service.completion(completion), () -> TokenEstimator.estimate(completion));
 
         String text = response.getChoices().get(0).getText();
         return StringUtils.trim(text);
@@ -194,7 +297,32 @@ public class OpenAiClient {
      * @return the completion response
      */
     public CompletionResp create(Completion completion) {
-        return service.completion(completion).blockingGet();
+        return execute(service.completion(completion), () -> TokenEstimator.estimate(completion));
+    }
+
+    /**
+     * Creates a completion for the provided prompt and parameters without blocking the calling thread.
+     *
+     * @param completion the completion object containing the prompt and parameters
+     * @return a future completed with the completion response
+     */
+    public CompletableFuture<CompletionResp> createAsync(Completion completion) {
+        return toFuture(asyncService.completion(completion), () -> TokenEstimator.estimate(completion));
+    }
+
+    /**
+     * Creates a completion and emits the partial responses as the server sends them.
+     * A copy of the completion with the stream flag set is sent, the argument is left unchanged. The HTTP call is
+     * executed on the subscribing thread, use subscribeOn to move it elsewhere. Cancelling the subscription cancels
+     * the call.
+     *
+     * @param completion the completion object containing the prompt and parameters
+     * @return a Flowable emitting one completion chunk per server-sent event
+     */
+    public Flowable<CompletionResp> streamCompletion(Completion completion) {
+        Completion streamCompletion = completion.toBuilder().stream(true).build();
+        return stream(() -> service.completionStream(streamCompletion), () -> TokenEstimator.estimate(completion),
+                CompletionResp.class);
     }
 
     /**
@@ -204,7 +332,8 @@ public class OpenAiClient {
      * @return the generated model response text
      */
     public String chatCompletion(ChatCompletion chatCompletion) {
-        ChatCompletionResp response = service.chatCompletion(chatCompletion).blockingGet();
+        ChatCompletionResp response =
+                execute(service.chatCompletion(chatCompletion), () -> TokenEstimator.estimate(chatCompletion));
 
         String content = response.getChoices().get(0).getMessage().getContent();
         return StringUtils.trim(content);
@@ -217,7 +346,32 @@ public class OpenAiClient {
      * @return the chat completion response
      */
     public ChatCompletionResp create(ChatCompletion chatCompletion) {
-        return service.chatCompletion(chatCompletion).blockingGet();
+        return execute(service.chatCompletion(chatCompletion), () -> TokenEstimator.estimate(chatCompletion));
+    }
+
+    /**
+     * Creates a model response for the given chat conversation without blocking the calling thread.
+     *
+     * @param chatCompletion the chat completion object containing the conversation
+     * @return a future completed with the chat completion response
+     */
+    public CompletableFuture<ChatCompletionResp> createAsync(ChatCompletion chatCompletion) {
+        return toFuture(asyncService.chatCompletion(chatCompletion), () -> TokenEstimator.estimate(chatCompletion));
+    }
+
+    /**
+     * Creates a model response for the given chat conversation and emits the message deltas as the server sends them.
+     * A copy of the chat completion with the stream flag set is sent, the argument is left unchanged. The HTTP call
+     * is executed on the subscribing thread, use subscribeOn to move it elsewhere. Cancelling the subscription cancels
+     * the call.
+     *
+     * @param chatCompletion the chat completion object containing the conversation
+     * @return a Flowable emitting one chat completion chunk per server-sent event
+     */
+    public Flowable<ChatCompletionResp> streamChatCompletion(ChatCompletion chatCompletion) {
+        ChatCompletion streamChatCompletion = chatCompletion.toBuilder().stream(true).build();
+        return stream(() -> service.chatCompletionStream(streamChatCompletion),
+                () -> TokenEstimator.estimate(chatCompletion), ChatCompletionResp.class);
     }
 
     /**
@@ -227,6 +381,102 @@ public class OpenAiClient {
      * @return The embedding vector response.
      */
     public EmbeddingResp embedding(Embedding embedding) {
-        return service.embedding(embedding).blockingGet();
+        return execute(service.embedding(embedding), () -> TokenEstimator.estimate(embedding));
+    }
+
+    /**
+     * Creates an embedding vector representing the input text without blocking the calling thread.
+     *
+     * @param embedding The Embedding object containing the input text.
+     * @return A future completed with the embedding vector response.
+     */
+    public CompletableFuture<EmbeddingResp> embeddingAsync(Embedding embedding) {
+        return toFuture(asyncService.embedding(embedding), () -> TokenEstimator.estimate(embedding));
+    }
+
+    /**
+     * Executes the call on the calling thread once the rate limiter allows it, retrying the transient failures.
+     */
+    private <T> T execute(Single<T> single, LongSupplier tokens) {
+        return rateLimited(single, tokens).retryWhen(retry).blockingGet();
+    }
+
+    /**
+     * Delays the subscription until the rate limiter, if any, has capacity for the request.
+     * Every retry reserves capacity again.
+     */
+    private <T> Single<T> rateLimited(Single<T> single, LongSupplier tokens) {
+        if (rateLimiter == null) {
+            return single;
+        }
+        return single.delaySubscription(rateLimiter.acquire(tokens.getAsLong()));
+    }
+
+    /**
+     * Executes the streaming call and parses the `data:` lines of the event stream incrementally,
+     * until the `[DONE]` message or the end of the body.
+     */
+    private <T> Flowable<T> stream(Supplier<Call<ResponseBody>> callSupplier, LongSupplier tokens, Class<T> type) {
+        return Flowable.defer(() -> {
+            // once a chunk was emitted, retrying would emit it twice
+            AtomicBoolean emitted = new AtomicBoolean();
+            Flowable<T> events = readEventStream(callSupplier, type);
+            if (rateLimiter != null) {
+                events = events.delaySubscription(rateLimiter.acquire(tokens.getAsLong()).toFlowable());
+            }
+            return events
+                    .doOnNext(chunk -> emitted.set(true))
+                    .retryWhen(retry.onlyIf(error -> !emitted.get()));
+        });
+    }
+
+    private <T> Flowable<T> readEventStream(Supplier<Call<ResponseBody>> callSupplier, Class<T> type) {
+        return Flowable.create(emitter -> {
+            Call<ResponseBody> call = callSupplier.get();
+            emitter.setCancellable(call::cancel);
+
+            Response<ResponseBody> response = call.execute();
+            if (!response.isSuccessful()) {
+                emitter.onError(new HttpException(response));
+                return;
+            }
+            try (ResponseBody body = response.body()) {
+                BufferedSource source = body.source();
+                String line;
+                while (!emitter.isCancelled() && (line = source.readUtf8Line()) != null) {
+                    if (!line.startsWith(SSE_DATA_PREFIX)) {
+                        continue;
+                    }
+                    String data = line.substring(SSE_DATA_PREFIX.length()).trim();
+                    if (SSE_DONE.equals(data)) {
+                        break;
+                    }
+                    emitter.onNext(objectMapper.readValue(data, type));
+                }
+                emitter.onComplete();
+            } catch (IOException e) {
+                // reading fails once the subscription is cancelled, which is not an error for the subscriber
+                if (!emitter.isCancelled()) {
+                    emitter.onError(e);
+                }
+            }
+        }, BackpressureStrategy.BUFFER);
+    }
+
+    /**
+     * Subscribes to the Single once the rate limiter allows it and bridges its outcome to a CompletableFuture,
+     * retrying the transient failures. Cancelling the future disposes the subscription, which cancels the underlying
+     * HTTP call or the pending timer.
+     */
+    private <T> CompletableFuture<T> toFuture(Single<T> single, LongSupplier tokens) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Disposable disposable =
+                rateLimited(single, tokens).retryWhen(retry).subscribe(future::complete, future::completeExceptionally);
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                disposable.dispose();
+            }
+        });
+        return future;
     }
 }
@@ -34,6 +34,11 @@ public class ChatChoice {
     @JsonProperty("message")
     private Message message;
 
+    /**
+     * The partial message of a streamed chunk.
+     */
+    private Message delta;
+
     @JsonProperty("finish_reason")
     private String finishReason;
 }
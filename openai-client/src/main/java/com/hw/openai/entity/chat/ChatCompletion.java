@@ -35,7 +35,7 @@ import java.util.Map;
  * @author HamaWhite
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ChatCompletion implements Serializable {
 
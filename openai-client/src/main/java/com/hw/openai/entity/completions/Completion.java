@@ -36,7 +36,7 @@ import java.util.Map;
  * @author HamaWhite
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Completion implements Serializable {
 
@@ -19,6 +19,7 @@
 package com.hw.openai.entity.embeddings;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
@@ -50,6 +51,12 @@ public class Embedding implements Serializable {
     @NotEmpty
     private List<?> input;
 
+    /**
+     * The format to return the embeddings in, float by default.
+     */
+    @JsonProperty("encoding_format")
+    private EncodingFormat encodingFormat;
+
     /**
      * A unique identifier representing your end-user, which can help OpenAI to monitor and detect abuse.
      */
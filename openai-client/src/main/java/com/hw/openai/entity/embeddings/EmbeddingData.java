@@ -18,9 +18,9 @@
 
 package com.hw.openai.entity.embeddings;
 
-import lombok.Data;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
-import java.util.List;
+import lombok.Data;
 
 /**
  * @author HamaWhite
@@ -32,5 +32,9 @@ public class EmbeddingData {
 
     private Integer index;
 
-    private List<Float> embedding;
+    /**
+     * The embedding, decoded from either encoding format.
+     */
+    @JsonDeserialize(using = EmbeddingDeserializer.class)
+    private float[] embedding;
 }
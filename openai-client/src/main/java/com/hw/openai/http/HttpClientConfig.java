@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.http;
+
+import lombok.Builder;
+import lombok.Data;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning of the HTTP transport shared by the API clients.
+ * <p>
+ * The created OkHttpClient is meant to be built once and injected into every OpenAiClient and PineconeClient, which
+ * derive their own client from it with {@link OkHttpClient#newBuilder()}. The derived clients keep their timeouts,
+ * proxy and authentication, but share the connection pool and the dispatcher, so the TLS connections are reused and
+ * a single thread pool serves all the asynchronous calls.
+ *
+ * @author HamaWhite
+ */
+@Data
+@Builder
+public class HttpClientConfig {
+
+    /**
+     * Maximum number of idle connections kept in the pool. Default is 5.
+     */
+    @Builder.Default
+    private int maxIdleConnections = 5;
+
+    /**
+     * How long an idle connection is kept in the pool. Default is 5 minutes.
+     */
+    @Builder.Default
+    private Duration keepAlive = Duration.ofMinutes(5);
+
+    /**
+     * Maximum number of asynchronous requests in flight. Default is 64.
+     */
+    @Builder.Default
+    private int maxRequests = 64;
+
+    /**
+     * Maximum number of asynchronous requests in flight to the same host. Default is 16.
+     */
+    @Builder.Default
+    private int maxRequestsPerHost = 16;
+
+    /**
+     * Whether to negotiate HTTP/2, which multiplexes the requests to a host over one connection. Default is true.
+     */
+    @Builder.Default
+    private boolean http2 = true;
+
+    /**
+     * Create the OkHttpClient to share.
+     *
+     * @return the OkHttpClient owning the connection pool and the dispatcher
+     */
+    public OkHttpClient createHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        List<Protocol> protocols = http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1);
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(protocols)
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.ratelimit;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side token-bucket limiter enforcing a requests-per-minute and a tokens-per-minute budget.
+ * One instance is meant to be shared by all the clients using the same organization quota.
+ * <p>
+ * Each request reserves its capacity in arrival order and is delayed until the buckets have refilled for it, so a
+ * burst is queued and spread over time instead of being rejected by the server with 429s. The buckets hold at most
+ * one minute of budget and refill continuously. The delays are scheduled on a timer, so no thread is blocked, and the
+ * delayed requests are resumed on the io scheduler, since their blocking calls must not hold the timer thread.
+ *
+ * @author HamaWhite
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Bucket requests;
+
+    private final Bucket tokens;
+
+    private final Scheduler scheduler;
+
+    private final Scheduler resumeScheduler;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param requestsPerMinute maximum number of requests per minute, 0 or less for no limit
+     * @param tokensPerMinute   maximum number of tokens per minute, 0 or less for no limit
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute) {
+        this(requestsPerMinute, tokensPerMinute, Schedulers.computation(), Schedulers.io());
+    }
+
+    /**
+     * Create a limiter whose delays are scheduled and resumed on the given scheduler, such as a TestScheduler.
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute, Scheduler scheduler) {
+        this(requestsPerMinute, tokensPerMinute, scheduler, scheduler);
+    }
+
+    /**
+     * @param requestsPerMinute maximum number of requests per minute, 0 or less for no limit
+     * @param tokensPerMinute   maximum number of tokens per minute, 0 or less for no limit
+     * @param scheduler         scheduler of the delay timers
+     * @param resumeScheduler   scheduler the delayed requests are resumed on, which runs their blocking HTTP calls
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute, Scheduler scheduler, Scheduler resumeScheduler) {
+        long now = System.nanoTime();
+        this.requests = new Bucket(requestsPerMinute, now);
+        this.tokens = new Bucket(tokensPerMinute, now);
+        this.scheduler = scheduler;
+        this.resumeScheduler = resumeScheduler;
+    }
+
+    /**
+     * Reserve capacity for one request of the given number of tokens.
+     * A request larger than the tokens-per-minute budget is charged the whole budget.
+     *
+     * @param tokenCount estimated number of tokens of the request
+     * @return the delay in nanoseconds before the request may be sent
+     */
+    public synchronized long reserve(long tokenCount) {
+        long now = System.nanoTime();
+        long waitNanos = Math.max(requests.take(1, now), tokens.take(tokenCount, now));
+
+        acquisitions.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        return waitNanos;
+    }
+
+    /**
+     * Reserve capacity for one request on subscription, and complete once it may be sent.
+     * Disposing the subscription while waiting does not give the reserved capacity back.
+     *
+     * @param tokenCount estimated number of tokens of the request
+     */
+    public Completable acquire(long tokenCount) {
+        return Completable.defer(() -> {
+            long waitNanos = reserve(tokenCount);
+            if (waitNanos == 0) {
+                return Completable.complete();
+            }
+            queueDepth.incrementAndGet();
+            AtomicBoolean dequeued = new AtomicBoolean();
+            Runnable dequeue = () -> {
+                if (dequeued.compareAndSet(false, true)) {
+                    queueDepth.decrementAndGet();
+                }
+            };
+            return Completable.timer(waitNanos, TimeUnit.NANOSECONDS, scheduler)
+                    .doOnEvent(error -> dequeue.run())
+                    .doOnDispose(dequeue::run)
+                    .observeOn(resumeScheduler);
+        });
+    }
+
+    /**
+     * Number of requests currently waiting for capacity.
+     */
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Number of requests that reserved capacity.
+     */
+    public long acquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * Average delay imposed on a request, including the ones that were not delayed.
+     */
+    public Duration averageWait() {
+        long count = acquisitions();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos.sum() / count);
+    }
+
+    /**
+     * Longest delay imposed on a request.
+     */
+    public Duration maxWait() {
+        return Duration.ofNanos(maxWaitNanos.get());
+    }
+
+    /**
+     * Bucket refilled continuously up to one minute of budget, whose level goes negative when capacity is reserved
+     * ahead of time.
+     */
+    private static class Bucket {
+
+        private final double capacity;
+
+        private final double refillPerNano;
+
+        private double level;
+
+        private long lastRefill;
+
+        Bucket(long perMinute, long now) {
+            this.capacity = perMinute;
+            this.refillPerNano = (double) perMinute / NANOS_PER_MINUTE;
+            this.level = perMinute;
+            this.lastRefill = now;
+        }
+
+        /**
+         * Take the amount and return how long to wait until the level is back to zero.
+         */
+        long take(long amount, long now) {
+            if (capacity <= 0) {
+                return 0;
+            }
+            level = Math.min(capacity, level + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            level -= Math.min(amount, capacity);
+            return level >= 0 ? 0 : (long) Math.ceil(-level / refillPerNano);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.ratelimit;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.Message;
+import com.hw.openai.entity.completions.Completion;
+import com.hw.openai.entity.embeddings.Embedding;
+import com.hw.openai.utils.TokenizerUtils;
+import com.knuddels.jtokkit.api.Encoding;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Estimates the number of tokens a request is charged against the tokens-per-minute limit,
+ * that is the tokens of the input plus the maximum number of tokens to generate.
+ *
+ * @author HamaWhite
+ */
+@UtilityClass
+public class TokenEstimator {
+
+    /**
+     * Tokens added by the chat format around every message.
+     */
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    /**
+     * Completion budget assumed for chat requests without maxTokens.
+     */
+    private static final int DEFAULT_CHAT_MAX_TOKENS = 256;
+
+    public long estimate(Completion completion) {
+        Encoding encoding = TokenizerUtils.encodingForModel(completion.getModel());
+        List<String> prompts = Objects.requireNonNullElse(completion.getPrompt(), List.of());
+        long promptTokens = prompts.stream()
+                .mapToLong(prompt -> countTokens(encoding, prompt))
+                .sum();
+        long maxTokens = Objects.requireNonNullElse(completion.getMaxTokens(), 16);
+        long n = Objects.requireNonNullElse(completion.getN(), 1);
+        return promptTokens + maxTokens * n * Math.max(prompts.size(), 1);
+    }
+
+    public long estimate(ChatCompletion chatCompletion) {
+        Encoding encoding = TokenizerUtils.encodingForModel(chatCompletion.getModel());
+        List<Message> messages = Objects.requireNonNullElse(chatCompletion.getMessages(), List.of());
+        long promptTokens = messages.stream()
+                .mapToLong(message -> TOKENS_PER_MESSAGE + countTokens(encoding, message.getContent())
+                        + countTokens(encoding, message.getName()))
+                .sum();
+        long maxTokens = Objects.requireNonNullElse(chatCompletion.getMaxTokens(), DEFAULT_CHAT_MAX_TOKENS);
+        long n = Objects.requireNonNullElse(chatCompletion.getN(), 1);
+        return promptTokens + maxTokens * n;
+    }
+
+    public long estimate(Embedding embedding) {
+        Encoding encoding = TokenizerUtils.encodingForModel(embedding.getModel());
+        List<?> input = Objects.requireNonNullElse(embedding.getInput(), List.of());
+        return input.stream()
+                .mapToLong(item -> {
+                    if (item instanceof String text) {
+                        return countTokens(encoding, text);
+                    }
+                    // already tokenized input
+                    return item instanceof List<?> tokens ? tokens.size() : 1;
+                })
+                .sum();
+    }
+
+    private long countTokens(Encoding encoding, String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+}
@@ -28,10 +28,9 @@ import com.hw.openai.entity.models.Model;
 import com.hw.openai.entity.models.ModelResp;
 
 import io.reactivex.Single;
-import retrofit2.http.Body;
-import retrofit2.http.GET;
-import retrofit2.http.POST;
-import retrofit2.http.Path;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.*;
 
 /**
  * Service interface for interacting with the OpenAI API.
@@ -66,6 +65,16 @@ public interface OpenAiService {
     @POST("completions")
     Single<CompletionResp> completion(@Body Completion completion);
 
+    /**
+     * Creates a completion whose tokens are sent back as data-only server-sent events.
+     *
+     * @param completion the completion request object with stream set to true
+     * @return a Call whose response body is the unbuffered event stream
+     */
+    @Streaming
+    @POST("completions")
+    Call<ResponseBody> completionStream(@Body Completion completion);
+
     /**
      * Creates a model response for the given chat conversation.
      *
@@ -76,6 +85,16 @@ public interface OpenAiService {
     @POST("chat/completions")
     Single<ChatCompletionResp> chatCompletion(@Body ChatCompletion chatCompletion);
 
+    /**
+     * Creates a model response for the given chat conversation, sent back as data-only server-sent events.
+     *
+     * @param chatCompletion the chat completion request object with stream set to true
+     * @return a Call whose response body is the unbuffered event stream
+     */
+    @Streaming
+    @POST("chat/completions")
+    Call<ResponseBody> chatCompletionStream(@Body ChatCompletion chatCompletion);
+
     /**
      * Creates an embedding vector representing the input text.
      *
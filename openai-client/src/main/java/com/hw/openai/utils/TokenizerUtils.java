@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.utils;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of the tiktoken encodings, shared by all the components counting tokens.
+ * <p>
+ * Building an encoding parses its BPE merge table, which takes milliseconds and megabytes. The registry loads each
+ * encoding on first use only, and the encoding of every model name is resolved once. Encodings are thread-safe.
+ *
+ * @author HamaWhite
+ */
+@UtilityClass
+public class TokenizerUtils {
+
+    private static final EncodingRegistry REGISTRY = Encodings.newLazyEncodingRegistry();
+
+    private static final Map<String, Encoding> ENCODINGS_BY_MODEL = new ConcurrentHashMap<>();
+
+    /**
+     * Get the encoding of the model, or of the model family for dated snapshots such as gpt-3.5-turbo-0613.
+     * Falls back to cl100k_base, the encoding of the chat and embedding models, when the model is unknown.
+     *
+     * @param model the model name, may be null
+     * @return the cached encoding
+     */
+    public Encoding encodingForModel(String model) {
+        if (model == null) {
+            return getEncoding(EncodingType.CL100K_BASE);
+        }
+        return ENCODINGS_BY_MODEL.computeIfAbsent(model, key -> findEncodingForModel(key)
+                .orElseGet(() -> getEncoding(EncodingType.CL100K_BASE)));
+    }
+
+    /**
+     * Get the cached encoding of the given type.
+     */
+    public Encoding getEncoding(EncodingType type) {
+        return REGISTRY.getEncoding(type);
+    }
+
+    /**
+     * Count the tokens of the text with the encoding of the model.
+     */
+    public int countTokens(String model, String text) {
+        return text == null || text.isEmpty() ? 0 : encodingForModel(model).countTokens(text);
+    }
+
+    private Optional<Encoding> findEncodingForModel(String model) {
+        String name = model;
+        Optional<Encoding> encoding = REGISTRY.getEncodingForModel(name);
+        // strip the date suffixes of the snapshots, and the suffixes of the fine-tuned models
+        while (encoding.isEmpty()) {
+            int end = Math.max(name.lastIndexOf('-'), name.lastIndexOf(':'));
+            if (end <= 0) {
+                break;
+            }
+            name = name.substring(0, end);
+            encoding = REGISTRY.getEncodingForModel(name);
+        }
+        return encoding;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.openai.entity.embeddings.Embedding;
+import com.hw.openai.entity.embeddings.EmbeddingResp;
+import com.hw.openai.entity.embeddings.EncodingFormat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Data;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAiClientEmbeddingTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OpenAiClientEmbeddingTest.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final float[][] VECTORS = createVectors(100, 1536);
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void testDecodeBothFormats() throws InterruptedException {
+        server.enqueue(new MockResponse().setBody(createResponse(VECTORS, OpenAiClientEmbeddingTest::toJsonArray)));
+        server.enqueue(new MockResponse().setBody(createResponse(VECTORS, OpenAiClientEmbeddingTest::toBase64)));
+        OpenAiClient client = OpenAiClient.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .openaiProxy("")
+                .build()
+                .init();
+
+        for (EncodingFormat format : List.of(EncodingFormat.FLOAT, EncodingFormat.BASE64)) {
+            Embedding embedding = Embedding.builder()
+                    .model("text-embedding-ada-002")
+                    .input(List.of("hello"))
+                    .encodingFormat(format)
+                    .build();
+            EmbeddingResp response = client.embedding(embedding);
+
+            RecordedRequest request = server.takeRequest();
+            assertThat(request.getBody().readUtf8()).contains("\"encoding_format\":\"" + format.getValue() + "\"");
+            assertThat(response.getData()).hasSize(VECTORS.length);
+            for (int i = 0; i < VECTORS.length; i++) {
+                assertThat(response.getData().get(i).getEmbedding()).containsExactly(VECTORS[i]);
+            }
+        }
+    }
+
+    /**
+     * Compare the bytes allocated to fetch and parse 100 embeddings of 1536 dimensions, as boxed lists from the JSON
+     * array as before, as float arrays from the JSON array, and as float arrays from base64.
+     */
+    @Test
+    void testParseAllocations() throws IOException {
+        String jsonBody = createResponse(VECTORS, OpenAiClientEmbeddingTest::toJsonArray);
+        String base64Body = createResponse(VECTORS, OpenAiClientEmbeddingTest::toBase64);
+        OkHttpClient httpClient = new OkHttpClient();
+
+        long[] boxed = measure(httpClient, jsonBody, BoxedEmbeddingResp.class);
+        long[] json = measure(httpClient, jsonBody, EmbeddingResp.class);
+        long[] base64 = measure(httpClient, base64Body, EmbeddingResp.class);
+        LOG.info("Body bytes: json {}, base64 {}", jsonBody.length(), base64Body.length());
+        LOG.info(
+                "Per call (ms, bytes allocated): List<Float> {}/{}, float[] from json {}/{}, float[] from base64 {}/{}",
+                boxed[0], boxed[1], json[0], json[1], base64[0], base64[1]);
+
+        assertThat(json[1]).isLessThan(boxed[1]);
+        assertThat(base64[1]).isLessThan(json[1] / 2);
+    }
+
+    private long[] measure(OkHttpClient httpClient, String body, Class<?> type) throws IOException {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int warmups = 5;
+        int iterations = 10;
+        long startBytes = 0;
+        long startNanos = 0;
+        for (int i = 0; i < warmups + iterations; i++) {
+            if (i == warmups) {
+                startBytes = threadBean.getThreadAllocatedBytes(threadId);
+                startNanos = System.nanoTime();
+            }
+            server.enqueue(new MockResponse().setBody(body));
+            Request request = new Request.Builder().url(server.url("/v1/embeddings")).build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                assertThat(OBJECT_MAPPER.readValue(response.body().byteStream(), type)).isNotNull();
+            }
+        }
+        long millis = (System.nanoTime() - startNanos) / iterations / 1_000_000;
+        long bytes = (threadBean.getThreadAllocatedBytes(threadId) - startBytes) / iterations;
+        return new long[]{millis, bytes};
+    }
+
+    private static float[][] createVectors(int count, int dimension) {
+        Random random = new Random(42);
+        float[][] vectors = new float[count][dimension];
+        for (float[] vector : vectors) {
+            for (int j = 0; j < dimension; j++) {
+                vector[j] = random.nextFloat() * 2 - 1;
+            }
+        }
+        return vectors;
+    }
+
+    private static String createResponse(float[][] vectors, Function<float[], String> encoder) {
+        String data = IntStream.range(0, vectors.length)
+                .mapToObj(i -> "{\"object\":\"embedding\",\"index\":" + i + ",\"embedding\":"
+                        + encoder.apply(vectors[i]) + "}")
+                .collect(Collectors.joining(","));
+        return "{\"object\":\"list\",\"model\":\"text-embedding-ada-002\",\"data\":[" + data + "]}";
+    }
+
+    private static String toJsonArray(float[] vector) {
+        return IntStream.range(0, vector.length)
+                .mapToObj(i -> String.valueOf(vector[i]))
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String toBase64(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return "\"" + Base64.getEncoder().encodeToString(buffer.array()) + "\"";
+    }
+
+    /**
+     * The previous shape of the response, with boxed embeddings.
+     */
+    @Data
+    static class BoxedEmbeddingResp {
+
+        private String object;
+
+        private List<BoxedEmbeddingData> data;
+
+        private String model;
+    }
+
+    @Data
+    static class BoxedEmbeddingData {
+
+        private String object;
+
+        private Integer index;
+
+        private List<Float> embedding;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai;
+
+import com.hw.client.retry.RetryWithBackoff;
+import com.hw.openai.entity.completions.Completion;
+import com.hw.openai.entity.models.ModelResp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAiClientRetryTest {
+
+    private static final String MODELS = "{\"object\":\"list\",\"data\":[]}";
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private OpenAiClient createClient(int maxRetries) {
+        RetryWithBackoff retry = RetryWithBackoff.builder()
+                .maxRetries(maxRetries)
+                .initialDelay(Duration.ofMillis(10))
+                .build();
+        return OpenAiClient.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .openaiProxy("")
+                .retry(retry)
+                .build()
+                .init();
+    }
+
+    @Test
+    void testRetryTransientFailures() {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(MODELS));
+
+        ModelResp response = createClient(2).listModels();
+
+        assertThat(response.getDataList()).isEmpty();
+        assertThat(server.getRequestCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testRetryAsync() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(MODELS));
+
+        ModelResp response = createClient(2).listModelsAsync().join();
+
+        assertThat(response.getDataList()).isEmpty();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testRetryStreamBeforeFirstChunk() {
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody("data: {\"choices\":[{\"text\":\"Hi\",\"index\":0}]}\n\ndata: [DONE]\n\n"));
+
+        Completion completion = Completion.builder()
+                .model("text-davinci-003")
+                .prompt(List.of("Hi"))
+                .build();
+        var chunks = createClient(2).streamCompletion(completion).toList().blockingGet();
+
+        assertThat(chunks).hasSize(1);
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGiveUpAfterMaxRetries() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(429));
+        }
+        OpenAiClient client = createClient(1);
+
+        var exception = assertThrows(CompletionException.class, () -> client.listModelsAsync().join());
+        assertThat(exception).hasCauseInstanceOf(HttpException.class);
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testRetriedCallsDoNotRunOnTimerThreads() {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(MODELS));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody("data: {\"choices\":[{\"text\":\"Hi\",\"index\":0}]}\n\ndata: [DONE]\n\n"));
+        // application interceptors run on the thread executing the call
+        Queue<String> threads = new ConcurrentLinkedQueue<>();
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    threads.add(Thread.currentThread().getName());
+                    return chain.proceed(chain.request());
+                })
+                .build();
+        OpenAiClient client = OpenAiClient.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .openaiProxy("")
+                .httpClient(httpClient)
+                .retry(RetryWithBackoff.builder().initialDelay(Duration.ofMillis(10)).build())
+                .build()
+                .init();
+        Completion completion = Completion.builder()
+                .model("text-davinci-003")
+                .prompt(List.of("Hi"))
+                .build();
+
+        client.listModels();
+        client.streamCompletion(completion).blockingSubscribe();
+
+        assertThat(threads).hasSize(4).noneMatch(thread -> thread.startsWith("RxComputationThreadPool"));
+    }
+
+    @Test
+    void testDoNotRetryClientErrors() {
+        server.enqueue(new MockResponse().setResponseCode(400));
+        OpenAiClient client = createClient(3);
+
+        assertThrows(HttpException.class, client::listModels);
+        assertThat(server.getRequestCount()).isOne();
+    }
+
+    @Test
+    void testDelay() {
+        RetryWithBackoff retry = RetryWithBackoff.builder()
+                .initialDelay(Duration.ofSeconds(1))
+                .maxDelay(Duration.ofSeconds(10))
+                .build();
+        IOException timeout = new SocketTimeoutException();
+
+        assertThat(retry.delayMillis(1, timeout)).isBetween(500L, 1000L);
+        assertThat(retry.delayMillis(3, timeout)).isBetween(2000L, 4000L);
+        assertThat(retry.delayMillis(10, timeout)).isBetween(5000L, 10000L);
+        assertThat(RetryWithBackoff.isRetryable(timeout)).isTrue();
+        assertThat(RetryWithBackoff.isRetryable(new IllegalArgumentException())).isFalse();
+    }
+}
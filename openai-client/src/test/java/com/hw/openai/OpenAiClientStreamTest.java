@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.ChatCompletionResp;
+import com.hw.openai.entity.chat.Message;
+import com.hw.openai.entity.completions.Completion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.HttpException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class OpenAiClientStreamTest {
+
+    private MockWebServer server;
+
+    private OpenAiClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        client = OpenAiClient.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .openaiProxy("")
+                .build()
+                .init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void testStreamChatCompletion() throws InterruptedException {
+        server.enqueue(eventStream(
+                "data: {\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\"}}]}",
+                "data: {\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hello\"}}]}",
+                "data: {\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\" world\"}}]}",
+                "data: {\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}",
+                "data: [DONE]"));
+
+        ChatCompletion chatCompletion = ChatCompletion.builder()
+                .model("gpt-3.5-turbo")
+                .messages(List.of(Message.of("Hi")))
+                .build();
+
+        List<ChatCompletionResp> chunks = client.streamChatCompletion(chatCompletion).toList().blockingGet();
+
+        assertThat(chunks).hasSize(4);
+        String content = chunks.stream()
+                .map(chunk -> chunk.getChoices().get(0).getDelta().getContent())
+                .filter(Objects::nonNull)
+                .reduce("", String::concat);
+        assertThat(content).isEqualTo("Hello world");
+        assertThat(chunks.get(3).getChoices().get(0).getFinishReason()).isEqualTo("stop");
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath()).isEqualTo("/v1/chat/completions");
+        assertThat(request.getBody().readUtf8()).contains("\"stream\":true");
+        assertThat(chatCompletion.isStream()).isFalse();
+    }
+
+    @Test
+    void testStreamCompletion() {
+        server.enqueue(eventStream(
+                "data: {\"id\":\"1\",\"choices\":[{\"text\":\"Java\",\"index\":0}]}",
+                "",
+                ": keep-alive comment",
+                "data: {\"id\":\"1\",\"choices\":[{\"text\":\"Script\",\"index\":0,\"finish_reason\":\"stop\"}]}",
+                "data: [DONE]"));
+
+        Completion completion = Completion.builder()
+                .model("text-davinci-003")
+                .prompt(List.of("Say JavaScript"))
+                .build();
+
+        List<String> texts = client.streamCompletion(completion)
+                .map(chunk -> chunk.getChoices().get(0).getText())
+                .toList()
+                .blockingGet();
+
+        assertThat(texts).containsExactly("Java", "Script");
+        assertThat(completion.isStream()).isFalse();
+    }
+
+    @Test
+    void testStreamErrorStatus() {
+        server.enqueue(new MockResponse().setResponseCode(401).setBody("{\"error\":{\"message\":\"Invalid key\"}}"));
+
+        Completion completion = Completion.builder()
+                .model("text-davinci-003")
+                .prompt(List.of("Hi"))
+                .build();
+
+        var flowable = client.streamCompletion(completion);
+        var exception = assertThrows(HttpException.class, () -> flowable.toList().blockingGet());
+        assertThat(exception.code()).isEqualTo(401);
+    }
+
+    private static MockResponse eventStream(String... lines) {
+        return new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(String.join("\n", lines) + "\n\n");
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.http;
+
+import com.hw.openai.OpenAiClient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class HttpClientConfigTest {
+
+    private static final String MODELS = "{\"object\":\"list\",\"data\":[]}";
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private OpenAiClient createClient(OkHttpClient httpClient) {
+        return OpenAiClient.builder()
+                .openaiApiBase(server.url("/v1/").toString())
+                .openaiApiKey("test-key")
+                .openaiProxy("")
+                .httpClient(httpClient)
+                .build()
+                .init();
+    }
+
+    @Test
+    void testCreateHttpClient() {
+        OkHttpClient httpClient = HttpClientConfig.builder()
+                .maxRequests(32)
+                .maxRequestsPerHost(8)
+                .keepAlive(Duration.ofSeconds(30))
+                .http2(false)
+                .build()
+                .createHttpClient();
+
+        assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(32);
+        assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(8);
+        assertThat(httpClient.protocols()).containsExactly(Protocol.HTTP_1_1);
+    }
+
+    @Test
+    void testClientsShareConnections() throws InterruptedException {
+        server.enqueue(new MockResponse().setBody(MODELS));
+        server.enqueue(new MockResponse().setBody(MODELS));
+        OkHttpClient httpClient = HttpClientConfig.builder().build().createHttpClient();
+
+        OpenAiClient first = createClient(httpClient);
+        OpenAiClient second = createClient(httpClient);
+        assertThat(first.getHttpClient().connectionPool()).isSameAs(httpClient.connectionPool());
+        assertThat(second.getHttpClient().dispatcher()).isSameAs(httpClient.dispatcher());
+        assertThat(first.getObjectMapper()).isSameAs(second.getObjectMapper());
+
+        first.listModels();
+        first.close();
+        second.listModels();
+
+        // the second client reuses the connection opened by the first one, which close() left open
+        assertThat(server.takeRequest().getSequenceNumber()).isZero();
+        assertThat(server.takeRequest().getSequenceNumber()).isEqualTo(1);
+        assertThat(httpClient.dispatcher().executorService().isShutdown()).isFalse();
+    }
+}
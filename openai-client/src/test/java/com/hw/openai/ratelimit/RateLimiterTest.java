@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.ratelimit;
+
+import com.hw.openai.entity.chat.ChatCompletion;
+import com.hw.openai.entity.chat.Message;
+import com.hw.openai.entity.completions.Completion;
+import com.hw.openai.entity.embeddings.Embedding;
+
+import org.junit.jupiter.api.Test;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.TestScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author HamaWhite
+ */
+class RateLimiterTest {
+
+    @Test
+    void testRequestsPerMinute() {
+        RateLimiter rateLimiter = new RateLimiter(2, 0);
+
+        assertThat(rateLimiter.reserve(100)).isZero();
+        assertThat(rateLimiter.reserve(100)).isZero();
+        // the bucket refills one request every 30 seconds, the reservations queue up behind each other
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(rateLimiter.reserve(100))).isCloseTo(30, within(1L));
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(rateLimiter.reserve(100))).isCloseTo(60, within(1L));
+
+        assertThat(rateLimiter.acquisitions()).isEqualTo(4);
+        assertThat(rateLimiter.maxWait()).isBetween(Duration.ofSeconds(59), Duration.ofSeconds(60));
+    }
+
+    @Test
+    void testTokensPerMinute() {
+        RateLimiter rateLimiter = new RateLimiter(0, 1000);
+
+        assertThat(rateLimiter.reserve(1000)).isZero();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(rateLimiter.reserve(500))).isCloseTo(30, within(1L));
+        // a request larger than the budget is charged the whole budget
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(rateLimiter.reserve(5000))).isCloseTo(90, within(1L));
+    }
+
+    @Test
+    void testAcquireWaitsOnScheduler() {
+        TestScheduler scheduler = new TestScheduler();
+        RateLimiter rateLimiter = new RateLimiter(1, 0, scheduler);
+
+        var first = rateLimiter.acquire(0).test();
+        var second = rateLimiter.acquire(0).test();
+        first.assertComplete();
+        second.assertNotTerminated();
+        assertThat(rateLimiter.queueDepth()).isEqualTo(1);
+
+        scheduler.advanceTimeBy(61, TimeUnit.SECONDS);
+        second.assertComplete();
+        assertThat(rateLimiter.queueDepth()).isZero();
+        assertThat(rateLimiter.averageWait()).isPositive();
+    }
+
+    @Test
+    void testDelayedRequestResumesOnIoScheduler() {
+        // drain the bucket, which then refills 10 tokens every 100 ms
+        RateLimiter rateLimiter = new RateLimiter(0, 6000);
+        rateLimiter.reserve(6000);
+
+        String thread = rateLimiter.acquire(10)
+                .andThen(Single.fromCallable(() -> Thread.currentThread().getName()))
+                .blockingGet();
+
+        assertThat(thread).startsWith("RxCachedThreadScheduler");
+    }
+
+    @Test
+    void testEstimateTokens() {
+        Completion completion = Completion.builder()
+                .model("text-davinci-003")
+                .prompt(List.of("Say this is a test"))
+                .maxTokens(7)
+                .build();
+        assertThat(TokenEstimator.estimate(completion)).isEqualTo(5 + 7);
+
+        ChatCompletion chatCompletion = ChatCompletion.builder()
+                .model("gpt-3.5-turbo")
+                .messages(List.of(Message.of("Hello world")))
+                .maxTokens(10)
+                .build();
+        assertThat(TokenEstimator.estimate(chatCompletion)).isEqualTo(4 + 2 + 10);
+
+        Embedding embedding = Embedding.builder()
+                .model("text-embedding-ada-002")
+                .input(List.of("Hello world", List.of(1, 2, 3)))
+                .build();
+        assertThat(TokenEstimator.estimate(embedding)).isEqualTo(2 + 3);
+    }
+}
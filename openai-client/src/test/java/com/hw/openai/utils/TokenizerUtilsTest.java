@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.openai.utils;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class TokenizerUtilsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenizerUtilsTest.class);
+
+    private static final String TEXT = "This is a sample sentence.";
+
+    @Test
+    void testEncodingForModel() {
+        Encoding encoding = TokenizerUtils.encodingForModel("text-embedding-ada-002");
+
+        assertThat(encoding.getName()).isEqualTo("cl100k_base");
+        assertThat(TokenizerUtils.encodingForModel("text-embedding-ada-002")).isSameAs(encoding);
+        assertThat(TokenizerUtils.encodingForModel("text-davinci-003").getName()).isEqualTo("p50k_base");
+        assertThat(TokenizerUtils.countTokens("gpt-3.5-turbo", TEXT)).isEqualTo(6);
+    }
+
+    @Test
+    void testEncodingForSnapshotAndUnknownModels() {
+        assertThat(TokenizerUtils.encodingForModel("gpt-3.5-turbo-16k-0613").getName()).isEqualTo("cl100k_base");
+        assertThat(TokenizerUtils.encodingForModel("davinci:ft-personal-2023-06-01-00-00-00").getName())
+                .isEqualTo("r50k_base");
+        assertThat(TokenizerUtils.encodingForModel("unknown-model"))
+                .isSameAs(TokenizerUtils.getEncoding(EncodingType.CL100K_BASE));
+    }
+
+    /**
+     * Benchmark of the tokenization throughput when the registry is built per call, as before, and when the cached
+     * encoding is reused.
+     */
+    @Test
+    @Disabled("Benchmark measuring wall-clock time, can be run manually.")
+    void testColdAndWarmThroughput() {
+        Supplier<Encoding> cold = () -> Encodings.newDefaultEncodingRegistry()
+                .getEncodingForModel("text-embedding-ada-002")
+                .orElseThrow();
+        Supplier<Encoding> warm = () -> TokenizerUtils.encodingForModel("text-embedding-ada-002");
+
+        double coldPerSecond = measureThroughput(cold, 5);
+        double warmPerSecond = measureThroughput(warm, 10_000);
+        LOG.info("Tokenizations per second: cold {}, warm {}", String.format("%.1f", coldPerSecond),
+                String.format("%.1f", warmPerSecond));
+
+        assertThat(warmPerSecond).isGreaterThan(coldPerSecond * 10);
+    }
+
+    private static double measureThroughput(Supplier<Encoding> encodingSupplier, int iterations) {
+        // warm up the JIT
+        for (int i = 0; i < Math.min(iterations, 3); i++) {
+            encodingSupplier.get().encode(TEXT);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertThat(encodingSupplier.get().encode(TEXT)).hasSize(6);
+        }
+        return iterations * 1e9 / (System.nanoTime() - start);
+    }
+}
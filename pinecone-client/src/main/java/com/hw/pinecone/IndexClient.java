@@ -18,9 +18,18 @@
 
 package com.hw.pinecone;
 
+import com.hw.client.retry.RetryWithBackoff;
 import com.hw.pinecone.entity.vector.*;
 import com.hw.pinecone.service.VectorService;
 
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 /**
  * @author HamaWhite
  */
@@ -28,8 +37,52 @@ public class IndexClient {
 
     private final VectorService vectorService;
 
+    private final VectorService asyncVectorService;
+
+    private final RetryWithBackoff retry;
+
+    /**
+     * Create a client whose asynchronous operations run the blocking calls on the I/O scheduler.
+     *
+     * @param vectorService the service of the index
+     */
     public IndexClient(VectorService vectorService) {
+        this(vectorService, null, null);
+    }
+
+    /**
+     * Create a client whose asynchronous operations use a service enqueuing the calls on the HTTP dispatcher.
+     *
+     * @param vectorService      the service of the index, executing the calls on the calling thread
+     * @param asyncVectorService the service of the index, enqueuing the calls
+     */
+    public IndexClient(VectorService vectorService, VectorService asyncVectorService) {
+        this(vectorService, asyncVectorService, null);
+    }
+
+    /**
+     * Create a client retrying the transient failures of its calls.
+     *
+     * @param vectorService      the service of the index, executing the calls on the calling thread
+     * @param asyncVectorService the service of the index, enqueuing the calls, or null
+     * @param retry              the retry policy of the calls, or null to not retry them
+     */
+    public IndexClient(VectorService vectorService, VectorService asyncVectorService, RetryWithBackoff retry) {
         this.vectorService = vectorService;
+        this.asyncVectorService = asyncVectorService;
+        this.retry = retry;
+    }
+
+    /**
+     * Return a client of the same index retrying the transient failures of its calls with the given policy.
+     * The policy is applied to the call before it is blocked on, so I/O failures such as timeouts and connection
+     * resets are retried as well as the HTTP errors.
+     *
+     * @param retry the retry policy of the calls
+     * @return a client sharing the services of this one
+     */
+    public IndexClient withRetry(RetryWithBackoff retry) {
+        return new IndexClient(vectorService, asyncVectorService, retry);
     }
 
     /**
@@ -40,7 +93,39 @@ public class IndexClient {
      * @return a QueryResponse with the results of the query operation
      */
     public QueryResponse query(QueryRequest request) {
-        return vectorService.query(request).blockingGet();
+        return retrying(vectorService.query(request)).blockingGet();
+    }
+
+    /**
+     * The Query operation, without blocking the calling thread.
+     *
+     * @param request the QueryRequest containing the query vector and other parameters
+     * @return a future completed with the results of the query operation
+     */
+    public CompletableFuture<QueryResponse> queryAsync(QueryRequest request) {
+        return toFuture(service -> service.query(request));
+    }
+
+    /**
+     * Search a namespace with several query vectors in a single request.
+     *
+     * @param queries         the query vectors, which may override topK and namespace
+     * @param topK            the number of results to return for each query vector
+     * @param namespace       the namespace to query
+     * @param includeValues   whether vector values are included in the response
+     * @param includeMetadata whether metadata is included in the response
+     * @return the results of each query vector, in the same order
+     */
+    public List<SingleQueryResults> query(List<QueryVector> queries, int topK, String namespace,
+            boolean includeValues, boolean includeMetadata) {
+        QueryRequest request = QueryRequest.builder()
+                .queries(queries)
+                .topK(topK)
+                .namespace(namespace)
+                .includeValues(includeValues)
+                .includeMetadata(includeMetadata)
+                .build();
+        return query(request).getResults();
     }
 
     /**
@@ -51,7 +136,17 @@ public class IndexClient {
      * @return a FetchResponse containing the fetched vectors
      */
     public FetchResponse fetch(FetchRequest request) {
-        return vectorService.fetch(request.getIds(), request.getNamespace()).blockingGet();
+        return retrying(vectorService.fetch(request.getIds(), request.getNamespace())).blockingGet();
+    }
+
+    /**
+     * The Fetch operation, without blocking the calling thread.
+     *
+     * @param request the FetchRequest object containing the parameters for the fetch operation
+     * @return a future completed with the fetched vectors
+     */
+    public CompletableFuture<FetchResponse> fetchAsync(FetchRequest request) {
+        return toFuture(service -> service.fetch(request.getIds(), request.getNamespace()));
     }
 
     /**
@@ -62,6 +157,58 @@ public class IndexClient {
      * @return  an UpsertResponse indicating the result of the upsert operation
      */
     public UpsertResponse upsert(UpsertRequest request) {
-        return vectorService.upsert(request).blockingGet();
+        return retrying(vectorService.upsert(request)).blockingGet();
+    }
+
+    /**
+     * The Upsert operation, without blocking the calling thread.
+     *
+     * @param request the UpsertRequest containing the vectors to be upserted
+     * @return a future completed with the result of the upsert operation
+     */
+    public CompletableFuture<UpsertResponse> upsertAsync(UpsertRequest request) {
+        return toFuture(service -> service.upsert(request));
+    }
+
+    /**
+     * The Delete operation deletes vectors, by id, from a single namespace.
+     *
+     * @param request the DeleteRequest selecting the vectors to delete
+     */
+    public void delete(DeleteRequest request) {
+        retrying(vectorService.delete(request)).blockingGet();
+    }
+
+    /**
+     * The Delete operation, without blocking the calling thread.
+     *
+     * @param request the DeleteRequest selecting the vectors to delete
+     * @return a future completed once the vectors are deleted
+     */
+    public CompletableFuture<Void> deleteAsync(DeleteRequest request) {
+        return toFuture(service -> service.delete(request))
+                .thenApply(body -> null);
+    }
+
+    private <T> Single<T> retrying(Single<T> call) {
+        return retry != null ? call.retryWhen(retry) : call;
+    }
+
+    /**
+     * Make the call with the asynchronous service, or on the I/O scheduler without one, and bridge its outcome to a
+     * CompletableFuture. Cancelling the future disposes the subscription, which cancels the underlying HTTP call.
+     */
+    private <T> CompletableFuture<T> toFuture(Function<VectorService, Single<T>> call) {
+        Single<T> single = retrying(asyncVectorService != null
+                ? call.apply(asyncVectorService)
+                : call.apply(vectorService).subscribeOn(Schedulers.io()));
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Disposable disposable = single.subscribe(future::complete, future::completeExceptionally);
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                disposable.dispose();
+            }
+        });
+        return future;
     }
 }
@@ -19,6 +19,8 @@
 package com.hw.pinecone;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.client.http.WireLogging;
+import com.hw.client.retry.RetryWithBackoff;
 import com.hw.pinecone.entity.index.CreateIndexRequest;
 import com.hw.pinecone.entity.index.IndexDescription;
 import com.hw.pinecone.service.IndexService;
@@ -32,7 +34,7 @@ import lombok.Builder;
 import lombok.Data;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.CallAdapter;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.jackson.JacksonConverterFactory;
@@ -54,6 +56,11 @@ public class PineconeClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(PineconeClient.class);
 
+    /**
+     * Used for automatic discovery and registration of Jackson modules, the configured mapper is thread-safe.
+     */
+    private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+
     private String pineconeApiKey;
 
     @Builder.Default
@@ -69,8 +76,32 @@ public class PineconeClient {
     @Builder.Default
     protected long requestTimeout = 16;
 
+    /**
+     * Shared HTTP client, whose connection pool and dispatcher are reused by this client and its index clients, and
+     * left open by {@link #close()}. A dedicated client is created if not set.
+     */
     private OkHttpClient httpClient;
 
+    /**
+     * Object mapper of the requests and responses, a mapper shared by all the clients is used if not set.
+     */
+    private ObjectMapper objectMapper;
+
+    /**
+     * Wire logging of the requests and responses at debug level. Default logs the headers only, full bodies buffer
+     * and copy every vector payload, SAMPLED_BODY and CAPPED_BODY bound that cost.
+     */
+    @Builder.Default
+    private WireLogging wireLogging = WireLogging.builder().build();
+
+    /**
+     * Retry policy of the calls of the index clients, such as RetryWithBackoff.builder().build(). Nothing is retried
+     * if not set.
+     */
+    private RetryWithBackoff retry;
+
+    private boolean sharedHttpClient;
+
     private IndexService indexService;
 
     /**
@@ -82,25 +113,36 @@ public class PineconeClient {
         // If pineconeEnv is not set, read the value of PINECONE_ENV from the environment.
         pineconeEnv = getOrFromEnv(pineconeEnv, "PINECONE_ENV");
 
+        this.httpClient = createHttpClient();
+        if (objectMapper == null) {
+            objectMapper = DEFAULT_OBJECT_MAPPER;
+        }
+
         Retrofit retrofit = createRetrofit(String.format(host, pineconeEnv));
         this.indexService = retrofit.create(IndexService.class);
         return this;
     }
 
-    public IndexClient indexClient(String name) {
-        String baseUrl = "https://" + describeIndex(name).getStatus().getHost();
-        Retrofit retrofit = createRetrofit(baseUrl);
-        return new IndexClient(retrofit.create(VectorService.class));
-    }
-
     /**
-     * Initializes the PineconeClient instance.
+     * Create the client of an index, which reuses the HTTP client of this instance.
      *
-     * @return the initialized PineconeClient instance
+     * @param name the name of the index
+     * @return the client reading and writing the vectors of the index
      */
-    public Retrofit createRetrofit(String baseUrl) {
-        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
-                .connectTimeout(requestTimeout, TimeUnit.SECONDS)
+    public IndexClient indexClient(String name) {
+        // the index is served over the scheme of the controller, which is plain HTTP for a local mock server
+        String scheme = String.format(host, pineconeEnv).startsWith("http://") ? "http://" : "https://";
+        String baseUrl = scheme + describeIndex(name).getStatus().getHost();
+        return new IndexClient(createRetrofit(baseUrl).create(VectorService.class),
+                createRetrofit(baseUrl, RxJava2CallAdapterFactory.createAsync()).create(VectorService.class), retry);
+    }
+
+    private OkHttpClient createHttpClient() {
+        sharedHttpClient = httpClient != null;
+        OkHttpClient.Builder httpClientBuilder = sharedHttpClient
+                ? httpClient.newBuilder()
+                : new OkHttpClient.Builder();
+        httpClientBuilder.connectTimeout(requestTimeout, TimeUnit.SECONDS)
                 .readTimeout(requestTimeout, TimeUnit.SECONDS)
                 .writeTimeout(requestTimeout, TimeUnit.SECONDS)
                 .callTimeout(requestTimeout, TimeUnit.SECONDS);
@@ -117,29 +159,47 @@ public class PineconeClient {
             return chain.proceed(request);
         });
 
-        // Add HttpLogging interceptor
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor(LOG::debug);
-        loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-        httpClientBuilder.addInterceptor(loggingInterceptor);
+        // Add the wire logging interceptor, the calls are not intercepted at all when it is disabled.
+        if (wireLogging.getMode() != WireLogging.Mode.NONE && LOG.isDebugEnabled()) {
+            httpClientBuilder.addInterceptor(wireLogging.createInterceptor(LOG::debug));
+        }
 
-        httpClient = httpClientBuilder.build();
+        return httpClientBuilder.build();
+    }
 
-        // Used for automatic discovery and registration of Jackson modules
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.findAndRegisterModules();
+    /**
+     * Create the Retrofit instance of a base URL on top of the HTTP client built by {@link #init()}.
+     *
+     * @param baseUrl the base URL of the API
+     * @return the Retrofit instance
+     */
+    public Retrofit createRetrofit(String baseUrl) {
+        return createRetrofit(baseUrl, RxJava2CallAdapterFactory.create());
+    }
 
+    /**
+     * Create the Retrofit instance of a base URL on top of the HTTP client built by {@link #init()}.
+     *
+     * @param baseUrl            the base URL of the API
+     * @param callAdapterFactory the factory adapting the calls, such as an asynchronous RxJava2CallAdapterFactory
+     * @return the Retrofit instance
+     */
+    public Retrofit createRetrofit(String baseUrl, CallAdapter.Factory callAdapterFactory) {
         return new Retrofit.Builder()
                 .baseUrl(baseUrl)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addCallAdapterFactory(callAdapterFactory)
                 .addConverterFactory(JacksonConverterFactory.create(objectMapper))
                 .client(httpClient)
                 .build();
     }
 
     /**
-     * Closes the HttpClient connection pool.
+     * Closes the HttpClient connection pool, unless it is shared with other clients.
      */
     public void close() {
+        if (sharedHttpClient) {
+            return;
+        }
         // Cancel all ongoing requests
         httpClient.dispatcher().cancelAll();
 
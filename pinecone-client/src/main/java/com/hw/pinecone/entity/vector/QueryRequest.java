@@ -26,6 +26,7 @@ import lombok.Data;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author HamaWhite
@@ -37,9 +38,15 @@ public class QueryRequest implements Serializable {
 
     /**
      * The query vector. This should be the same length as the dimension of the index being queried.
-     * Each query() request can contain only one of the parameters id or vector.
+     * Each query() request can contain only one of the parameters queries, vector, or id.
+     */
+    private float[] vector;
+
+    /**
+     * The query vectors, whose results are returned in `QueryResponse.results` in the same order.
+     * Each query() request can contain only one of the parameters queries, vector, or id.
      */
-    private List<Float> vector;
+    private List<QueryVector> queries;
 
     /**
      * The unique ID of the vector to be used as a query vector.
@@ -59,6 +66,11 @@ public class QueryRequest implements Serializable {
      */
     private String namespace;
 
+    /**
+     * The metadata filter to apply, such as {"genre": {"$in": ["comedy", "drama"]}}.
+     */
+    private Map<String, Object> filter;
+
     /**
      * Indicates whether vector values are included in the response.
      */
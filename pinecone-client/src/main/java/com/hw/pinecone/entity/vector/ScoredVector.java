@@ -22,7 +22,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.Data;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,7 +44,7 @@ public class ScoredVector {
     /**
      * This is the vector data, if it is requested.
      */
-    private List<Float> values;
+    private float[] values;
 
     /**
      * This is the sparse data, if it is requested.
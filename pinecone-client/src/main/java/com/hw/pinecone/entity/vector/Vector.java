@@ -25,7 +25,6 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,7 +43,7 @@ public class Vector implements Serializable {
     /**
      * This is the vector data included in the request.
      */
-    private List<Float> values;
+    private float[] values;
 
     /**
      * Vector sparse data. Represented as a list of indices and a list of corresponded values,
@@ -58,12 +57,12 @@ public class Vector implements Serializable {
      */
     public Map<String, Object> metadata;
 
-    public Vector(String id, List<Float> values) {
+    public Vector(String id, float[] values) {
         this.id = id;
         this.values = values;
     }
 
-    public Vector(String id, List<Float> values, Map<String, Object> metadata) {
+    public Vector(String id, float[] values, Map<String, Object> metadata) {
         this.id = id;
         this.values = values;
         this.metadata = metadata;
@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.pinecone.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.pinecone.entity.index.Metric;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of the mock server, which scores every vector of a namespace on each query.
+ * Requests and responses are handled as JSON trees in the wire format of the Pinecone API.
+ *
+ * @author HamaWhite
+ */
+class MockIndex {
+
+    private final ObjectMapper objectMapper;
+
+    private final String name;
+
+    private final int dimension;
+
+    private final Metric metric;
+
+    private final Map<String, Map<String, StoredVector>> namespaces = new ConcurrentHashMap<>();
+
+    MockIndex(ObjectMapper objectMapper, String name, int dimension, Metric metric) {
+        this.objectMapper = objectMapper;
+        this.name = name;
+        this.dimension = dimension;
+        this.metric = metric;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    Metric metric() {
+        return metric;
+    }
+
+    /**
+     * Number of vectors stored in the namespace.
+     */
+    int vectorCount(String namespace) {
+        return readNamespace(namespace).size();
+    }
+
+    ObjectNode upsert(JsonNode request) {
+        Map<String, StoredVector> vectors = namespace(request.path("namespace").asText());
+        JsonNode items = request.path("vectors");
+        for (JsonNode item : items) {
+            float[] values = toArray(item.path("values"));
+            JsonNode metadata = item.get("metadata");
+            vectors.put(item.path("id").asText(), new StoredVector(values,
+                    metadata != null && metadata.isObject() ? (ObjectNode) metadata : null));
+        }
+        return objectMapper.createObjectNode().put("upsertedCount", items.size());
+    }
+
+    ObjectNode query(JsonNode request) {
+        int topK = request.path("topK").asInt(10);
+        String namespace = request.path("namespace").asText();
+        JsonNode filter = request.get("filter");
+        boolean includeValues = request.path("includeValues").asBoolean();
+        boolean includeMetadata = request.path("includeMetadata").asBoolean();
+
+        ObjectNode response = objectMapper.createObjectNode();
+        if (request.hasNonNull("queries")) {
+            ArrayNode results = response.putArray("results");
+            for (JsonNode query : request.get("queries")) {
+                String queryNamespace = query.path("namespace").asText(namespace);
+                ObjectNode result = results.addObject();
+                result.set("matches", search(toArray(query.path("values")), query.path("topK").asInt(topK),
+                        queryNamespace, filter, includeValues, includeMetadata));
+                result.put("namespace", queryNamespace);
+            }
+            return response;
+        }
+        float[] vector;
+        if (request.hasNonNull("id")) {
+            StoredVector stored = readNamespace(namespace).get(request.get("id").asText());
+            vector = stored != null ? stored.values : null;
+        } else {
+            vector = toArray(request.path("vector"));
+        }
+        response.set("matches", vector != null
+                ? search(vector, topK, namespace, filter, includeValues, includeMetadata)
+                : objectMapper.createArrayNode());
+        return response.put("namespace", namespace);
+    }
+
+    ObjectNode fetch(List<String> ids, String namespace) {
+        Map<String, StoredVector> vectors = readNamespace(namespace);
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode fetched = response.putObject("vectors");
+        for (String id : ids) {
+            StoredVector stored = vectors.get(id);
+            if (stored != null) {
+                fetched.set(id, toJson(id, stored, true, true));
+            }
+        }
+        return response.put("namespace", namespace);
+    }
+
+    ObjectNode delete(JsonNode request) {
+        Map<String, StoredVector> vectors = namespaces.get(request.path("namespace").asText());
+        if (vectors == null) {
+            return objectMapper.createObjectNode();
+        }
+        if (request.path("deleteAll").asBoolean()) {
+            vectors.clear();
+        } else if (request.hasNonNull("filter")) {
+            vectors.values().removeIf(stored -> matches(stored.metadata, request.get("filter")));
+        } else {
+            request.path("ids").forEach(id -> vectors.remove(id.asText()));
+        }
+        return objectMapper.createObjectNode();
+    }
+
+    /**
+     * Check the request vectors have the dimension of the index.
+     *
+     * @return the error message, or null if the dimensions match
+     */
+    String validateDimension(JsonNode request) {
+        List<JsonNode> vectors = new ArrayList<>();
+        request.path("vectors").forEach(item -> vectors.add(item.path("values")));
+        request.path("queries").forEach(item -> vectors.add(item.path("values")));
+        if (request.has("vector")) {
+            vectors.add(request.get("vector"));
+        }
+        for (JsonNode values : vectors) {
+            if (values.size() != dimension) {
+                return String.format("Vector dimension %d does not match the dimension of the index %d",
+                        values.size(), dimension);
+            }
+        }
+        return null;
+    }
+
+    private ArrayNode search(float[] vector, int topK, String namespace, JsonNode filter, boolean includeValues,
+            boolean includeMetadata) {
+        // euclidean scores are distances, so lower ranks first
+        Comparator<Map.Entry<String, Float>> order = Map.Entry.comparingByValue();
+        if (metric != Metric.EUCLIDEAN) {
+            order = order.reversed();
+        }
+        Map<String, StoredVector> vectors = readNamespace(namespace);
+        List<Map.Entry<String, Float>> scored = new ArrayList<>();
+        vectors.forEach((id, stored) -> {
+            if (filter == null || matches(stored.metadata, filter)) {
+                scored.add(Map.entry(id, score(vector, stored.values)));
+            }
+        });
+        scored.sort(order);
+
+        ArrayNode matches = objectMapper.createArrayNode();
+        for (var entry : scored.subList(0, Math.min(topK, scored.size()))) {
+            StoredVector stored = vectors.get(entry.getKey());
+            if (stored != null) {
+                matches.add(toJson(entry.getKey(), stored, includeValues, includeMetadata)
+                        .put("score", entry.getValue()));
+            }
+        }
+        return matches;
+    }
+
+    private float score(float[] x, float[] y) {
+        double dot = 0;
+        double xx = 0;
+        double yy = 0;
+        double distance = 0;
+        for (int i = 0; i < x.length; i++) {
+            dot += x[i] * y[i];
+            xx += x[i] * x[i];
+            yy += y[i] * y[i];
+            distance += (x[i] - y[i]) * (x[i] - y[i]);
+        }
+        return switch (metric) {
+            case COSINE -> xx == 0 || yy == 0 ? 0 : (float) (dot / Math.sqrt(xx * yy));
+            case DOTPRODUCT -> (float) dot;
+            case EUCLIDEAN -> (float) distance;
+        };
+    }
+
+    /**
+     * Evaluate a metadata filter, supporting $eq, $ne, $gt, $gte, $lt, $lte, $in, $nin, $and and $or.
+     */
+    static boolean matches(ObjectNode metadata, JsonNode filter) {
+        Iterator<Map.Entry<String, JsonNode>> fields = filter.fields();
+        while (fields.hasNext()) {
+            var field = fields.next();
+            boolean matched = switch (field.getKey()) {
+                case "$and" -> allMatch(metadata, field.getValue());
+                case "$or" -> anyMatch(metadata, field.getValue());
+                default -> matchesField(metadata != null ? metadata.get(field.getKey()) : null, field.getValue());
+            };
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allMatch(ObjectNode metadata, JsonNode filters) {
+        for (JsonNode filter : filters) {
+            if (!matches(metadata, filter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean anyMatch(ObjectNode metadata, JsonNode filters) {
+        for (JsonNode filter : filters) {
+            if (matches(metadata, filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesField(JsonNode value, JsonNode condition) {
+        if (!condition.isObject()) {
+            return matchesOperator(value, "$eq", condition);
+        }
+        Iterator<Map.Entry<String, JsonNode>> operators = condition.fields();
+        while (operators.hasNext()) {
+            var operator = operators.next();
+            if (!matchesOperator(value, operator.getKey(), operator.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate one operator, a list value matches $eq and $in when any of its elements does.
+     */
+    private static boolean matchesOperator(JsonNode value, String operator, JsonNode operand) {
+        return switch (operator) {
+            case "$eq" -> anyElement(value, element -> compare(element, operand, result -> result == 0));
+            case "$ne" -> !anyElement(value, element -> compare(element, operand, result -> result == 0));
+            case "$gt" -> anyElement(value, element -> compare(element, operand, result -> result > 0));
+            case "$gte" -> anyElement(value, element -> compare(element, operand, result -> result >= 0));
+            case "$lt" -> anyElement(value, element -> compare(element, operand, result -> result < 0));
+            case "$lte" -> anyElement(value, element -> compare(element, operand, result -> result <= 0));
+            case "$in" -> anyElement(value, element -> contains(operand, element));
+            case "$nin" -> !anyElement(value, element -> contains(operand, element));
+            default -> throw new IllegalArgumentException("Unsupported filter operator: " + operator);
+        };
+    }
+
+    private static boolean anyElement(JsonNode value, Predicate<JsonNode> predicate) {
+        if (value == null || value.isNull()) {
+            return false;
+        }
+        if (value.isArray()) {
+            for (JsonNode element : value) {
+                if (predicate.test(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return predicate.test(value);
+    }
+
+    private static boolean contains(JsonNode operands, JsonNode element) {
+        for (JsonNode operand : operands) {
+            if (compare(element, operand, result -> result == 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare numbers by value and other values by their text, and test the result of the comparison. Values of
+     * different types are not comparable, so the test is false for them whatever the operator.
+     */
+    private static boolean compare(JsonNode value, JsonNode operand, IntPredicate test) {
+        if (value.isNumber() && operand.isNumber()) {
+            return test.test(Double.compare(value.asDouble(), operand.asDouble()));
+        }
+        if (value.getNodeType() != operand.getNodeType()) {
+            return false;
+        }
+        return test.test(value.asText().compareTo(operand.asText()));
+    }
+
+    private ObjectNode toJson(String id, StoredVector stored, boolean includeValues, boolean includeMetadata) {
+        ObjectNode node = objectMapper.createObjectNode().put("id", id);
+        if (includeValues) {
+            ArrayNode values = node.putArray("values");
+            for (float value : stored.values) {
+                values.add(value);
+            }
+        }
+        if (includeMetadata && stored.metadata != null) {
+            node.set("metadata", stored.metadata);
+        }
+        return node;
+    }
+
+    private Map<String, StoredVector> namespace(String namespace) {
+        return namespaces.computeIfAbsent(namespace, key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Get the vectors of the namespace for reading, without creating it.
+     */
+    private Map<String, StoredVector> readNamespace(String namespace) {
+        return namespaces.getOrDefault(namespace, Map.of());
+    }
+
+    private static float[] toArray(JsonNode values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).floatValue();
+        }
+        return array;
+    }
+
+    private static final class StoredVector {
+
+        private final float[] values;
+
+        private final ObjectNode metadata;
+
+        private StoredVector(float[] values, ObjectNode metadata) {
+            this.values = values;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.pinecone.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hw.pinecone.entity.index.Metric;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Pinecone controller and index endpoints, backed by in-memory indexes, for integration and
+ * load tests running without a Pinecone account.
+ * <p>
+ * The controller serves the index operations of {@link com.hw.pinecone.service.IndexService}, and every created
+ * index is served on its own port with the vector operations of {@link com.hw.pinecone.service.VectorService}.
+ * Point a {@link com.hw.pinecone.PineconeClient} at {@link #getControllerUrl()} to use it:
+ * <pre>{@code
+ * try (MockPineconeServer server = MockPineconeServer.builder().latency(Duration.ofMillis(20)).build().start()) {
+ *     PineconeClient client = PineconeClient.builder()
+ *             .host(server.getControllerUrl())
+ *             .pineconeApiKey("test")
+ *             .pineconeEnv("local")
+ *             .build()
+ *             .init();
+ *     ...
+ * }
+ * }</pre>
+ * Latency and failures are injected into every request, so that throughput and retries can be measured offline.
+ *
+ * @author HamaWhite
+ */
+public class MockPineconeServer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MockPineconeServer.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, IndexServer> indexes = new ConcurrentHashMap<>();
+
+    private final Queue<Integer> pendingFailures = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong injectedFailures = new AtomicLong();
+
+    private final int port;
+
+    private final String apiKey;
+
+    private final int errorStatus;
+
+    private final long maxRequestBytes;
+
+    private final int threads;
+
+    private volatile Duration latency;
+
+    private volatile Duration latencyJitter;
+
+    private volatile double errorRate;
+
+    private HttpServer controller;
+
+    private ExecutorService executor;
+
+    /**
+     * Create the mock server, which listens once {@link #start()} is called.
+     *
+     * @param port            port of the controller, default is 0, which picks a free port
+     * @param apiKey          the only API key accepted, any non-blank key is accepted if not set
+     * @param latency         fixed delay added to every request, default is none
+     * @param latencyJitter   maximum random delay added on top of the latency, default is none
+     * @param errorRate       probability in [0, 1] that a request fails with errorStatus, default is 0
+     * @param errorStatus     HTTP status of the injected failures, default is 503
+     * @param maxRequestBytes requests with a larger body are rejected with 400 as Pinecone does, default is 2MB
+     * @param threads         number of threads serving the requests of all indexes, default is 16
+     */
+    @Builder
+    private MockPineconeServer(Integer port, String apiKey, Duration latency, Duration latencyJitter,
+            Double errorRate, Integer errorStatus, Long maxRequestBytes, Integer threads) {
+        this.port = Objects.requireNonNullElse(port, 0);
+        this.apiKey = apiKey;
+        this.latency = Objects.requireNonNullElse(latency, Duration.ZERO);
+        this.latencyJitter = Objects.requireNonNullElse(latencyJitter, Duration.ZERO);
+        this.errorRate = Objects.requireNonNullElse(errorRate, 0.0);
+        this.errorStatus = Objects.requireNonNullElse(errorStatus, 503);
+        this.maxRequestBytes = Objects.requireNonNullElse(maxRequestBytes, 2L * 1024 * 1024);
+        this.threads = Objects.requireNonNullElse(threads, 16);
+    }
+
+    /**
+     * Start listening on the loopback address.
+     *
+     * @return this server
+     */
+    public MockPineconeServer start() {
+        executor = Executors.newFixedThreadPool(threads);
+        controller = createServer(port);
+        controller.createContext("/databases", exchange -> serve(exchange, this::handleController));
+        controller.start();
+        LOG.info("Mock Pinecone controller listening on {}", getControllerUrl());
+        return this;
+    }
+
+    /**
+     * Get the URL of the controller, to be set as the host of the PineconeClient.
+     */
+    public String getControllerUrl() {
+        return "http://localhost:" + controller.getAddress().getPort();
+    }
+
+    /**
+     * Change the fixed delay added to every request.
+     */
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Change the maximum random delay added on top of the latency.
+     */
+    public void setLatencyJitter(Duration latencyJitter) {
+        this.latencyJitter = latencyJitter;
+    }
+
+    /**
+     * Change the probability in [0, 1] that a request fails with the error status.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Fail the next requests, whatever the error rate, before they reach the controller or an index.
+     *
+     * @param count  number of requests to fail
+     * @param status HTTP status of the failures
+     */
+    public void failNext(int count, int status) {
+        for (int i = 0; i < count; i++) {
+            pendingFailures.add(status);
+        }
+    }
+
+    /**
+     * Number of requests received, including the failed ones.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Number of requests failed by the error rate or {@link #failNext(int, int)}.
+     */
+    public long getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    /**
+     * Number of vectors stored in a namespace of an index.
+     *
+     * @param indexName the name of the index
+     * @param namespace the namespace, empty for the default one
+     * @return the number of vectors, 0 if the index does not exist
+     */
+    public int vectorCount(String indexName, String namespace) {
+        IndexServer indexServer = indexes.get(indexName);
+        return indexServer != null ? indexServer.index.vectorCount(namespace) : 0;
+    }
+
+    /**
+     * Stop the controller and the servers of all the indexes, dropping their vectors.
+     */
+    @Override
+    public void close() {
+        indexes.values().forEach(indexServer -> indexServer.server.stop(0));
+        indexes.clear();
+        if (controller != null) {
+            controller.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private HttpServer createServer(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.setExecutor(executor);
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start the mock Pinecone server.", e);
+        }
+    }
+
+    private void handleController(HttpExchange exchange, JsonNode body) throws IOException {
+        String path = StringUtils.removeEnd(exchange.getRequestURI().getPath(), "/");
+        String method = exchange.getRequestMethod();
+        if ("/databases".equals(path)) {
+            if ("GET".equals(method)) {
+                sendJson(exchange, 200, objectMapper.valueToTree(new ArrayList<>(indexes.keySet())));
+            } else if ("POST".equals(method)) {
+                createIndex(exchange, body);
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+            return;
+        }
+        String name = StringUtils.removeStart(path, "/databases/");
+        IndexServer indexServer = indexes.get(name);
+        if (indexServer == null) {
+            sendError(exchange, 404, "Index " + name + " not found");
+        } else if ("GET".equals(method)) {
+            sendJson(exchange, 200, describeIndex(indexServer));
+        } else if ("DELETE".equals(method)) {
+            indexes.remove(name);
+            indexServer.server.stop(0);
+            send(exchange, 202, new byte[0]);
+        } else {
+            sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    private void createIndex(HttpExchange exchange, JsonNode body) throws IOException {
+        String name = body.path("name").asText();
+        int dimension = body.path("dimension").asInt();
+        if (StringUtils.isBlank(name) || dimension <= 0) {
+            sendError(exchange, 400, "Index name and a positive dimension are required");
+            return;
+        }
+        Metric metric = Metric.fromValue(body.path("metric").asText("cosine"));
+        IndexServer indexServer = new IndexServer(new MockIndex(objectMapper, name, dimension, metric));
+        if (indexes.putIfAbsent(name, indexServer) != null) {
+            indexServer.server.stop(0);
+            sendError(exchange, 409, "Index " + name + " already exists");
+            return;
+        }
+        indexServer.server.createContext("/", ex -> serve(ex, (e, request) -> handleIndex(indexServer.index, e,
+                request)));
+        indexServer.server.start();
+        send(exchange, 201, new byte[0]);
+    }
+
+    private ObjectNode describeIndex(IndexServer indexServer) {
+        ObjectNode description = objectMapper.createObjectNode();
+        description.putObject("database")
+                .put("name", indexServer.index.name())
+                .put("metric", indexServer.index.metric().getValue())
+                .put("dimension", indexServer.index.dimension())
+                .put("replicas", 1)
+                .put("shards", 1)
+                .put("pods", 1)
+                .put("pod_type", "p1.x1");
+        int indexPort = indexServer.server.getAddress().getPort();
+        description.putObject("status")
+                .put("host", "localhost:" + indexPort)
+                .put("port", indexPort)
+                .put("state", "Ready")
+                .put("ready", true);
+        return description;
+    }
+
+    private void handleIndex(MockIndex index, HttpExchange exchange, JsonNode body) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method) && "/vectors/fetch".equals(path)) {
+            Map<String, List<String>> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            List<String> namespace = params.getOrDefault("namespace", List.of(""));
+            sendJson(exchange, 200, index.fetch(params.getOrDefault("ids", List.of()), namespace.get(0)));
+            return;
+        }
+        if (!"POST".equals(method)) {
+            sendError(exchange, 405, "Method not allowed");
+            return;
+        }
+        switch (path) {
+            case "/query", "/vectors/upsert" -> {
+                String error = index.validateDimension(body);
+                if (error != null) {
+                    sendError(exchange, 400, error);
+                } else {
+                    sendJson(exchange, 200, "/query".equals(path) ? index.query(body) : index.upsert(body));
+                }
+            }
+            case "/vectors/delete" -> sendJson(exchange, 200, index.delete(body));
+            default -> sendError(exchange, 404, "Not found");
+        }
+    }
+
+    /**
+     * Apply the checks shared by all requests: the API key, the latency, the injected failures and the body size.
+     */
+    private void serve(HttpExchange exchange, Route route) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            byte[] body = readBody(exchange);
+            String key = exchange.getRequestHeaders().getFirst("Api-Key");
+            if (StringUtils.isBlank(key) || (apiKey != null && !apiKey.equals(key))) {
+                sendError(exchange, 401, "Invalid API key");
+                return;
+            }
+            delay();
+            Integer failure = pendingFailures.poll();
+            if (failure == null && errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failure = errorStatus;
+            }
+            if (failure != null) {
+                injectedFailures.incrementAndGet();
+                sendError(exchange, failure, "Injected failure");
+                return;
+            }
+            if (body == null) {
+                sendError(exchange, 400, "Request size exceeds the limit of " + maxRequestBytes + " bytes");
+                return;
+            }
+            route.handle(exchange, body.length > 0 ? objectMapper.readTree(body) : objectMapper.createObjectNode());
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOG.warn("Mock Pinecone request {} failed", exchange.getRequestURI(), e);
+            if (exchange.getResponseCode() == -1) {
+                sendError(exchange, 400, String.valueOf(e.getMessage()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Read the whole request body, which the connection needs to be reused.
+     *
+     * @return the body, or null if it is larger than the maximum request size
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            return body.length > maxRequestBytes ? null : body;
+        }
+    }
+
+    private void delay() {
+        long millis = latency.toMillis();
+        long jitter = latencyJitter.toMillis();
+        if (jitter > 0) {
+            millis += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> params = new HashMap<>();
+        for (String param : StringUtils.split(StringUtils.defaultString(rawQuery), '&')) {
+            String[] pair = param.split("=", 2);
+            String value = pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "";
+            params.computeIfAbsent(URLDecoder.decode(pair[0], StandardCharsets.UTF_8), key -> new ArrayList<>())
+                    .add(value);
+        }
+        return params;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, status, objectMapper.writeValueAsBytes(body));
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, objectMapper.createObjectNode().put("code", status).put("message", message));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Route {
+
+        void handle(HttpExchange exchange, JsonNode body) throws IOException;
+    }
+
+    private final class IndexServer {
+
+        private final MockIndex index;
+
+        private final HttpServer server;
+
+        private IndexServer(MockIndex index) {
+            this.index = index;
+            this.server = createServer(0);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package com.hw.pinecone.service;
 import com.hw.pinecone.entity.vector.*;
 
 import io.reactivex.Single;
+import okhttp3.ResponseBody;
 import retrofit2.http.*;
 
 import java.util.List;
@@ -62,4 +63,13 @@ public interface VectorService {
      */
     @POST("/vectors/upsert")
     Single<UpsertResponse> upsert(@Body UpsertRequest request);
+
+    /**
+     * The Delete operation deletes vectors, by id, from a single namespace.
+     *
+     * @param request the DeleteRequest selecting the vectors to delete
+     * @return a Single emitting the empty response body once the vectors are deleted
+     */
+    @POST("/vectors/delete")
+    Single<ResponseBody> delete(@Body DeleteRequest request);
 }
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.pinecone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hw.pinecone.entity.vector.*;
+import com.hw.pinecone.service.VectorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.SneakyThrows;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author HamaWhite
+ */
+class IndexClientTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private MockWebServer server;
+
+    private PineconeClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                    return new MockResponse().setBody(respond(request));
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        client = PineconeClient.builder()
+                .pineconeApiKey("test-key")
+                .pineconeEnv("test")
+                .build()
+                .init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.shutdown();
+    }
+
+    /**
+     * Answer each query vector with a single match, whose score is the first value of the vector.
+     */
+    @SneakyThrows
+    private static String respond(RecordedRequest request) {
+        if (!"/query".equals(request.getPath())) {
+            return "{}";
+        }
+        JsonNode body = OBJECT_MAPPER.readTree(request.getBody().clone().readUtf8());
+        if (body.has("queries")) {
+            StringBuilder results = new StringBuilder();
+            for (JsonNode query : body.get("queries")) {
+                results.append(results.isEmpty() ? "" : ",")
+                        .append("{\"matches\":[").append(match(query.get("values"))).append("]}");
+            }
+            return "{\"results\":[" + results + "]}";
+        }
+        return "{\"matches\":[" + match(body.get("vector")) + "]}";
+    }
+
+    private static String match(JsonNode values) {
+        return "{\"id\":\"id-" + values.get(0).asInt() + "\",\"score\":" + values.get(0).floatValue() + "}";
+    }
+
+    private IndexClient createIndexClient(boolean asyncService) {
+        String baseUrl = server.url("/").toString();
+        VectorService vectorService = client.createRetrofit(baseUrl).create(VectorService.class);
+        return asyncService
+                ? new IndexClient(vectorService, client.createRetrofit(baseUrl, RxJava2CallAdapterFactory.createAsync())
+                        .create(VectorService.class))
+                : new IndexClient(vectorService);
+    }
+
+    private static QueryRequest queryRequest(int i) {
+        return QueryRequest.builder()
+                .vector(new float[]{i, 0})
+                .topK(1)
+                .build();
+    }
+
+    @Test
+    void testQueryAsyncRunsConcurrently() {
+        for (boolean asyncService : new boolean[]{true, false}) {
+            IndexClient index = createIndexClient(asyncService);
+            List<CompletableFuture<QueryResponse>> futures = IntStream.range(0, 4)
+                    .mapToObj(i -> index.queryAsync(queryRequest(i)))
+                    .toList();
+
+            assertThat(futures).extracting(future -> future.join().getMatches().get(0).getId())
+                    .containsExactly("id-0", "id-1", "id-2", "id-3");
+        }
+        assertThat(maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void testBatchQueryInSingleRequest() throws Exception {
+        IndexClient index = createIndexClient(true);
+        List<QueryVector> queries = List.of(
+                QueryVector.builder().values(new float[]{3, 0}).build(),
+                QueryVector.builder().values(new float[]{5, 0}).topK(2).build());
+
+        List<SingleQueryResults> results = index.query(queries, 1, "test", false, true);
+
+        assertThat(results).extracting(result -> result.getMatches().get(0).getId()).containsExactly("id-3", "id-5");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        JsonNode body = OBJECT_MAPPER.readTree(server.takeRequest().getBody().readUtf8());
+        assertThat(body.get("namespace").asText()).isEqualTo("test");
+        assertThat(body.get("queries").get(1).get("topK").asInt()).isEqualTo(2);
+        assertThat(body.has("vector")).isFalse();
+    }
+
+    @Test
+    void testDeleteAsync() throws InterruptedException {
+        IndexClient index = createIndexClient(true);
+
+        index.deleteAsync(DeleteRequest.builder().ids(List.of("a", "b")).namespace("test").build()).join();
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath()).isEqualTo("/vectors/delete");
+        assertThat(request.getBody().readUtf8()).isEqualTo("{\"ids\":[\"a\",\"b\"],\"namespace\":\"test\"}");
+    }
+}
@@ -135,15 +135,15 @@ class PineconeClientTest {
 
     @Test
     void testVectors() {
-        Vector v1 = new Vector("v1", List.of(1F, 3F, 5F));
-        Vector v2 = new Vector("v2", List.of(5F, 3F, 1F));
+        Vector v1 = new Vector("v1", new float[]{1F, 3F, 5F});
+        Vector v2 = new Vector("v2", new float[]{5F, 3F, 1F});
         UpsertRequest upsertRequest = new UpsertRequest(List.of(v1, v2));
 
         UpsertResponse upsertResponse = index.upsert(upsertRequest);
         assertNotNull(upsertResponse, "upsertResponse should not be null");
 
         QueryRequest queryRequest = QueryRequest.builder()
-                .vector(List.of(1F, 2F, 2F))
+                .vector(new float[]{1F, 2F, 2F})
                 .topK(1)
                 .build();
 
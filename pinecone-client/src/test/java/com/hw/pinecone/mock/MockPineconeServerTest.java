@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hw.pinecone.mock;
+
+import com.hw.pinecone.IndexClient;
+import com.hw.pinecone.PineconeClient;
+import com.hw.pinecone.entity.index.CreateIndexRequest;
+import com.hw.pinecone.entity.index.IndexDescription;
+import com.hw.pinecone.entity.vector.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import retrofit2.HttpException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author HamaWhite
+ */
+class MockPineconeServerTest {
+
+    private static final String INDEX_NAME = "mock-index";
+
+    private MockPineconeServer server;
+
+    private PineconeClient client;
+
+    @BeforeEach
+    void setUp() {
+        server = MockPineconeServer.builder().build().start();
+        client = PineconeClient.builder()
+                .host(server.getControllerUrl())
+                .pineconeApiKey("test-key")
+                .pineconeEnv("local")
+                .build()
+                .init();
+        client.createIndex(CreateIndexRequest.builder()
+                .name(INDEX_NAME)
+                .dimension(2)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testIndexOperations() {
+        assertThat(client.listIndexes()).containsExactly(INDEX_NAME);
+
+        IndexDescription description = client.describeIndex(INDEX_NAME);
+        assertThat(description.getDatabase().getDimension()).isEqualTo(2);
+        assertThat(description.getStatus().isReady()).isTrue();
+
+        var exception = assertThrows(HttpException.class, () -> client.createIndex(CreateIndexRequest.builder()
+                .name(INDEX_NAME)
+                .dimension(2)
+                .build()));
+        assertThat(exception.code()).isEqualTo(409);
+
+        client.deleteIndex(INDEX_NAME);
+        assertThat(client.listIndexes()).isEmpty();
+        exception = assertThrows(HttpException.class, () -> client.describeIndex(INDEX_NAME));
+        assertThat(exception.code()).isEqualTo(404);
+    }
+
+    @Test
+    void testVectorOperations() {
+        IndexClient index = client.indexClient(INDEX_NAME);
+        UpsertResponse upsertResponse = index.upsert(new UpsertRequest(List.of(
+                new Vector("a", new float[]{1, 0}, Map.of("genre", "drama", "year", 2019)),
+                new Vector("b", new float[]{0.8f, 0.6f}, Map.of("genre", "comedy", "year", 2021)),
+                new Vector("c", new float[]{0, 1}, Map.of("genre", List.of("drama", "comedy"), "year", 2023)))));
+        assertThat(upsertResponse.getUpsertedCount()).isEqualTo(3);
+        assertThat(server.vectorCount(INDEX_NAME, "")).isEqualTo(3);
+
+        QueryResponse response = index.query(QueryRequest.builder()
+                .vector(new float[]{1, 0})
+                .topK(2)
+                .includeMetadata(true)
+                .build());
+        assertThat(response.getMatches()).extracting(ScoredVector::getId).containsExactly("a", "b");
+        assertThat(response.getMatches().get(0).getScore()).isEqualTo(1.0f);
+        assertThat(response.getMatches().get(1).getMetadata()).containsEntry("genre", "comedy");
+
+        response = index.query(QueryRequest.builder()
+                .vector(new float[]{1, 0})
+                .filter(Map.of("genre", "drama", "year", Map.of("$gte", 2020)))
+                .build());
+        assertThat(response.getMatches()).extracting(ScoredVector::getId).containsExactly("c");
+
+        FetchResponse fetchResponse = index.fetch(FetchRequest.builder().ids(List.of("a", "missing")).build());
+        assertThat(fetchResponse.getVectors()).containsOnlyKeys("a");
+        assertThat(fetchResponse.getVectors().get("a").getValues()).containsExactly(1, 0);
+
+        index.delete(DeleteRequest.builder().ids(List.of("a")).build());
+        index.delete(DeleteRequest.builder().filter(Map.of("genre", Map.of("$in", List.of("comedy")))).build());
+        assertThat(server.vectorCount(INDEX_NAME, "")).isZero();
+    }
+
+    @Test
+    void testFiltersOfMismatchedTypes() {
+        IndexClient index = client.indexClient(INDEX_NAME);
+        index.upsert(new UpsertRequest(List.of(
+                new Vector("a", new float[]{1, 0}, Map.of("year", 2019)),
+                new Vector("b", new float[]{0, 1}, Map.of("year", "n/a")))));
+
+        assertThat(queryIds(index, Map.of("year", Map.of("$lt", 2000)))).isEmpty();
+        assertThat(queryIds(index, Map.of("year", Map.of("$lte", 2000)))).isEmpty();
+        assertThat(queryIds(index, Map.of("year", Map.of("$gt", 2000)))).containsExactly("a");
+        assertThat(queryIds(index, Map.of("year", Map.of("$gte", 2000)))).containsExactly("a");
+        assertThat(queryIds(index, Map.of("year", 2019))).containsExactly("a");
+        assertThat(queryIds(index, Map.of("year", Map.of("$ne", 2019)))).containsExactly("b");
+        assertThat(queryIds(index, Map.of("year", Map.of("$nin", List.of(2019))))).containsExactly("b");
+    }
+
+    private static List<String> queryIds(IndexClient index, Map<String, Object> filter) {
+        QueryResponse response = index.query(QueryRequest.builder()
+                .vector(new float[]{1, 0})
+                .filter(filter)
+                .build());
+        return response.getMatches().stream().map(ScoredVector::getId).toList();
+    }
+
+    @Test
+    void testInjectedFailures() {
+        IndexClient index = client.indexClient(INDEX_NAME);
+        UpsertRequest request = new UpsertRequest(List.of(new Vector("a", new float[]{1, 0})));
+
+        server.failNext(1, 503);
+        var exception = assertThrows(HttpException.class, () -> index.upsert(request));
+        assertThat(exception.code()).isEqualTo(503);
+        assertThat(server.getInjectedFailures()).isEqualTo(1);
+
+        server.setErrorRate(1);
+        assertThrows(HttpException.class, () -> index.upsert(request));
+        server.setErrorRate(0);
+
+        server.setLatency(Duration.ofMillis(200));
+        long start = System.nanoTime();
+        assertThat(index.upsert(request).getUpsertedCount()).isEqualTo(1);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+
+        var dimensionException = assertThrows(HttpException.class, () -> index.upsert(
+                new UpsertRequest(List.of(new Vector("b", new float[]{1, 0, 0})))));
+        assertThat(dimensionException.code()).isEqualTo(400);
+    }
+}